@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.Validation;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Builds Dropwizard environments, Guice bundles and in-memory Jetty servers for the benchmarks. Nothing
+ * here opens a network port.
+ */
+final class BenchmarkFixtures
+{
+    private BenchmarkFixtures()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    static Environment newEnvironment()
+    {
+        return new Environment("benchmark", Jackson.newObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), new MetricRegistry(), BenchmarkFixtures.class.getClassLoader());
+    }
+
+    /**
+     * Runs a Guice bundle with the given modules against the environment and returns the injector it created.
+     */
+    static Injector runBundle(final Environment environment, final Module ... modules) throws Exception
+    {
+        return runBundle(environment, ImmutableList.<ModuleGroup>of(), modules);
+    }
+
+    /**
+     * Runs a Guice bundle with the given module groups and modules against the environment and returns the
+     * application injector it created.
+     */
+    static Injector runBundle(final Environment environment, final List<ModuleGroup> moduleGroups, final Module ... modules) throws Exception
+    {
+        return runBundle(GuiceBundle.defaultBuilder(Configuration.class), environment, moduleGroups, modules);
+    }
+
+    /**
+     * Like {@link #runBundle(Environment, List, Module...)}, but builds the bundle from a builder that the
+     * benchmark has configured already.
+     */
+    static Injector runBundle(final GuiceBundle.Builder<Configuration> builder, final Environment environment, final List<ModuleGroup> moduleGroups, final Module ... modules) throws Exception
+    {
+        final InjectorHolder holder = new InjectorHolder();
+
+        final GuiceBundle<Configuration> bundle = builder
+            .moduleGroups(moduleGroups.toArray(new ModuleGroup[moduleGroups.size()]))
+            .modules(modules)
+            .modules(new Module() {
+                @Override
+                public void configure(final Binder binder)
+                {
+                    binder.requestInjection(holder);
+                }
+            })
+            .build();
+
+        bundle.run(new Configuration(), environment);
+        return checkNotNull(holder.injector, "injector was not captured");
+    }
+
+    /**
+     * Starts a Jetty server that serves the application context of the environment (including the Jersey
+     * servlet) through a {@link LocalConnector}.
+     */
+    static LocalServer startServer(final Environment environment) throws Exception
+    {
+        environment.getApplicationContext().addServlet(new ServletHolder(environment.getJerseyServletContainer()), "/*");
+        return new LocalServer(environment.getApplicationContext());
+    }
+
+    static final class LocalServer
+    {
+        private final Server server;
+        private final LocalConnector connector;
+
+        private LocalServer(final Handler handler) throws Exception
+        {
+            this.server = new Server();
+            this.connector = new LocalConnector(server);
+            server.addConnector(connector);
+            server.setHandler(handler);
+            server.start();
+        }
+
+        String get(final String path) throws Exception
+        {
+            final String response = connector.getResponses("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n", 5, TimeUnit.SECONDS);
+            checkState(response != null && response.startsWith("HTTP/1.1 200"), "request for %s failed: %s", path, response);
+            return response;
+        }
+
+        void stop() throws Exception
+        {
+            server.stop();
+        }
+    }
+
+    static final class InjectorHolder
+    {
+        private volatile Injector injector = null;
+
+        @Inject
+        void setInjector(final Injector injector)
+        {
+            this.injector = injector;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Measures request dispatch through an in-memory Jetty server. With <tt>guice=true</tt>, the application
+ * is set up by the {@link GuiceBundle}. By default the bundle lets requests that no guice servlet module
+ * maps bypass the <tt>GuiceFilter</tt>, which includes <tt>/static</tt> and <tt>/hello</tt> here; with
+ * <tt>bypass=false</tt> every request passes through it. With <tt>guice=false</tt>, the same servlet and
+ * resource are served without the bundle, and <tt>bypass</tt> makes no difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiceFilterBenchmark
+{
+    @Param({"true", "false"})
+    public boolean guice;
+
+    @Param({"true", "false"})
+    public boolean bypass;
+
+    private BenchmarkFixtures.LocalServer server;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        final Environment environment = BenchmarkFixtures.newEnvironment();
+        environment.getApplicationContext().addServlet(new ServletHolder(new StaticServlet()), "/static");
+
+        if (guice) {
+            environment.jersey().register(HelloResource.class);
+            final GuiceBundle.Builder<Configuration> builder = GuiceBundle.defaultBuilder(Configuration.class);
+            if (!bypass) {
+                builder.disableGuiceFilterBypass();
+            }
+            BenchmarkFixtures.runBundle(builder, environment, ImmutableList.<ModuleGroup>of(), new Module() {
+                @Override
+                public void configure(final Binder binder)
+                {
+                    binder.bind(HelloResource.class);
+                }
+            });
+        }
+        else {
+            environment.jersey().register(new HelloResource());
+        }
+
+        this.server = BenchmarkFixtures.startServer(environment);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        server.stop();
+    }
+
+    @Benchmark
+    public String staticServlet() throws Exception
+    {
+        return server.get("/static");
+    }
+
+    @Benchmark
+    public String jerseyResource() throws Exception
+    {
+        return server.get("/hello");
+    }
+
+    static class StaticServlet extends HttpServlet
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException
+        {
+            response.setContentType("text/plain");
+            response.getWriter().write("static");
+        }
+    }
+
+    @Path("/hello")
+    public static class HelloResource
+    {
+        @Inject
+        public HelloResource()
+        {
+        }
+
+        @GET
+        public String get()
+        {
+            return "hello";
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.name.Names;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Measures {@link GuiceBundle#run}, which is dominated by <tt>Guice.createInjector</tt>, for a growing
+ * number of modules and singleton bindings per module. With <tt>moduleGroups</tt>, every module is a
+ * {@link ModuleGroup} of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InjectorBootstrapBenchmark
+{
+    @Param({"1", "10", "50"})
+    public int modules;
+
+    @Param({"10", "100"})
+    public int bindingsPerModule;
+
+    @Param({"false", "true"})
+    public boolean moduleGroups;
+
+    private List<Module> guiceModules;
+    private List<ModuleGroup> guiceModuleGroups;
+    private Environment environment;
+
+    @Setup(Level.Trial)
+    public void setupModules()
+    {
+        final ImmutableList.Builder<Module> builder = ImmutableList.builder();
+        final ImmutableList.Builder<ModuleGroup> groupBuilder = ImmutableList.builder();
+        for (int i = 0; i < modules; i++) {
+            final Module module = new ServiceModule("module-" + i, bindingsPerModule);
+            if (moduleGroups) {
+                groupBuilder.add(new ModuleGroup("module-" + i).modules(module));
+            }
+            else {
+                builder.add(module);
+            }
+        }
+        this.guiceModules = builder.build();
+        this.guiceModuleGroups = groupBuilder.build();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupEnvironment()
+    {
+        // The bundle registers servlets, filters and managed objects, so every run needs a fresh environment.
+        this.environment = BenchmarkFixtures.newEnvironment();
+    }
+
+    @Benchmark
+    public Injector runBundle() throws Exception
+    {
+        return BenchmarkFixtures.runBundle(environment, guiceModuleGroups, guiceModules.toArray(new Module[guiceModules.size()]));
+    }
+
+    static class ServiceModule implements Module
+    {
+        private final String name;
+        private final int bindings;
+
+        ServiceModule(final String name, final int bindings)
+        {
+            this.name = name;
+            this.bindings = bindings;
+        }
+
+        @Override
+        public void configure(final Binder binder)
+        {
+            for (int i = 0; i < bindings; i++) {
+                binder.bind(Service.class).annotatedWith(Names.named(name + "-" + i)).to(DefaultService.class).in(Scopes.SINGLETON);
+            }
+        }
+    }
+
+    interface Service
+    {
+        long call();
+    }
+
+    static class DefaultService implements Service
+    {
+        private final Environment environment;
+
+        @Inject
+        DefaultService(final Environment environment)
+        {
+            this.environment = environment;
+        }
+
+        @Override
+        public long call()
+        {
+            return environment.metrics().getNames().size();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floplizard.guice.SmileBenchmark.Item;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.sun.jersey.core.header.OutBoundHeaders;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.dropwizard.jersey.jackson.JacksonMessageBodyProvider;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Compares writing a large JSON array response the usual way, by loading all elements into a list and handing
+ * it to the Dropwizard JSON provider, with streaming the elements through {@link JsonStreams}. Run it through
+ * the {@link BenchmarkRunner} and compare the <tt>gc.alloc.rate.norm</tt> values, which are the bytes
+ * allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonStreamsBenchmark
+{
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    private static final List<String> COLORS = ImmutableList.of("red", "green", "blue");
+
+    @Param({"100", "10000"})
+    public int elements;
+
+    private final OutputStream response = ByteStreams.nullOutputStream();
+    private JacksonMessageBodyProvider jsonProvider;
+    private JsonStreams jsonStreams;
+
+    @Setup
+    public void setup()
+    {
+        final Environment environment = BenchmarkFixtures.newEnvironment();
+        final ObjectMapper objectMapper = environment.getObjectMapper();
+        this.jsonProvider = new JacksonMessageBodyProvider(objectMapper, environment.getValidator());
+        this.jsonStreams = new JsonStreams(new ObjectMapperCache(objectMapper));
+    }
+
+    @Benchmark
+    public void writeList() throws IOException
+    {
+        final ImmutableList.Builder<Item> items = ImmutableList.builder();
+        for (Iterator<Item> it = items(elements); it.hasNext();) {
+            items.add(it.next());
+        }
+        jsonProvider.writeTo(items.build(), List.class, List.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, new OutBoundHeaders(), response);
+    }
+
+    @Benchmark
+    public void writeStream() throws IOException
+    {
+        jsonStreams.array(Item.class, items(elements)).write(response);
+    }
+
+    /**
+     * Stands in for a database cursor: creates each element when it is requested.
+     */
+    private static Iterator<Item> items(final int count)
+    {
+        return new AbstractIterator<Item>() {
+            private int i = 0;
+
+            @Override
+            protected Item computeNext()
+            {
+                if (i == count) {
+                    return endOfData();
+                }
+                final Item item = new Item(i, "item-" + i, "A description of item " + i + " that is a bit longer", i * 1.5, COLORS);
+                i++;
+                return item;
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Compares {@link DropwizardObjectMapperProvider}, which copies the Dropwizard object mapper on every
+ * call, with the shared mapper and the cached writers of the {@link ObjectMapperCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectMapperProviderBenchmark
+{
+    private DropwizardObjectMapperProvider provider;
+    private ObjectMapperCache objectMapperCache;
+    private Payload payload;
+
+    @Setup
+    public void setup()
+    {
+        final Environment environment = BenchmarkFixtures.newEnvironment();
+        this.provider = new DropwizardObjectMapperProvider(environment);
+        this.objectMapperCache = new ObjectMapperCache(environment.getObjectMapper());
+        this.payload = new Payload("benchmark", 42, ImmutableList.of("a", "b", "c"));
+    }
+
+    @Benchmark
+    public Object providerGet()
+    {
+        return provider.get();
+    }
+
+    @Benchmark
+    public String providerGetAndWrite() throws Exception
+    {
+        return provider.get().writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public String sharedMapperWrite() throws Exception
+    {
+        return objectMapperCache.getObjectMapper().writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public String cachedWriterWrite() throws Exception
+    {
+        final ObjectWriter writer = objectMapperCache.getWriter(Payload.class);
+        return writer.writeValueAsString(payload);
+    }
+
+    public static class Payload
+    {
+        private final String name;
+        private final int count;
+        private final List<String> tags;
+
+        Payload(final String name, final int count, final List<String> tags)
+        {
+            this.name = name;
+            this.count = count;
+            this.tags = tags;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public List<String> getTags()
+        {
+            return tags;
+        }
+    }
+}
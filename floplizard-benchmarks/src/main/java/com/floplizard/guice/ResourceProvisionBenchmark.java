@@ -0,0 +1,239 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import com.sun.jersey.core.spi.component.ioc.IoCComponentProvider;
+import com.sun.jersey.core.spi.component.ioc.IoCComponentProviderFactory;
+import com.sun.jersey.core.spi.component.ioc.IoCManagedComponentProvider;
+import com.sun.jersey.guice.spi.container.GuiceComponentProviderFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Measures how Jersey obtains resource instances from Guice. The {@link DropwizardGuiceContainer} hands
+ * every resource class to a {@link GuiceComponentProviderFactory}, which asks the injector for a new
+ * instance of unscoped resources on every request. The {@link ResourceComponentProviderFactory} (enabled with
+ * {@link GuiceBundle.Builder#enableResourceFactories()}) promotes stateless resources such as
+ * {@link PerRequestResource} to singletons and calls the constructor of other resources such as
+ * {@link FactoryResource} directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceProvisionBenchmark
+{
+    private Injector injector;
+    private IoCManagedComponentProvider perRequestProvider;
+    private IoCManagedComponentProvider singletonProvider;
+    private IoCManagedComponentProvider perRequestPromotedProvider;
+    private IoCManagedComponentProvider factoryResourceProvider;
+    private IoCManagedComponentProvider factoryResourceFactoryProvider;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        final Environment environment = BenchmarkFixtures.newEnvironment();
+        environment.jersey().register(PerRequestResource.class);
+        environment.jersey().register(SingletonResource.class);
+        environment.jersey().register(FactoryResource.class);
+
+        this.injector = BenchmarkFixtures.runBundle(environment, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bindConstant().annotatedWith(Names.named("greeting")).to("hello");
+                binder.bind(Greeter.class).in(Scopes.SINGLETON);
+                binder.bind(PerRequestResource.class);
+                binder.bind(SingletonResource.class).in(Scopes.SINGLETON);
+                binder.bind(RequestContext.class);
+                binder.bind(FactoryResource.class);
+            }
+        });
+
+        final GuiceComponentProviderFactory factory = new GuiceComponentProviderFactory(environment.jersey().getResourceConfig(), injector);
+        this.perRequestProvider = getManagedProvider(factory, PerRequestResource.class);
+        this.singletonProvider = getManagedProvider(factory, SingletonResource.class);
+        this.factoryResourceProvider = getManagedProvider(factory, FactoryResource.class);
+
+        final ResourceComponentProviderFactory resourceFactory = new ResourceComponentProviderFactory(environment.jersey().getResourceConfig(), injector);
+        checkTreatment(resourceFactory, PerRequestResource.class, ResourceComponentProviderFactory.Treatment.SINGLETON);
+        checkTreatment(resourceFactory, FactoryResource.class, ResourceComponentProviderFactory.Treatment.FACTORY);
+        this.perRequestPromotedProvider = getManagedProvider(resourceFactory, PerRequestResource.class);
+        this.factoryResourceFactoryProvider = getManagedProvider(resourceFactory, FactoryResource.class);
+    }
+
+    @Benchmark
+    public Object perRequestResource()
+    {
+        return perRequestProvider.getInstance();
+    }
+
+    @Benchmark
+    public Object perRequestResourcePromoted()
+    {
+        return perRequestPromotedProvider.getInstance();
+    }
+
+    @Benchmark
+    public Object factoryResource()
+    {
+        return factoryResourceProvider.getInstance();
+    }
+
+    @Benchmark
+    public Object factoryResourceFactory()
+    {
+        return factoryResourceFactoryProvider.getInstance();
+    }
+
+    @Benchmark
+    public Object singletonResource()
+    {
+        return singletonProvider.getInstance();
+    }
+
+    @Benchmark
+    public Object perRequestInjector()
+    {
+        return injector.getInstance(PerRequestResource.class);
+    }
+
+    private void checkTreatment(final ResourceComponentProviderFactory factory, final Class<?> resourceClass, final ResourceComponentProviderFactory.Treatment expected)
+    {
+        final ResourceComponentProviderFactory.Treatment treatment = factory.getTreatment(injector.getBinding(resourceClass));
+        if (treatment != expected) {
+            throw new IllegalStateException("resource " + resourceClass.getName() + " gets treatment " + treatment + ", expected " + expected);
+        }
+    }
+
+    private static IoCManagedComponentProvider getManagedProvider(final IoCComponentProviderFactory factory, final Class<?> resourceClass)
+    {
+        final IoCComponentProvider provider = factory.getComponentProvider(resourceClass);
+        if (!(provider instanceof IoCManagedComponentProvider)) {
+            throw new IllegalStateException("resource " + resourceClass.getName() + " is not managed by guice: " + provider);
+        }
+        return (IoCManagedComponentProvider) provider;
+    }
+
+    static class Greeter
+    {
+        private final String greeting;
+
+        @Inject
+        Greeter(@Named("greeting") final String greeting)
+        {
+            this.greeting = greeting;
+        }
+
+        String greet(final String name)
+        {
+            return greeting + ", " + name;
+        }
+    }
+
+    @Path("/per-request")
+    public static class PerRequestResource
+    {
+        private final Greeter greeter;
+
+        @Inject
+        PerRequestResource(final Greeter greeter)
+        {
+            this.greeter = greeter;
+        }
+
+        @GET
+        public String get()
+        {
+            return greeter.greet("per-request");
+        }
+    }
+
+    /**
+     * Unscoped, so every resource that uses it gets a new instance.
+     */
+    static class RequestContext
+    {
+        private final long created = System.nanoTime();
+
+        @Inject
+        RequestContext()
+        {
+        }
+    }
+
+    @Path("/factory")
+    public static class FactoryResource
+    {
+        private final Greeter greeter;
+        private final RequestContext context;
+
+        @Inject
+        FactoryResource(final Greeter greeter, final RequestContext context)
+        {
+            this.greeter = greeter;
+            this.context = context;
+        }
+
+        @GET
+        public String get()
+        {
+            return greeter.greet("factory " + context.created);
+        }
+    }
+
+    @Path("/singleton")
+    public static class SingletonResource
+    {
+        private final Greeter greeter;
+
+        @Inject
+        SingletonResource(final Greeter greeter)
+        {
+            this.greeter = greeter;
+        }
+
+        @GET
+        public String get()
+        {
+            return greeter.greet("singleton");
+        }
+    }
+}
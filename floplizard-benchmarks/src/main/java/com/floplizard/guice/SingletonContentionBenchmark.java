@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.name.Names;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * A burst of threads that all need singletons which do not exist yet, as right after startup with
+ * lazily created singletons. Every singleton takes a millisecond to create (loading configuration,
+ * opening a connection, ...). With {@link Scopes#SINGLETON}, all creations run one after the other under
+ * Guice's global lock; the {@link ConcurrentSingletonScope} only serializes threads that need the same singleton.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Threads(8)
+@Fork(1)
+public class SingletonContentionBenchmark
+{
+    @Param({"guice", "concurrent"})
+    public String scope;
+
+    @Param({"64"})
+    public int singletons;
+
+    private List<Key<Expensive>> keys;
+    private Injector injector;
+
+    @Setup(Level.Iteration)
+    public void setupInjector()
+    {
+        final com.google.inject.Scope singletonScope = scope.equals("concurrent") ? new ConcurrentSingletonScope() : Scopes.SINGLETON;
+
+        final ImmutableList.Builder<Key<Expensive>> builder = ImmutableList.builder();
+        for (int i = 0; i < singletons; i++) {
+            builder.add(Key.get(Expensive.class, Names.named("singleton-" + i)));
+        }
+        this.keys = builder.build();
+
+        // Development stage, so that none of the singletons is created with the injector.
+        this.injector = Guice.createInjector(Stage.DEVELOPMENT, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                for (Key<Expensive> key : keys) {
+                    bind(key).to(Expensive.class).in(singletonScope);
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    public int firstHitStorm(final ThreadParams threadParams)
+    {
+        // Every thread starts with a different singleton and then needs all others.
+        final int offset = threadParams.getThreadIndex() * keys.size() / threadParams.getThreadCount();
+        int count = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            count += injector.getInstance(keys.get((offset + i) % keys.size())).hashCode() & 1;
+        }
+        return count;
+    }
+
+    static class Expensive
+    {
+        @Inject
+        Expensive() throws InterruptedException
+        {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+}
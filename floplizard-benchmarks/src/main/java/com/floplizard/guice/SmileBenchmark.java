@@ -0,0 +1,218 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.jersey.jackson.JacksonMessageBodyProvider;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Compares reading and writing a large entity as JSON, through the Dropwizard JSON provider, and as Smile,
+ * through the {@link SmileMessageBodyProvider}. Both use the same object mapper. The payload sizes are logged
+ * during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmileBenchmark
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SmileBenchmark.class);
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private JacksonMessageBodyProvider jsonProvider;
+    private SmileMessageBodyProvider smileProvider;
+    private Page page;
+    private byte[] json;
+    private byte[] smile;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        final Environment environment = BenchmarkFixtures.newEnvironment();
+        this.jsonProvider = new JacksonMessageBodyProvider(environment.getObjectMapper(), environment.getValidator());
+        this.smileProvider = new SmileMessageBodyProvider(environment.getObjectMapper(), environment.getValidator());
+
+        final ImmutableList.Builder<Item> items = ImmutableList.builder();
+        for (int i = 0; i < 500; i++) {
+            items.add(new Item(i, "item-" + i, "A description of item " + i + " that is a bit longer", i * 1.5, ImmutableList.of("red", "green", "blue")));
+        }
+        this.page = new Page(items.build());
+
+        this.json = write(jsonProvider, MediaType.APPLICATION_JSON_TYPE).toByteArray();
+        this.smile = write(smileProvider, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE).toByteArray();
+        LOG.info("Payload size: JSON {} bytes, Smile {} bytes", json.length, smile.length);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeJson() throws Exception
+    {
+        return write(jsonProvider, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeSmile() throws Exception
+    {
+        return write(smileProvider, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE);
+    }
+
+    @Benchmark
+    public Object readJson() throws Exception
+    {
+        return read(jsonProvider, MediaType.APPLICATION_JSON_TYPE, json);
+    }
+
+    @Benchmark
+    public Object readSmile() throws Exception
+    {
+        return read(smileProvider, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE, smile);
+    }
+
+    private ByteArrayOutputStream write(final JacksonMessageBodyProvider provider, final MediaType mediaType) throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+        provider.writeTo(page, Page.class, Page.class, NO_ANNOTATIONS, mediaType, new OutBoundHeaders(), output);
+        return output;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object read(final JacksonMessageBodyProvider provider, final MediaType mediaType, final byte[] entity) throws IOException
+    {
+        return provider.readFrom((Class) Page.class, Page.class, NO_ANNOTATIONS, mediaType, new MultivaluedMapImpl(), new ByteArrayInputStream(entity));
+    }
+
+    public static class Page
+    {
+        private List<Item> items;
+
+        public Page()
+        {
+        }
+
+        Page(final List<Item> items)
+        {
+            this.items = items;
+        }
+
+        public List<Item> getItems()
+        {
+            return items;
+        }
+
+        public void setItems(final List<Item> items)
+        {
+            this.items = items;
+        }
+    }
+
+    public static class Item
+    {
+        private long id;
+        private String name;
+        private String description;
+        private double price;
+        private List<String> colors;
+
+        public Item()
+        {
+        }
+
+        Item(final long id, final String name, final String description, final double price, final List<String> colors)
+        {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.price = price;
+            this.colors = colors;
+        }
+
+        public long getId()
+        {
+            return id;
+        }
+
+        public void setId(final long id)
+        {
+            this.id = id;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName(final String name)
+        {
+            this.name = name;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        public void setDescription(final String description)
+        {
+            this.description = description;
+        }
+
+        public double getPrice()
+        {
+            return price;
+        }
+
+        public void setPrice(final double price)
+        {
+            this.price = price;
+        }
+
+        public List<String> getColors()
+        {
+            return colors;
+        }
+
+        public void setColors(final List<String> colors)
+        {
+            this.colors = colors;
+        }
+    }
+}
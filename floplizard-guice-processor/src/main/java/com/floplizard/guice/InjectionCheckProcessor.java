@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Checks the classes that use Guice injection against the rules of the <tt>GuiceEnforcerModule</tt> at
+ * compile time.
+ * <br>
+ * Reported as errors, because Guice would fail at startup:
+ *
+ * <ul>
+ * <li>more than one injectable constructor in a class.</li>
+ * <li>injectable constructors in non-static inner classes.</li>
+ * <li>final injected fields, abstract or generic injected methods.</li>
+ * </ul>
+ *
+ * With the <tt>floplizard.requireAtInjectOnConstructors</tt> option set to <tt>true</tt>, a concrete class
+ * that has injected fields or methods but no injectable constructor is also reported as an error.
+ */
+@SupportedAnnotationTypes({"javax.inject.Inject", "com.google.inject.Inject"})
+@SupportedOptions(InjectionCheckProcessor.REQUIRE_AT_INJECT_ON_CONSTRUCTORS)
+public class InjectionCheckProcessor extends AbstractProcessor
+{
+    public static final String REQUIRE_AT_INJECT_ON_CONSTRUCTORS = "floplizard.requireAtInjectOnConstructors";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv)
+    {
+        final Set<TypeElement> types = new LinkedHashSet<>();
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (checkMember(element)) {
+                    types.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+
+        for (TypeElement type : types) {
+            checkType(type);
+        }
+        return false;
+    }
+
+    private boolean checkMember(final Element element)
+    {
+        final Set<Modifier> modifiers = element.getModifiers();
+        switch (element.getKind()) {
+            case CONSTRUCTOR:
+                break;
+            case FIELD:
+                if (modifiers.contains(Modifier.FINAL)) {
+                    error(element, "Injected field %s must not be final", element.getSimpleName());
+                }
+                break;
+            case METHOD:
+                if (modifiers.contains(Modifier.ABSTRACT)) {
+                    error(element, "Injected method %s must not be abstract", element.getSimpleName());
+                }
+                if (!((ExecutableElement) element).getTypeParameters().isEmpty()) {
+                    error(element, "Injected method %s must not declare type parameters", element.getSimpleName());
+                }
+                break;
+            default:
+                // Annotation types, misplaced annotations etc. are reported by the compiler or by Guice.
+                return false;
+        }
+        return element.getEnclosingElement() instanceof TypeElement;
+    }
+
+    private void checkType(final TypeElement type)
+    {
+        int injectableConstructors = 0;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (isInjectable(constructor)) {
+                injectableConstructors++;
+            }
+        }
+
+        final boolean isAbstract = type.getModifiers().contains(Modifier.ABSTRACT) || type.getKind() != ElementKind.CLASS;
+        final boolean isInner = type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC);
+
+        if (injectableConstructors > 1) {
+            error(type, "%s has more than one injectable constructor", type.getQualifiedName());
+        }
+        if (injectableConstructors > 0 && isInner) {
+            error(type, "%s is an inner class, injectable constructors must be in static classes", type.getQualifiedName());
+        }
+        if (injectableConstructors == 0 && !isAbstract && !isInner && Boolean.parseBoolean(getOption(REQUIRE_AT_INJECT_ON_CONSTRUCTORS))) {
+            error(type, "%s has injected members but no injectable constructor", type.getQualifiedName());
+        }
+    }
+
+    private static boolean isInjectable(final Element element)
+    {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            final String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (name.equals("javax.inject.Inject") || name.equals("com.google.inject.Inject")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getOption(final String name)
+    {
+        final Map<String, String> options = processingEnv.getOptions();
+        return options.get(name);
+    }
+
+    private void error(final Element element, final String format, final Object ... args)
+    {
+        processingEnv.getMessager().printMessage(Kind.ERROR, String.format(format, args), element);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestInjectionCheckProcessor
+{
+    // Compiled along with the test sources, so the test does not need javax.inject on the class path.
+    private static final String INJECT = "package javax.inject; public @interface Inject {}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testValidClasses() throws Exception
+    {
+        final List<String> errors = compile(ImmutableList.<String>of(),
+            "package test; import javax.inject.Inject; public class Service { @Inject Service(String name) {} }",
+            "package test; import javax.inject.Inject; public class Outer { public static class Nested { @Inject String name; @Inject Nested() {} } }",
+            // Subclasses call the injectable constructor of their abstract base class.
+            "package test; import javax.inject.Inject; public abstract class Base { @Inject Base(String name) {} }",
+            "package test; public class Plain { Plain() {} }");
+
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    @Test
+    public void testEnforcerRules() throws Exception
+    {
+        final List<String> errors = compile(ImmutableList.<String>of(),
+            "package test; import javax.inject.Inject; public class Twice { @Inject Twice() {} @Inject Twice(String name) {} }",
+            "package test; import javax.inject.Inject; public class Outer { public class Inner { @Inject Inner() {} } }",
+            "package test; import javax.inject.Inject; public class Members { @Inject final String name = null; @Inject <T> void setValue(T value) {} }");
+
+        assertEquals(errors.toString(), 4, errors.size());
+    }
+
+    @Test
+    public void testRequireAtInjectOnConstructors() throws Exception
+    {
+        final String source = "package test; import javax.inject.Inject; public class Fields { @Inject String name; }";
+
+        assertTrue(compile(ImmutableList.<String>of(), source).isEmpty());
+
+        final List<String> errors = compile(ImmutableList.of("-A" + InjectionCheckProcessor.REQUIRE_AT_INJECT_ON_CONSTRUCTORS + "=true"), source);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("no injectable constructor"));
+    }
+
+    private List<String> compile(final List<String> options, final String ... sources) throws Exception
+    {
+        final File output = temporaryFolder.newFolder();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF_8)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, ImmutableList.of(output));
+
+            final ImmutableList.Builder<JavaFileObject> units = ImmutableList.builder();
+            units.add(new Source(INJECT));
+            for (String source : sources) {
+                units.add(new Source(source));
+            }
+
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, units.build());
+            task.setProcessors(ImmutableList.of(new InjectionCheckProcessor()));
+            task.call();
+        }
+
+        final ImmutableList.Builder<String> errors = ImmutableList.builder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors.build();
+    }
+
+    private static final class Source extends SimpleJavaFileObject
+    {
+        private final String code;
+
+        private Source(final String code)
+        {
+            super(URI.create("string:///" + getName(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors)
+        {
+            return code;
+        }
+
+        private static String getName(final String code)
+        {
+            final String packageName = code.substring("package ".length(), code.indexOf(';'));
+            final int start = code.indexOf(" class ") >= 0 ? code.indexOf(" class ") + " class ".length() : code.indexOf("@interface ") + "@interface ".length();
+            return packageName + "." + code.substring(start, code.indexOf(' ', start));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Limits the number of concurrent calls of the methods of a Guice constructed object. Calls beyond the
+ * limit wait up to <tt>maxWaitMillis</tt> for a slot and then fail with a {@link BulkheadRejectedException},
+ * so that a slow dependency can not tie up all request threads.
+ * <br>
+ * On a class, the annotation applies to all interceptable methods of the class. Methods and classes
+ * with the same name share one limit and must declare the same limits. A call that the thread makes while
+ * it already holds a slot of the bulkhead does not take another one. The limits can be overridden and made
+ * adaptive per name in the configuration, see {@link BulkheadConfiguration}.
+ * <br>
+ * Honored when bulkheads are enabled with {@link GuiceBundle.Builder#enableBulkheads()}.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target({METHOD, TYPE})
+public @interface Bulkhead
+{
+    /**
+     * The name of the bulkhead. Defaults to the name of the class, or of the method if the method is annotated.
+     */
+    String name() default "";
+
+    /**
+     * The maximum number of concurrent calls.
+     */
+    int maxConcurrent() default 10;
+
+    /**
+     * How long a call waits for a slot before it is rejected.
+     */
+    long maxWaitMillis() default 0;
+}
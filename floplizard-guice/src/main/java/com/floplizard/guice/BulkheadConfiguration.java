@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+/**
+ * Configuration for a {@link Bulkhead}. Settings that are not given are taken from the annotation.
+ * <br>
+ * An adaptive bulkhead lowers its limit by the backoff ratio whenever a call takes longer than the
+ * latency threshold, and raises it again slowly (by one per limit calls) while calls are fast, but never
+ * beyond <tt>maxConcurrent</tt> or below <tt>minConcurrent</tt>.
+ *
+ * <pre>
+ *     bulkheads:
+ *       payments:
+ *         maxConcurrent: 20
+ *         maxWait: 100ms
+ *         adaptive: true
+ *         latencyThreshold: 500ms
+ * </pre>
+ */
+public class BulkheadConfiguration
+{
+    @JsonProperty
+    private Integer maxConcurrent = null;
+
+    @JsonProperty
+    private Duration maxWait = null;
+
+    @JsonProperty
+    private boolean adaptive = false;
+
+    @JsonProperty
+    private int minConcurrent = 1;
+
+    @JsonProperty
+    private Duration latencyThreshold = Duration.seconds(1);
+
+    @JsonProperty
+    private double backoffRatio = 0.9;
+
+    /**
+     * The maximum number of concurrent calls.
+     */
+    @Min(1)
+    public Integer getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    public BulkheadConfiguration setMaxConcurrent(final Integer maxConcurrent)
+    {
+        this.maxConcurrent = maxConcurrent;
+        return this;
+    }
+
+    /**
+     * How long a call waits for a slot before it is rejected.
+     */
+    public Duration getMaxWait()
+    {
+        return maxWait;
+    }
+
+    public BulkheadConfiguration setMaxWait(final Duration maxWait)
+    {
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    /**
+     * If true, the limit adapts to the latency of the calls. Default is false.
+     */
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    public BulkheadConfiguration setAdaptive(final boolean adaptive)
+    {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    /**
+     * The lowest limit of an adaptive bulkhead. Default is 1.
+     */
+    @Min(1)
+    public int getMinConcurrent()
+    {
+        return minConcurrent;
+    }
+
+    public BulkheadConfiguration setMinConcurrent(final int minConcurrent)
+    {
+        this.minConcurrent = minConcurrent;
+        return this;
+    }
+
+    /**
+     * Calls that take longer lower the limit of an adaptive bulkhead. Default is one second.
+     */
+    public Duration getLatencyThreshold()
+    {
+        return latencyThreshold;
+    }
+
+    public BulkheadConfiguration setLatencyThreshold(final Duration latencyThreshold)
+    {
+        this.latencyThreshold = latencyThreshold;
+        return this;
+    }
+
+    /**
+     * The factor by which a slow call lowers the limit of an adaptive bulkhead. Default is 0.9.
+     */
+    @DecimalMin("0.1")
+    @DecimalMax("0.99")
+    public double getBackoffRatio()
+    {
+        return backoffRatio;
+    }
+
+    public BulkheadConfiguration setBackoffRatio(final double backoffRatio)
+    {
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Reports bulkheads that rejected calls since the previous check as unhealthy. Bound by the
+ * {@link BulkheadModule} when enabled with {@link GuiceBundle.Builder#enableBulkheadHealthCheck()}.
+ */
+class BulkheadHealthCheck extends HealthCheck
+{
+    private final Collection<ConcurrencyLimiter> limiters;
+
+    // Guarded by this.
+    private final Map<String, Long> previousRejections = Maps.newHashMap();
+
+    BulkheadHealthCheck(final Collection<ConcurrencyLimiter> limiters)
+    {
+        this.limiters = checkNotNull(limiters, "limiters is null");
+    }
+
+    @Override
+    protected synchronized Result check()
+    {
+        final List<String> saturated = Lists.newArrayList();
+        for (ConcurrencyLimiter limiter : limiters) {
+            final long rejections = limiter.getRejectedCount();
+            final Long previous = previousRejections.put(limiter.getName(), rejections);
+            if (rejections > (previous == null ? 0 : previous)) {
+                saturated.add(limiter.getName() + " (" + limiter.getInFlight() + "/" + limiter.getLimit() + ")");
+            }
+        }
+
+        if (saturated.isEmpty()) {
+            return Result.healthy();
+        }
+        return Result.unhealthy("Bulkheads rejected calls: " + Joiner.on(", ").join(saturated));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Enforces the {@link Bulkhead} limits on the methods of all Guice constructed objects. If the health check
+ * is enabled, a {@link BulkheadHealthCheck} is bound, which Dropwizard picks up like any other health check.
+ */
+class BulkheadModule implements Module, TypeListener
+{
+    private final Map<String, BulkheadConfiguration> configurations;
+    private final boolean healthCheckEnabled;
+    private final MetricRegistry metrics;
+    private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    BulkheadModule(final Map<String, BulkheadConfiguration> configurations, final boolean healthCheckEnabled, final MetricRegistry metrics)
+    {
+        this.configurations = ImmutableMap.copyOf(checkNotNull(configurations, "configurations is null"));
+        this.healthCheckEnabled = healthCheckEnabled;
+        this.metrics = checkNotNull(metrics, "metrics is null");
+    }
+
+    @Override
+    public void configure(final Binder binder)
+    {
+        binder.bindListener(Matchers.any(), this);
+        if (healthCheckEnabled) {
+            binder.bind(BulkheadHealthCheck.class).toInstance(new BulkheadHealthCheck(getLimiters()));
+        }
+    }
+
+    /**
+     * The limiters by name. Filled while Guice encounters types with bulkheads.
+     */
+    Collection<ConcurrencyLimiter> getLimiters()
+    {
+        return limiters.values();
+    }
+
+    @Override
+    public <T> void hear(final TypeLiteral<T> type, final TypeEncounter<T> encounter)
+    {
+        final Class<? super T> rawType = type.getRawType();
+        if (Modifier.isFinal(rawType.getModifiers())) {
+            return;
+        }
+
+        for (Class<?> current = rawType; current != null && current != Object.class; current = current.getSuperclass()) {
+            final Bulkhead classBulkhead = current.getAnnotation(Bulkhead.class);
+            for (Method method : current.getDeclaredMethods()) {
+                if (!MethodMetricsModule.isInterceptable(method)) {
+                    continue;
+                }
+
+                final Bulkhead methodBulkhead = method.getAnnotation(Bulkhead.class);
+                if (methodBulkhead != null) {
+                    final String name = Strings.isNullOrEmpty(methodBulkhead.name()) ? MetricRegistry.name(current, method.getName()) : methodBulkhead.name();
+                    encounter.bindInterceptor(Matchers.only(method), new BulkheadInterceptor(getLimiter(name, methodBulkhead, method, encounter)));
+                }
+                else if (classBulkhead != null) {
+                    final String name = Strings.isNullOrEmpty(classBulkhead.name()) ? current.getName() : classBulkhead.name();
+                    encounter.bindInterceptor(Matchers.only(method), new BulkheadInterceptor(getLimiter(name, classBulkhead, method, encounter)));
+                }
+            }
+        }
+    }
+
+    private ConcurrencyLimiter getLimiter(final String name, final Bulkhead bulkhead, final Method method, final TypeEncounter<?> encounter)
+    {
+        ConcurrencyLimiter limiter = limiters.get(name);
+        if (limiter == null) {
+            // Types are encountered by one thread at a time.
+            limiter = new ConcurrencyLimiter(name, bulkhead, configurations.get(name), metrics);
+            limiters.put(name, limiter);
+        }
+        else {
+            final Bulkhead existing = limiter.getBulkhead();
+            if (existing.maxConcurrent() != bulkhead.maxConcurrent() || existing.maxWaitMillis() != bulkhead.maxWaitMillis()) {
+                encounter.addError("Bulkhead '%s' of method %s has maxConcurrent = %s and maxWaitMillis = %s, but is declared elsewhere with maxConcurrent = %s and maxWaitMillis = %s",
+                    name, method, bulkhead.maxConcurrent(), bulkhead.maxWaitMillis(), existing.maxConcurrent(), existing.maxWaitMillis());
+            }
+        }
+        return limiter;
+    }
+
+    private static final class BulkheadInterceptor implements MethodInterceptor
+    {
+        private final ConcurrencyLimiter limiter;
+
+        private BulkheadInterceptor(final ConcurrencyLimiter limiter)
+        {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            limiter.acquire();
+            final long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            }
+            finally {
+                limiter.release(System.nanoTime() - start);
+            }
+        }
+    }
+}
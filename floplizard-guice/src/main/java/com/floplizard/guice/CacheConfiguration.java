@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+/**
+ * Configuration for a cache used by {@link Cached} methods. See {@link CacheModule}.
+ *
+ * <pre>
+ *     caches:
+ *       users:
+ *         maximumSize: 10000
+ *         expireAfterWrite: 10m
+ *         refreshAfterWrite: 1m
+ * </pre>
+ */
+public class CacheConfiguration
+{
+    @JsonProperty
+    private long maximumSize = -1;
+
+    @JsonProperty
+    private long maximumWeight = -1;
+
+    @JsonProperty
+    private Duration expireAfterWrite = null;
+
+    @JsonProperty
+    private Duration expireAfterAccess = null;
+
+    @JsonProperty
+    private Duration refreshAfterWrite = null;
+
+    /**
+     * Maximum number of entries. A negative size does not limit the number of entries.
+     */
+    @Min(-1)
+    public long getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    public CacheConfiguration setMaximumSize(final long maximumSize)
+    {
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    /**
+     * Maximum total weight of the entries, as computed by the weigher registered with
+     * {@link CacheModule#weigher(String, com.google.common.cache.Weigher)}. A negative weight does not limit the
+     * weight. Can not be combined with <tt>maximumSize</tt>.
+     */
+    @Min(-1)
+    public long getMaximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    public CacheConfiguration setMaximumWeight(final long maximumWeight)
+    {
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    /**
+     * Entries are removed this long after they were created or refreshed. Not set by default.
+     */
+    public Duration getExpireAfterWrite()
+    {
+        return expireAfterWrite;
+    }
+
+    public CacheConfiguration setExpireAfterWrite(final Duration expireAfterWrite)
+    {
+        this.expireAfterWrite = expireAfterWrite;
+        return this;
+    }
+
+    /**
+     * Entries are removed this long after they were last used. Not set by default.
+     */
+    public Duration getExpireAfterAccess()
+    {
+        return expireAfterAccess;
+    }
+
+    public CacheConfiguration setExpireAfterAccess(final Duration expireAfterAccess)
+    {
+        this.expireAfterAccess = expireAfterAccess;
+        return this;
+    }
+
+    /**
+     * Entries that are used this long after they were created or refreshed are refreshed in the background.
+     * Until the refresh is done, the old value is returned. Not set by default.
+     */
+    public Duration getRefreshAfterWrite()
+    {
+        return refreshAfterWrite;
+    }
+
+    public CacheConfiguration setRefreshAfterWrite(final Duration refreshAfterWrite)
+    {
+        this.refreshAfterWrite = refreshAfterWrite;
+        return this;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Binder;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.name.Names;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Caches the results of {@link Cached} methods. The caches are configured by name in the Dropwizard
+ * configuration; a method that names a cache which is not configured fails the injector creation.
+ * <br>
+ * Every cache reports <tt>hits</tt>, <tt>misses</tt>, <tt>evictions</tt>, <tt>size</tt> and <tt>hit-ratio</tt>
+ * gauges named after this class and the cache, and for a tenant module after the tenant as well. The <tt>caches</tt> admin task inspects or flushes a cache:
+ *
+ * <pre>
+ *     POST /tasks/caches?name=users&amp;action=flush
+ * </pre>
+ *
+ * A tenant or a reloadable module group may install its own <tt>CacheModule</tt>. Its methods then use its own
+ * caches, the methods of a child injector without one use the caches of the nearest parent that has one. The
+ * <tt>caches</tt> task only covers the caches of the application.
+ * <br>
+ * Results are cached per object and arguments, so the arguments must implement <tt>equals</tt> and
+ * <tt>hashCode</tt>. Null results are cached, exceptions are not.
+ *
+ * <pre>
+ *     new CacheModule&lt;MyConfiguration&gt;(new Function&lt;MyConfiguration, Map&lt;String, CacheConfiguration&gt;&gt;() {
+ *         public Map&lt;String, CacheConfiguration&gt; apply(MyConfiguration configuration) {
+ *             return configuration.getCaches();
+ *         }
+ *     });
+ * </pre>
+ */
+public class CacheModule<T> extends DropwizardAwareModule<T>
+{
+    /** Every module binds its caches under its own name, so that child injectors can have their own. */
+    private static final AtomicLong CACHES_COUNTER = new AtomicLong();
+
+    private final Function<? super T, Map<String, CacheConfiguration>> cachesFunction;
+    private final Map<String, Weigher<Object, Object>> weighers = Maps.newHashMap();
+
+    public CacheModule(final Function<? super T, Map<String, CacheConfiguration>> cachesFunction)
+    {
+        this.cachesFunction = checkNotNull(cachesFunction, "cachesFunction is null");
+    }
+
+    /**
+     * Sets the weigher for a cache with a maximum weight. It is called with the method arguments as a
+     * {@link java.util.List} and the result. Null results weigh nothing.
+     */
+    public CacheModule<T> weigher(final String name, final Weigher<Object, Object> weigher)
+    {
+        weighers.put(checkNotNull(name, "name is null"), checkNotNull(weigher, "weigher is null"));
+        return this;
+    }
+
+    @Override
+    protected void configure(final Binder binder, final T configuration, final Environment environment)
+    {
+        final Map<String, CacheConfiguration> caches = checkNotNull(cachesFunction.apply(configuration), "cache configuration is null");
+        final MethodCaches methodCaches = new MethodCaches(caches, weighers, getTenant(), new ReplaceableGauges(environment.metrics(), getGaugeOwner()));
+
+        binder.bind(MethodCaches.class).annotatedWith(Names.named("floplizard-caches-" + CACHES_COUNTER.incrementAndGet())).toInstance(methodCaches);
+        if (!isBuiltAfterStartup()) {
+            binder.bind(CacheTask.class).toInstance(new CacheTask(methodCaches));
+        }
+        binder.bindListener(Matchers.any(), new CachedMethodListener(methodCaches));
+    }
+
+    private static final class CachedMethodListener implements TypeListener
+    {
+        private final MethodCaches methodCaches;
+
+        private CachedMethodListener(final MethodCaches methodCaches)
+        {
+            this.methodCaches = methodCaches;
+        }
+
+        @Override
+        public <I> void hear(final TypeLiteral<I> type, final TypeEncounter<I> encounter)
+        {
+            final Class<? super I> rawType = type.getRawType();
+            if (Modifier.isFinal(rawType.getModifiers())) {
+                return;
+            }
+
+            for (Class<?> current = rawType; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Method method : current.getDeclaredMethods()) {
+                    final Cached cached = method.getAnnotation(Cached.class);
+                    if (cached == null || !MethodMetricsModule.isInterceptable(method)) {
+                        continue;
+                    }
+                    if (method.getReturnType() == void.class) {
+                        encounter.addError("Method %s is @Cached but returns nothing", method);
+                        continue;
+                    }
+
+                    // Once the injector of the module exists, the listener hears the types of child injectors, which
+                    // may have caches of their own. The interceptor then picks the caches on the first call.
+                    final Provider<Injector> injector = methodCaches.isInjected() ? encounter.getProvider(Injector.class) : null;
+                    if (injector == null && methodCaches.getCache(cached.value()) == null) {
+                        encounter.addError("Method %s uses cache '%s', which is not configured", method, cached.value());
+                        continue;
+                    }
+                    // The cache loader calls the method through the proxy, whatever its visibility.
+                    method.setAccessible(true);
+                    encounter.bindInterceptor(Matchers.only(method), new CachingInterceptor(method, cached.value(), methodCaches, injector));
+                }
+            }
+        }
+    }
+
+    private static final class CachingInterceptor implements MethodInterceptor
+    {
+        private final Method method;
+        private final String name;
+        private final MethodCaches methodCaches;
+        private final Provider<Injector> injector;
+
+        /** Absent if the method uses the caches of another module. */
+        private volatile Optional<LoadingCache<MethodCall, Object>> cache = null;
+
+        /**
+         * The injector is null for the types of the injector of the module, the cache is then known to exist.
+         */
+        private CachingInterceptor(final Method method, final String name, final MethodCaches methodCaches, final Provider<Injector> injector)
+        {
+            this.method = method;
+            this.name = name;
+            this.methodCaches = methodCaches;
+            this.injector = injector;
+        }
+
+        private Optional<LoadingCache<MethodCall, Object>> getCache()
+        {
+            Optional<LoadingCache<MethodCall, Object>> result = cache;
+            if (result == null) {
+                if (injector == null || MethodCaches.find(injector.get()) == methodCaches) {
+                    final LoadingCache<MethodCall, Object> loadingCache = methodCaches.getCache(name);
+                    checkState(loadingCache != null, "Method %s uses cache '%s', which is not configured", method, name);
+                    result = Optional.of(loadingCache);
+                }
+                else {
+                    result = Optional.absent();
+                }
+                cache = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            final Optional<LoadingCache<MethodCall, Object>> cache = getCache();
+            if (!cache.isPresent() || MethodCaches.isRefreshing()) {
+                return invocation.proceed();
+            }
+
+            final Object result;
+            try {
+                // A miss proceeds with this invocation, only refreshes call the method again.
+                result = cache.get().get(new MethodCall(invocation.getThis(), method, invocation.getArguments()), new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        try {
+                            final Object value = invocation.proceed();
+                            return value == null ? MethodCaches.NULL : value;
+                        }
+                        catch (Throwable t) {
+                            Throwables.propagateIfPossible(t, Exception.class);
+                            throw Throwables.propagate(t);
+                        }
+                    }
+                });
+            }
+            catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+                throw e.getCause();
+            }
+            return result == MethodCaches.NULL ? null : result;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import com.google.common.base.Joiner;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
+
+import io.dropwizard.servlets.tasks.Task;
+
+/**
+ * Inspects or flushes the caches of the {@link CacheModule}. Takes the cache <tt>name</tt> and an <tt>action</tt>,
+ * which is <tt>inspect</tt> (the default) or <tt>flush</tt>. Without a name, the action applies to all caches.
+ */
+class CacheTask extends Task
+{
+    private final MethodCaches methodCaches;
+
+    CacheTask(final MethodCaches methodCaches)
+    {
+        super("caches");
+        this.methodCaches = checkNotNull(methodCaches, "methodCaches is null");
+    }
+
+    @Override
+    public void execute(final ImmutableMultimap<String, String> parameters, final PrintWriter output)
+    {
+        final String action = Iterables.getFirst(parameters.get("action"), "inspect");
+        if (!"inspect".equals(action) && !"flush".equals(action)) {
+            output.println("Unknown action '" + action + "', use inspect or flush");
+            return;
+        }
+
+        final Collection<String> names = parameters.get("name").isEmpty() ? methodCaches.getNames() : parameters.get("name");
+        for (String name : names) {
+            final LoadingCache<?, ?> cache = methodCaches.getCache(name);
+            if (cache == null) {
+                output.println("Unknown cache '" + name + "', known caches are " + Joiner.on(", ").join(methodCaches.getNames()));
+            }
+            else if ("flush".equals(action)) {
+                final long size = cache.size();
+                cache.invalidateAll();
+                output.println(name + ": flushed " + size + " entries");
+            }
+            else {
+                final CacheStats stats = cache.stats();
+                output.println(name + ": size=" + cache.size()
+                    + " hits=" + stats.hitCount()
+                    + " misses=" + stats.missCount()
+                    + " evictions=" + stats.evictionCount()
+                    + " hitRatio=" + stats.hitRate()
+                    + " averageLoadPenaltyNanos=" + (long) stats.averageLoadPenalty());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Serves the results of a method from a cache, keyed by the object and the method arguments. The cache is
+ * configured by name in the {@link CacheModule}. Exceptions are not cached.
+ * <br>
+ * The method must not be private, static or final and the object must be constructed by Guice.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface Cached
+{
+    /**
+     * The name of the cache.
+     */
+    String value();
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes to an output stream in chunks of a fixed size. The chunk buffer is taken from a pool and returned
+ * when the stream is closed, so writing a large response allocates no buffers. Every full chunk is written
+ * and flushed to the underlying stream; a slow client blocks the writer there instead of piling up data in
+ * memory.
+ * <br>
+ * Flushing this stream does nothing, only full chunks and {@link #close()} write to the underlying stream.
+ * Closing does not close the underlying stream.
+ */
+final class ChunkedOutputStream extends OutputStream
+{
+    private final OutputStream out;
+    private final BufferPool pool;
+    private byte[] buffer;
+    private int count = 0;
+
+    ChunkedOutputStream(final OutputStream out, final BufferPool pool)
+    {
+        this.out = checkNotNull(out, "out is null");
+        this.pool = checkNotNull(pool, "pool is null");
+        this.buffer = pool.acquire();
+    }
+
+    @Override
+    public void write(final int b) throws IOException
+    {
+        if (count == buffer.length) {
+            writeChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException
+    {
+        checkNotNull(buffer, "stream is closed");
+        int written = 0;
+        while (written < length) {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            final int n = Math.min(length - written, buffer.length - count);
+            System.arraycopy(bytes, offset + written, buffer, count, n);
+            count += n;
+            written += n;
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            writeChunk();
+        }
+        finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void writeChunk() throws IOException
+    {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            out.flush();
+            count = 0;
+        }
+    }
+
+    /**
+     * A bounded pool of equally sized byte buffers. Buffers beyond the bound are left to the garbage collector.
+     */
+    static final class BufferPool
+    {
+        private final int bufferSize;
+        private final int maxBuffers;
+        private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        BufferPool(final int bufferSize, final int maxBuffers)
+        {
+            checkArgument(bufferSize > 0, "bufferSize must be positive");
+            this.bufferSize = bufferSize;
+            this.maxBuffers = maxBuffers;
+        }
+
+        byte[] acquire()
+        {
+            final byte[] buffer = buffers.poll();
+            if (buffer == null) {
+                return new byte[bufferSize];
+            }
+            size.decrementAndGet();
+            return buffer;
+        }
+
+        void release(final byte[] buffer)
+        {
+            if (size.incrementAndGet() <= maxBuffers) {
+                buffers.offer(buffer);
+            }
+            else {
+                size.decrementAndGet();
+            }
+        }
+
+        int getPooledBuffers()
+        {
+            return size.get();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Lets concurrent calls of a method of a Guice constructed object with equal arguments share one execution.
+ * A call that arrives while an equal call is in flight waits for it and returns its result or throws its
+ * exception. The arguments must implement <tt>equals</tt> and <tt>hashCode</tt>.
+ * <br>
+ * If a <tt>batchMethod</tt> is given, the method must take a single argument. The first call opens a batch
+ * and waits for <tt>batchWindowMillis</tt>; the arguments of all calls that arrive meanwhile are then passed
+ * to the batch method at once, which must take a {@link java.util.Set} of arguments and return a
+ * {@link java.util.Map} from argument to result. Arguments that are missing from the map return null.
+ *
+ * <pre>
+ *     &#64;Coalesce(batchMethod = "getUsers")
+ *     public User getUser(String id) { ... }
+ *
+ *     public Map&lt;String, User&gt; getUsers(Set&lt;String&gt; ids) { ... }
+ * </pre>
+ *
+ * Honored when coalescing is enabled with {@link GuiceBundle.Builder#enableRequestCoalescing()}.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface Coalesce
+{
+    /**
+     * The name of the method that executes a batch of calls. By default, calls are not batched.
+     */
+    String batchMethod() default "";
+
+    /**
+     * How long a batch collects calls before it is executed.
+     */
+    long batchWindowMillis() default 10;
+}
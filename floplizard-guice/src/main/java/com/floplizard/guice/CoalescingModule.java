@@ -0,0 +1,277 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Coalesces concurrent calls of {@link Coalesce} methods of all Guice constructed objects. For every method,
+ * the <tt>calls</tt> and <tt>executions</tt> meters and the <tt>ratio</tt> gauge, the share of calls that did
+ * not execute the method themselves, are reported under the name of the method and <tt>coalesce</tt>.
+ */
+class CoalescingModule implements Module, TypeListener
+{
+    private final MetricRegistry metrics;
+
+    CoalescingModule(final MetricRegistry metrics)
+    {
+        this.metrics = checkNotNull(metrics, "metrics is null");
+    }
+
+    @Override
+    public void configure(final Binder binder)
+    {
+        binder.bindListener(Matchers.any(), this);
+    }
+
+    @Override
+    public <T> void hear(final TypeLiteral<T> type, final TypeEncounter<T> encounter)
+    {
+        final Class<? super T> rawType = type.getRawType();
+        if (Modifier.isFinal(rawType.getModifiers())) {
+            return;
+        }
+
+        for (Class<?> current = rawType; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                final Coalesce coalesce = method.getAnnotation(Coalesce.class);
+                if (coalesce == null || !MethodMetricsModule.isInterceptable(method)) {
+                    continue;
+                }
+
+                final Meter calls = metrics.meter(name(method.getDeclaringClass(), method.getName(), "coalesce", "calls"));
+                final Meter executions = metrics.meter(name(method.getDeclaringClass(), method.getName(), "coalesce", "executions"));
+                registerRatio(name(method.getDeclaringClass(), method.getName(), "coalesce", "ratio"), calls, executions);
+
+                if (coalesce.batchMethod().isEmpty()) {
+                    encounter.bindInterceptor(Matchers.only(method), new SingleFlightInterceptor(method, calls, executions));
+                    continue;
+                }
+
+                final Method batchMethod = findBatchMethod(rawType, coalesce.batchMethod());
+                if (method.getParameterTypes().length != 1) {
+                    encounter.addError("Method %s is batched, so it must take exactly one argument", method);
+                }
+                else if (batchMethod == null) {
+                    encounter.addError("Method %s is batched by %s, but there is no %s(Set) method that returns a Map", method, coalesce.batchMethod(), coalesce.batchMethod());
+                }
+                else {
+                    batchMethod.setAccessible(true);
+                    encounter.bindInterceptor(Matchers.only(method), new BatchingInterceptor(batchMethod, coalesce.batchWindowMillis(), calls, executions));
+                }
+            }
+        }
+    }
+
+    private void registerRatio(final String name, final Meter calls, final Meter executions)
+    {
+        // A method is seen again for every subclass.
+        if (metrics.getGauges().containsKey(name)) {
+            return;
+        }
+        metrics.register(name, new RatioGauge() {
+            @Override
+            protected Ratio getRatio()
+            {
+                final long count = calls.getCount();
+                return Ratio.of(count - executions.getCount(), count);
+            }
+        });
+    }
+
+    private static Method findBatchMethod(final Class<?> type, final String name)
+    {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                final Class<?>[] parameterTypes = method.getParameterTypes();
+                if (method.getName().equals(name)
+                    && !Modifier.isStatic(method.getModifiers())
+                    && parameterTypes.length == 1
+                    && parameterTypes[0].isAssignableFrom(Set.class)
+                    && Map.class.isAssignableFrom(method.getReturnType())) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object getResult(final SettableFuture<Object> future) throws Throwable
+    {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        }
+        catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class SingleFlightInterceptor implements MethodInterceptor
+    {
+        private final Method method;
+        private final Meter calls;
+        private final Meter executions;
+        private final ConcurrentMap<MethodCall, SettableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+        private SingleFlightInterceptor(final Method method, final Meter calls, final Meter executions)
+        {
+            this.method = method;
+            this.calls = calls;
+            this.executions = executions;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            final MethodCall call = new MethodCall(invocation.getThis(), method, invocation.getArguments());
+            final SettableFuture<Object> future = SettableFuture.create();
+            final SettableFuture<Object> existing = inFlight.putIfAbsent(call, future);
+            calls.mark();
+            if (existing != null) {
+                return getResult(existing);
+            }
+
+            executions.mark();
+            try {
+                final Object result = invocation.proceed();
+                future.set(result);
+                return result;
+            }
+            catch (Throwable t) {
+                future.setException(t);
+                throw t;
+            }
+            finally {
+                inFlight.remove(call, future);
+            }
+        }
+    }
+
+    private static final class BatchingInterceptor implements MethodInterceptor
+    {
+        private final Method batchMethod;
+        private final long windowMillis;
+        private final Meter calls;
+        private final Meter executions;
+
+        // The open batch per object, guarded by itself.
+        private final Map<Object, Map<Object, SettableFuture<Object>>> openBatches = new IdentityHashMap<>();
+
+        private BatchingInterceptor(final Method batchMethod, final long windowMillis, final Meter calls, final Meter executions)
+        {
+            this.batchMethod = batchMethod;
+            this.windowMillis = windowMillis;
+            this.calls = calls;
+            this.executions = executions;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            calls.mark();
+
+            final Object target = invocation.getThis();
+            final Object argument = invocation.getArguments()[0];
+            final Map<Object, SettableFuture<Object>> batch;
+            final SettableFuture<Object> future;
+            final boolean leader;
+            synchronized (openBatches) {
+                Map<Object, SettableFuture<Object>> openBatch = openBatches.get(target);
+                leader = openBatch == null;
+                if (leader) {
+                    openBatch = Maps.newLinkedHashMap();
+                    openBatches.put(target, openBatch);
+                }
+                batch = openBatch;
+
+                SettableFuture<Object> existing = batch.get(argument);
+                if (existing == null) {
+                    existing = SettableFuture.create();
+                    batch.put(argument, existing);
+                }
+                future = existing;
+            }
+
+            if (leader) {
+                executions.mark();
+                try {
+                    Thread.sleep(windowMillis);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (openBatches) {
+                    openBatches.remove(target);
+                }
+                execute(target, batch);
+            }
+            return getResult(future);
+        }
+
+        private void execute(final Object target, final Map<Object, SettableFuture<Object>> batch)
+        {
+            // The batch is closed, no other thread changes it anymore.
+            try {
+                final Set<Object> arguments = Collections.unmodifiableSet(new LinkedHashSet<>(batch.keySet()));
+                final Map<?, ?> results = (Map<?, ?>) batchMethod.invoke(target, arguments);
+                for (Map.Entry<Object, SettableFuture<Object>> entry : batch.entrySet()) {
+                    entry.getValue().set(results == null ? null : results.get(entry.getKey()));
+                }
+            }
+            catch (InvocationTargetException e) {
+                setException(batch, e.getCause());
+            }
+            catch (Throwable t) {
+                setException(batch, t);
+            }
+        }
+
+        private static void setException(final Map<Object, SettableFuture<Object>> batch, final Throwable t)
+        {
+            for (SettableFuture<Object> future : batch.values()) {
+                future.setException(t);
+            }
+        }
+    }
+}
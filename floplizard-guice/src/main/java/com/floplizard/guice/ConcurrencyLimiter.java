@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+
+/**
+ * The limit of a {@link Bulkhead}. Reports the <tt>in-flight</tt> calls, the current <tt>limit</tt>, the
+ * <tt>utilization</tt> and the <tt>rejected</tt> calls as metrics named after the bulkhead.
+ * <br>
+ * A thread holds at most one slot of a limiter. Nested calls, e.g. a method of a class with a bulkhead
+ * that calls another method of the class through its proxy, run in the slot of the outermost call.
+ */
+class ConcurrencyLimiter
+{
+    private final String name;
+    private final Bulkhead bulkhead;
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final boolean adaptive;
+    private final int minConcurrent;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Meter rejected;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    /** The number of nested calls of the current thread that run in its slot. */
+    private final ThreadLocal<Integer> depth = new ThreadLocal<>();
+
+    // Guarded by lock.
+    private int inFlight = 0;
+    private double limit;
+
+    ConcurrencyLimiter(final String name, final Bulkhead bulkhead, final BulkheadConfiguration config, final MetricRegistry metrics)
+    {
+        this.name = checkNotNull(name, "name is null");
+        this.bulkhead = checkNotNull(bulkhead, "bulkhead is null");
+        checkNotNull(metrics, "metrics is null");
+
+        this.maxConcurrent = config != null && config.getMaxConcurrent() != null ? config.getMaxConcurrent() : bulkhead.maxConcurrent();
+        this.maxWaitNanos = config != null && config.getMaxWait() != null ? config.getMaxWait().toNanoseconds() : TimeUnit.MILLISECONDS.toNanos(bulkhead.maxWaitMillis());
+        this.adaptive = config != null && config.isAdaptive();
+        this.minConcurrent = adaptive ? Math.min(config.getMinConcurrent(), maxConcurrent) : maxConcurrent;
+        this.latencyThresholdNanos = adaptive ? config.getLatencyThreshold().toNanoseconds() : Long.MAX_VALUE;
+        this.backoffRatio = adaptive ? config.getBackoffRatio() : 1.0;
+        checkArgument(maxConcurrent > 0, "bulkhead %s must allow at least one call", name);
+        this.limit = maxConcurrent;
+
+        this.rejected = metrics.meter(name(Bulkhead.class, name, "rejected"));
+        metrics.register(name(Bulkhead.class, name, "in-flight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue()
+            {
+                return getInFlight();
+            }
+        });
+        metrics.register(name(Bulkhead.class, name, "limit"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue()
+            {
+                return getLimit();
+            }
+        });
+        metrics.register(name(Bulkhead.class, name, "utilization"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio()
+            {
+                lock.lock();
+                try {
+                    return Ratio.of(inFlight, (int) limit);
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * The annotation that the limiter was created for.
+     */
+    Bulkhead getBulkhead()
+    {
+        return bulkhead;
+    }
+
+    int getInFlight()
+    {
+        lock.lock();
+        try {
+            return inFlight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit()
+    {
+        lock.lock();
+        try {
+            return (int) limit;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    long getRejectedCount()
+    {
+        return rejected.getCount();
+    }
+
+    /**
+     * Takes a slot, waiting up to the maximum wait time for one. If the thread holds a slot already, the
+     * call runs in that slot.
+     *
+     * @throws BulkheadRejectedException if no slot became available or the thread was interrupted while waiting.
+     */
+    void acquire()
+    {
+        final Integer held = depth.get();
+        if (held != null) {
+            depth.set(held + 1);
+            return;
+        }
+
+        lock.lock();
+        try {
+            long remainingNanos = maxWaitNanos;
+            while (inFlight >= (int) limit) {
+                if (remainingNanos <= 0) {
+                    rejected.mark();
+                    throw new BulkheadRejectedException("Bulkhead " + name + " is full with " + inFlight + " concurrent calls");
+                }
+                try {
+                    remainingNanos = available.awaitNanos(remainingNanos);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejected.mark();
+                    throw new BulkheadRejectedException("Interrupted while waiting for bulkhead " + name);
+                }
+            }
+            inFlight++;
+        }
+        finally {
+            lock.unlock();
+        }
+        depth.set(1);
+    }
+
+    /**
+     * Returns a slot taken by {@link #acquire()} once the outermost call of the thread is done. An adaptive
+     * limit is adjusted to the latency of that call.
+     */
+    void release(final long latencyNanos)
+    {
+        final int held = depth.get();
+        if (held > 1) {
+            depth.set(held - 1);
+            return;
+        }
+        depth.remove();
+
+        lock.lock();
+        try {
+            inFlight--;
+            final int previousLimit = (int) limit;
+            if (adaptive) {
+                if (latencyNanos > latencyThresholdNanos) {
+                    limit = Math.max(minConcurrent, limit * backoffRatio);
+                }
+                else {
+                    limit = Math.min(maxConcurrent, limit + 1.0 / limit);
+                }
+            }
+            if ((int) limit > previousLimit) {
+                available.signalAll();
+            }
+            else {
+                available.signal();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
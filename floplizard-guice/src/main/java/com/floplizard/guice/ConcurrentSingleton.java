@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import com.google.inject.ScopeAnnotation;
+
+/**
+ * A singleton like {@link com.google.inject.Singleton}, including eager creation in
+ * {@link com.google.inject.Stage#PRODUCTION}. Guice creates all its singletons under a single lock; a concurrent
+ * singleton only locks its own binding, so threads that need different singletons for the first time at the
+ * same time (e.g. resources that Jersey asks for right after startup) do not wait for each other.
+ * <br>
+ * Circular dependencies between concurrent singletons fail with a {@link com.google.inject.ProvisionException}.
+ * In {@link com.google.inject.Stage#DEVELOPMENT}, where Guice creates its singletons lazily, a concurrent singleton
+ * must not depend on a {@link com.google.inject.Singleton}, neither directly nor through unscoped bindings; the
+ * <tt>GuiceBundle</tt> fails with a {@link com.google.inject.ConfigurationException} if one does.
+ */
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+@ScopeAnnotation
+public @interface ConcurrentSingleton
+{
+}
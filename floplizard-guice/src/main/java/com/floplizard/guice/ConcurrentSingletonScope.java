@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.Message;
+
+/**
+ * A singleton scope that locks per binding instead of injector wide. {@link Scopes#SINGLETON} creates all
+ * singletons under one global lock, so threads that need different singletons at the same time wait for
+ * each other; with this scope, only threads that need the same singleton do.
+ * <br>
+ * Circular dependencies are reported as errors instead of deadlocking, both when one thread needs a
+ * singleton that it is already creating and when threads end up waiting for each other. The cycle detection
+ * can not see the global lock of {@link Scopes#SINGLETON}, so in {@link Stage#DEVELOPMENT},
+ * {@link #checkDependencies(Injector)} rejects concurrent singletons that depend on Guice singletons.
+ */
+class ConcurrentSingletonScope implements Scope
+{
+    private static final Object NULL = new Object();
+
+    /** The singleton each thread is waiting for. Shared by all instances, cycles may cross injectors. */
+    private static final Map<Thread, SingletonProvider<?>> WAITING = Maps.newHashMap();
+
+    @Override
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped)
+    {
+        return new SingletonProvider<>(key, unscoped);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConcurrentSingleton";
+    }
+
+    /**
+     * Creates the instances of all bindings of the injector in this scope. Guice only creates its own
+     * singletons eagerly.
+     */
+    void createSingletons(final Injector injector)
+    {
+        for (Binding<?> binding : injector.getBindings().values()) {
+            if (Scopes.isScoped(binding, this, ConcurrentSingleton.class)) {
+                binding.getProvider().get();
+            }
+        }
+    }
+
+    /**
+     * Fails if a concurrent singleton of a {@link Stage#DEVELOPMENT} injector depends on a Guice singleton,
+     * directly or through unscoped bindings. The thread that creates the concurrent singleton would wait for the
+     * global Guice lock while it holds the lock of the concurrent singleton, and a thread that holds the global
+     * lock may wait for the concurrent singleton in turn.
+     * <br>
+     * In {@link Stage#PRODUCTION}, Guice creates all its singletons with the injector, before anything can hold
+     * the lock of a concurrent singleton, so there is nothing to wait for. {@link LazySingleton}s are not
+     * checked, they commonly depend on Guice singletons such as DAOs.
+     * <br>
+     * Only dependencies that Guice knows of are checked, singletons that are looked up from an injected
+     * {@link Injector} are not.
+     */
+    static void checkDependencies(final Injector injector)
+    {
+        if (injector.getInstance(Stage.class) != Stage.DEVELOPMENT) {
+            return;
+        }
+
+        final List<Message> errors = Lists.newArrayList();
+        for (Binding<?> binding : injector.getBindings().values()) {
+            if (isConcurrentSingleton(binding)) {
+                final List<Key<?>> path = Lists.newArrayList();
+                path.add(binding.getKey());
+                checkDependencies(injector, binding, path, Sets.<Key<?>>newHashSet(), errors);
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new ConfigurationException(errors);
+        }
+    }
+
+    private static void checkDependencies(final Injector injector, final Binding<?> binding, final List<Key<?>> path, final Set<Key<?>> visited, final List<Message> errors)
+    {
+        if (!(binding instanceof HasDependencies)) {
+            return;
+        }
+
+        for (Dependency<?> dependency : ((HasDependencies) binding).getDependencies()) {
+            final Key<?> key = dependency.getKey();
+            if (!visited.add(key)) {
+                continue;
+            }
+
+            final Binding<?> target = injector.getBinding(key);
+            path.add(key);
+            if (Scopes.isSingleton(target) && !(target instanceof InstanceBinding<?>)) {
+                errors.add(new Message(String.format("Concurrent singleton depends on a Guice singleton: %s. Bind %s as a concurrent singleton instead", Joiner.on(" -> ").join(path), key)));
+            }
+            else if (!isSingleton(target)) {
+                // Concurrent singletons that are reached here are checked on their own.
+                checkDependencies(injector, target, path, visited, errors);
+            }
+            path.remove(path.size() - 1);
+        }
+    }
+
+    /**
+     * Returns true if the binding is a singleton, either in the Guice singleton scope or as a
+     * {@link ConcurrentSingleton} or {@link LazySingleton}.
+     */
+    static boolean isSingleton(final Binding<?> binding)
+    {
+        return Scopes.isSingleton(binding) || binding.acceptScopingVisitor(new DefaultBindingScopingVisitor<Boolean>() {
+            @Override
+            public Boolean visitScope(final Scope scope)
+            {
+                return scope instanceof ConcurrentSingletonScope || scope instanceof LazySingletonScope;
+            }
+
+            @Override
+            public Boolean visitScopeAnnotation(final Class<? extends Annotation> scopeAnnotation)
+            {
+                return scopeAnnotation == ConcurrentSingleton.class || scopeAnnotation == LazySingleton.class;
+            }
+
+            @Override
+            protected Boolean visitOther()
+            {
+                return false;
+            }
+        });
+    }
+
+    private static boolean isConcurrentSingleton(final Binding<?> binding)
+    {
+        return binding.acceptScopingVisitor(new DefaultBindingScopingVisitor<Boolean>() {
+            @Override
+            public Boolean visitScope(final Scope scope)
+            {
+                return scope instanceof ConcurrentSingletonScope;
+            }
+
+            @Override
+            public Boolean visitScopeAnnotation(final Class<? extends Annotation> scopeAnnotation)
+            {
+                return scopeAnnotation == ConcurrentSingleton.class;
+            }
+
+            @Override
+            protected Boolean visitOther()
+            {
+                return false;
+            }
+        });
+    }
+
+    private static void lock(final SingletonProvider<?> provider)
+    {
+        if (provider.lock.tryLock()) {
+            return;
+        }
+
+        final Thread current = Thread.currentThread();
+        synchronized (WAITING) {
+            final List<Key<?>> cycle = Lists.newArrayList();
+            cycle.add(provider.key);
+            for (Thread owner = provider.lock.getOwner(); owner != null; ) {
+                if (owner == current) {
+                    throw new ProvisionException("Circular dependency between singletons created on different threads: " + Joiner.on(" -> ").join(cycle));
+                }
+                final SingletonProvider<?> waitingFor = WAITING.get(owner);
+                if (waitingFor == null) {
+                    break;
+                }
+                cycle.add(waitingFor.key);
+                owner = waitingFor.lock.getOwner();
+            }
+            WAITING.put(current, provider);
+        }
+
+        try {
+            provider.lock.lock();
+        }
+        finally {
+            synchronized (WAITING) {
+                WAITING.remove(current);
+            }
+        }
+    }
+
+    private static final class SingletonProvider<T> implements Provider<T>
+    {
+        private final Key<T> key;
+        private final Provider<T> unscoped;
+        private final OwnerLock lock = new OwnerLock();
+
+        private volatile Object instance = null;
+
+        private SingletonProvider(final Key<T> key, final Provider<T> unscoped)
+        {
+            this.key = key;
+            this.unscoped = unscoped;
+        }
+
+        @Override
+        public T get()
+        {
+            Object result = instance;
+            if (result == null) {
+                lock(this);
+                try {
+                    result = instance;
+                    if (result == null) {
+                        if (lock.getHoldCount() > 1) {
+                            throw new ProvisionException("Circular dependency on singleton " + key);
+                        }
+                        final T created = unscoped.get();
+                        result = created == null ? NULL : created;
+                        instance = result;
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+
+            @SuppressWarnings("unchecked")
+            final T value = result == NULL ? null : (T) result;
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[%s]", unscoped, ConcurrentSingletonScope.class.getSimpleName());
+        }
+    }
+
+    private static final class OwnerLock extends ReentrantLock
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Thread getOwner()
+        {
+            return super.getOwner();
+        }
+    }
+}
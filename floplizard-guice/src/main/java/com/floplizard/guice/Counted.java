@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.ANNOTATION_TYPE;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Counts the invocations of a method of a Guice constructed object. By default, the counter holds the
+ * number of invocations that are currently in progress; if the counter is <tt>monotonic</tt>, it holds the
+ * total number of invocations instead.
+ * <br>
+ * Honored when method metrics are enabled with {@link GuiceBundle.Builder#enableMethodMetrics()}.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target({METHOD, ANNOTATION_TYPE})
+public @interface Counted
+{
+    /**
+     * The name of the counter. Defaults to the name of the method.
+     */
+    String name() default "";
+
+    /**
+     * If true, the name is used as is instead of being prefixed with the name of the class.
+     */
+    boolean absolute() default false;
+
+    /**
+     * If true, the counter is never decremented.
+     */
+    boolean monotonic() default false;
+}
@@ -16,6 +16,7 @@ package com.floplizard.guice;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Binder;
 import com.google.inject.Module;
 
@@ -29,6 +30,8 @@ public abstract class DropwizardAwareModule<Configuration> implements Module
 {
     private volatile Configuration configuration = null;
     private volatile Environment environment = null;
+    private volatile String tenant = null;
+    private volatile boolean builtAfterStartup = false;
 
     @Override
     public final void configure(Binder binder)
@@ -44,6 +47,57 @@ public abstract class DropwizardAwareModule<Configuration> implements Module
         this.environment = checkNotNull(environment, "environment is null");
     }
 
+    /**
+     * Replaces the configuration before the reloadable modules are built again.
+     */
+    final void reloadDropwizardConfiguration(Configuration configuration)
+    {
+        checkState(this.environment != null, "configuration was never set!");
+        this.configuration = checkNotNull(configuration, "configuration is null");
+    }
+
+    /**
+     * Sets the tenant when the module is built for a tenant injector.
+     */
+    final void setTenant(String tenant)
+    {
+        checkState(this.tenant == null, "tenant was already set!");
+        this.tenant = checkNotNull(tenant, "tenant is null");
+    }
+
+    /**
+     * Returns the tenant that the module is built for, or null. The modules of this package put it into the
+     * names of their metrics, so that the tenants do not register the same metrics.
+     */
+    final String getTenant()
+    {
+        return tenant;
+    }
+
+    /**
+     * Marks the module as built after startup, for a tenant or a reloadable module group. Dropwizard does not
+     * pick up the tasks, health checks and other lifecycle objects of such a module, only the {@link io.dropwizard.lifecycle.Managed} objects.
+     */
+    final void setBuiltAfterStartup()
+    {
+        this.builtAfterStartup = true;
+    }
+
+    final boolean isBuiltAfterStartup()
+    {
+        return builtAfterStartup;
+    }
+
+    /**
+     * Returns the owner of the gauges that the module registers. The generations of a reloadable module share
+     * the module, and the injectors of a tenant that is built again share the tenant, so that they can take
+     * over each other's gauges.
+     */
+    final Object getGaugeOwner()
+    {
+        return tenant == null ? this : ImmutableList.of(getClass(), tenant);
+    }
+
     /**
      * Access to the configuration for methods in subclasses that are outside {@link Module#configure(Binder)}.
      */
@@ -21,8 +21,10 @@ import javax.servlet.ServletException;
 
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.name.Named;
 import com.sun.jersey.api.core.ResourceConfig;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
+import com.sun.jersey.spi.container.WebApplication;
 import com.sun.jersey.spi.container.servlet.WebConfig;
 
 import io.dropwizard.setup.Environment;
@@ -34,18 +36,48 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  */
 class DropwizardGuiceContainer extends GuiceContainer
 {
+    static final String RESOURCE_FACTORIES = "floplizard.resource-factories";
+
     private static final long serialVersionUID = 1L;
 
     @SuppressFBWarnings("BAD_PRACTICE")
     private final ResourceConfig resourceConfig;
 
+    @SuppressFBWarnings("BAD_PRACTICE")
+    private final Injector injector;
+
+    private final boolean resourceFactories;
+
+    @SuppressFBWarnings("BAD_PRACTICE")
+    private volatile WebApplication webApplication = null;
+
     @Inject
-    DropwizardGuiceContainer(final Injector injector, final Environment environment)
+    DropwizardGuiceContainer(final Injector injector, final Environment environment, @Named(RESOURCE_FACTORIES) final boolean resourceFactories)
     {
         super(injector);
 
         checkNotNull(environment, "environment is null");
         this.resourceConfig = environment.jersey().getResourceConfig();
+        this.injector = injector;
+        this.resourceFactories = resourceFactories;
+    }
+
+    @Override
+    protected void initiate(final ResourceConfig rc, final WebApplication wa)
+    {
+        if (resourceFactories) {
+            this.webApplication = wa;
+            wa.initiate(rc, new ResourceComponentProviderFactory(rc, injector));
+        }
+        else {
+            super.initiate(rc, wa);
+        }
+    }
+
+    @Override
+    public WebApplication getWebApplication()
+    {
+        return resourceFactories ? webApplication : super.getWebApplication();
     }
 
     @Override
@@ -13,28 +13,56 @@
  */
 package com.floplizard.guice;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.codahale.metrics.health.HealthCheck;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.TypeLiteral;
 import com.google.inject.matcher.Matchers;
 import com.google.inject.spi.InjectionListener;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
 import com.google.inject.spi.TypeEncounter;
 import com.google.inject.spi.TypeListener;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.lifecycle.ServerLifecycleListener;
 import io.dropwizard.servlets.tasks.Task;
 
 class DropwizardGuiceModule implements Module
 {
+    private static final Logger LOG = LoggerFactory.getLogger(DropwizardGuiceModule.class);
+
     private final ImmutableSet.Builder<Managed> managedBuilder = ImmutableSet.builder();
     private final ImmutableSet.Builder<Task> taskBuilder = ImmutableSet.builder();
     private final ImmutableSet.Builder<HealthCheck> healthcheckBuilder = ImmutableSet.builder();
     private final ImmutableSet.Builder<ServerLifecycleListener> serverLifecycleListenerBuilder = ImmutableSet.builder();
+    private final ImmutableSet.Builder<WarmupTask> warmupTaskBuilder = ImmutableSet.builder();
+    private final ImmutableSet.Builder<MethodCall> scheduledMethodBuilder = ImmutableSet.builder();
+    private final ImmutableSet.Builder<MethodCall> subscriberBuilder = ImmutableSet.builder();
+
+    private final ThreadLocal<List<Managed>> collecting = new ThreadLocal<>();
+
+    private volatile boolean sealed = false;
 
     @Override
     public void configure(final Binder binder)
@@ -43,34 +71,116 @@ class DropwizardGuiceModule implements Module
             @Override
             public <T> void hear(TypeLiteral<T> type, TypeEncounter<T> encounter)
             {
-                encounter.register(new InjectionListener<T>() {
-                    @Override
-                    public void afterInjection(T obj)
-                    {
-                        // Don't 'optimize' to else if here; an object may implement
-                        // more than one interface (e.g. {@link Managed} and {@link HealthCheck}.
-
-                        if (obj instanceof Managed) {
-                            managedBuilder.add((Managed) obj);
-                        }
-
-                        if (obj instanceof Task) {
-                            taskBuilder.add((Task) obj);
-                        }
-
-                        if (obj instanceof HealthCheck) {
-                            healthcheckBuilder.add((HealthCheck) obj);
-                        }
-
-                        if (obj instanceof ServerLifecycleListener) {
-                            serverLifecycleListenerBuilder.add((ServerLifecycleListener) obj);
-                        }
+                // Classify once per type. Types that implement none of the lifecycle
+                // interfaces get no listener, so injecting them costs nothing extra.
+                final LifecycleInjectionListener<T> listener = new LifecycleInjectionListener<>(type.getRawType());
+                if (listener.isLifecycleType()) {
+                    encounter.register(listener);
+                }
+
+                for (Method method : listener.scheduledMethods) {
+                    final String error = MethodScheduler.getScheduleError(method);
+                    if (error != null) {
+                        encounter.addError(error);
+                    }
+                }
+
+                for (Method method : listener.subscribers) {
+                    final String error = EventBus.getSubscriberError(method);
+                    if (error != null) {
+                        encounter.addError(error);
                     }
-                });
+                }
             }
         });
     }
 
+    /**
+     * Stops collecting lifecycle objects. Must be called once the injectors have been built and all
+     * singletons exist. Lifecycle objects that are created afterwards are not singletons; they
+     * are ignored as they would never be registered with Dropwizard and only leak memory.
+     */
+    void seal(final Injector ... injectors)
+    {
+        sealed = true;
+
+        for (Injector injector : injectors) {
+            // The targets of singleton linked bindings are often unscoped just-in-time bindings.
+            final Set<Key<?>> singletonTargets = Sets.newHashSet();
+            for (Binding<?> binding : injector.getAllBindings().values()) {
+                if (binding instanceof LinkedKeyBinding<?> && ConcurrentSingletonScope.isSingleton(binding)) {
+                    singletonTargets.add(((LinkedKeyBinding<?>) binding).getLinkedKey());
+                }
+            }
+
+            for (Binding<?> binding : injector.getAllBindings().values()) {
+                if (binding instanceof InstanceBinding<?> || ConcurrentSingletonScope.isSingleton(binding) || singletonTargets.contains(binding.getKey()) || ModuleGroupInjectors.isExport(binding)) {
+                    continue;
+                }
+                if (isLifecycleType(binding.getKey().getTypeLiteral().getRawType())) {
+                    LOG.warn("Binding {} for lifecycle type is not a singleton, instances created after startup will be ignored!", binding.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts collecting the {@link Managed} objects that the calling thread injects after the module was sealed,
+     * e.g. while it builds a child injector for the reloadable modules.
+     */
+    void beginCollecting()
+    {
+        checkState(sealed, "module is not sealed");
+        collecting.set(Lists.<Managed>newArrayList());
+    }
+
+    /**
+     * Returns the {@link Managed} objects collected since {@link #beginCollecting()}, in injection order.
+     */
+    List<Managed> endCollecting()
+    {
+        final List<Managed> managed = collecting.get();
+        checkState(managed != null, "not collecting");
+        collecting.remove();
+        return ImmutableList.copyOf(managed);
+    }
+
+    /**
+     * Returns true if instances of the type are registered with Dropwizard when they are injected.
+     */
+    static boolean isLifecycleType(final Class<?> type)
+    {
+        return Managed.class.isAssignableFrom(type)
+            || Task.class.isAssignableFrom(type)
+            || HealthCheck.class.isAssignableFrom(type)
+            || ServerLifecycleListener.class.isAssignableFrom(type)
+            || WarmupTask.class.isAssignableFrom(type)
+            || !findAnnotatedMethods(type, Scheduled.class).isEmpty()
+            || !findAnnotatedMethods(type, EventSubscriber.class).isEmpty();
+    }
+
+    /**
+     * Returns the methods of the type and its superclasses that carry the annotation. A method that is
+     * overridden is returned once.
+     */
+    static List<Method> findAnnotatedMethods(final Class<?> type, final Class<? extends Annotation> annotation)
+    {
+        final List<Method> methods = Lists.newArrayList();
+        final Set<List<Object>> signatures = Sets.newHashSet();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (method.isSynthetic() || Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                final List<Object> signature = ImmutableList.<Object>builder().add(method.getName()).addAll(Arrays.asList(method.getParameterTypes())).build();
+                if (signatures.add(signature) && method.isAnnotationPresent(annotation)) {
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
+    }
+
     Set<Managed> getManaged()
     {
         return managedBuilder.build();
@@ -90,4 +200,98 @@ class DropwizardGuiceModule implements Module
     {
         return serverLifecycleListenerBuilder.build();
     }
+
+    Set<WarmupTask> getWarmupTasks()
+    {
+        return warmupTaskBuilder.build();
+    }
+
+    Set<MethodCall> getScheduledMethods()
+    {
+        return scheduledMethodBuilder.build();
+    }
+
+    Set<MethodCall> getSubscribers()
+    {
+        return subscriberBuilder.build();
+    }
+
+    private final class LifecycleInjectionListener<T> implements InjectionListener<T>
+    {
+        private final Class<?> type;
+        private final boolean managed;
+        private final boolean task;
+        private final boolean healthCheck;
+        private final boolean serverLifecycleListener;
+        private final boolean warmupTask;
+        private final List<Method> scheduledMethods;
+        private final List<Method> subscribers;
+
+        private final AtomicBoolean warned = new AtomicBoolean(false);
+
+        private LifecycleInjectionListener(final Class<?> type)
+        {
+            this.type = type;
+            this.managed = Managed.class.isAssignableFrom(type);
+            this.task = Task.class.isAssignableFrom(type);
+            this.healthCheck = HealthCheck.class.isAssignableFrom(type);
+            this.serverLifecycleListener = ServerLifecycleListener.class.isAssignableFrom(type);
+            this.warmupTask = WarmupTask.class.isAssignableFrom(type);
+            this.scheduledMethods = findAnnotatedMethods(type, Scheduled.class);
+            this.subscribers = findAnnotatedMethods(type, EventSubscriber.class);
+        }
+
+        private boolean isLifecycleType()
+        {
+            return managed || task || healthCheck || serverLifecycleListener || warmupTask || !scheduledMethods.isEmpty() || !subscribers.isEmpty();
+        }
+
+        @Override
+        public void afterInjection(final T obj)
+        {
+            if (sealed) {
+                final List<Managed> collected = collecting.get();
+                if (collected != null && managed) {
+                    collected.add((Managed) obj);
+                    return;
+                }
+                if (warned.compareAndSet(false, true)) {
+                    LOG.warn("Ignoring instance of {} created after startup, lifecycle objects must be singletons!", type.getName());
+                }
+                return;
+            }
+
+            synchronized (DropwizardGuiceModule.this) {
+                // Don't 'optimize' to else if here; an object may implement
+                // more than one interface (e.g. {@link Managed} and {@link HealthCheck}.
+                if (managed) {
+                    managedBuilder.add((Managed) obj);
+                }
+
+                if (task) {
+                    taskBuilder.add((Task) obj);
+                }
+
+                if (healthCheck) {
+                    healthcheckBuilder.add((HealthCheck) obj);
+                }
+
+                if (serverLifecycleListener) {
+                    serverLifecycleListenerBuilder.add((ServerLifecycleListener) obj);
+                }
+
+                if (warmupTask) {
+                    warmupTaskBuilder.add((WarmupTask) obj);
+                }
+
+                for (Method method : scheduledMethods) {
+                    scheduledMethodBuilder.add(new MethodCall(obj, method, new Object[0]));
+                }
+
+                for (Method method : subscribers) {
+                    subscriberBuilder.add(new MethodCall(obj, method, new Object[0]));
+                }
+            }
+        }
+    }
 }
@@ -32,6 +32,10 @@ import io.dropwizard.setup.Environment;
  * If all parts of the application should receive the same {@link ObjectMapper} instance,
  * bind in Singleton scope. The ObjectMapper injected is a copy of the dropwizard internal
  * Object mapper, not the same instance as {@link Environment.getObjectMapper()} returns.
+ * <br>
+ * Every copy builds its serializer caches from scratch. Applications that do not need to modify
+ * the object mapper should use the {@link ObjectMapperModule}, which shares the Dropwizard object
+ * mapper and caches readers and writers.
  */
 public class DropwizardObjectMapperProvider implements Provider<ObjectMapper>
 {
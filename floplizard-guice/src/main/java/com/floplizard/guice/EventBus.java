@@ -0,0 +1,359 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimaps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.util.Duration;
+
+/**
+ * Delivers events asynchronously to the {@link EventSubscriber} methods of the Guice bound singletons. Subscriber
+ * methods take exactly one parameter and receive every posted event that is an instance of the parameter type.
+ * They are found and registered automatically, there is no <tt>register</tt> call.
+ *
+ * <pre>
+ *     &#64;Inject
+ *     OrderService(final EventBus eventBus) { ... }
+ *
+ *     eventBus.post(new OrderPlaced(order));
+ *
+ *     class InvoiceWriter {
+ *         &#64;EventSubscriber
+ *         public void orderPlaced(final OrderPlaced event) { ... }
+ *     }
+ * </pre>
+ *
+ * Every subscriber method has its own bounded queue and gets the events one at a time in the order in which
+ * they were posted; different subscribers run in parallel on the event executor. If the queue of a subscriber
+ * is full, the event is dropped for that subscriber and counted as rejected. Events that are posted while the
+ * injector is being built are held back until the subscribers are known.
+ * <br>
+ * When the application stops, the event bus stops after the scheduled methods and before the guice injected
+ * {@link io.dropwizard.lifecycle.Managed} objects, and delivers all queued events first. For every subscriber
+ * method, a gauge <tt>queued</tt>, a timer <tt>latency</tt> (from posting to delivery), a counter
+ * <tt>failures</tt> and a meter <tt>rejected</tt> are registered under
+ * <tt>&lt;class&gt;.&lt;method&gt;.events</tt>. They cover all objects with the method; if another event bus
+ * registered the <tt>queued</tt> gauge first, it is not replaced.
+ * <br>
+ * Bound when the event bus is enabled with {@link GuiceBundle.Builder#enableEventBus(int, int)}.
+ */
+public class EventBus
+{
+    private static final Logger LOG = LoggerFactory.getLogger(EventBus.class);
+
+    /** The number of events a subscriber gets before it makes room for the other subscribers. */
+    private static final int BATCH_SIZE = 64;
+
+    private final ExecutorService executor;
+    private final int queueSize;
+    private final MetricRegistry metrics;
+    private final Ticker ticker;
+    private final Meter posted;
+    private final Meter unhandled;
+    private final ConcurrentMap<Class<?>, List<Subscriber>> subscribersByType = new ConcurrentHashMap<>();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final Object drained = new Object();
+
+    private volatile List<Subscriber> subscribers = null;
+    private List<Object> heldBack = Lists.newArrayList();
+    private volatile boolean stopped = false;
+
+    EventBus(final ExecutorService executor, final int queueSize, final MetricRegistry metrics, final Ticker ticker)
+    {
+        checkArgument(queueSize > 0, "queueSize must be positive");
+        this.executor = checkNotNull(executor, "executor is null");
+        this.queueSize = queueSize;
+        this.metrics = checkNotNull(metrics, "metrics is null");
+        this.ticker = checkNotNull(ticker, "ticker is null");
+        this.posted = metrics.meter(name(EventBus.class, "posted"));
+        this.unhandled = metrics.meter(name(EventBus.class, "unhandled"));
+    }
+
+    /**
+     * Posts an event to all subscribers whose parameter type matches. Never blocks.
+     */
+    public void post(final Object event)
+    {
+        checkNotNull(event, "event is null");
+        posted.mark();
+
+        List<Subscriber> registered = subscribers;
+        if (registered == null) {
+            synchronized (this) {
+                registered = subscribers;
+                if (registered == null) {
+                    if (heldBack.size() < queueSize) {
+                        heldBack.add(event);
+                    }
+                    else {
+                        LOG.warn("Dropping event {} posted before the subscribers are registered", event);
+                    }
+                    return;
+                }
+            }
+        }
+
+        final List<Subscriber> matching = getSubscribers(registered, event.getClass());
+        if (matching.isEmpty()) {
+            unhandled.mark();
+            return;
+        }
+        for (Subscriber subscriber : matching) {
+            subscriber.enqueue(event);
+        }
+    }
+
+    /**
+     * Registers the subscriber methods and delivers the events that were posted so far.
+     */
+    void register(final Iterable<MethodCall> methods)
+    {
+        final ImmutableList.Builder<Subscriber> builder = ImmutableList.builder();
+        for (MethodCall method : methods) {
+            builder.add(new Subscriber(method));
+        }
+        final List<Subscriber> registered = builder.build();
+
+        final ImmutableListMultimap<Method, Subscriber> subscribersByMethod = Multimaps.index(registered, new Function<Subscriber, Method>() {
+            @Override
+            public Method apply(final Subscriber subscriber)
+            {
+                return subscriber.call.getMethod();
+            }
+        });
+        for (Method method : subscribersByMethod.keySet()) {
+            registerQueued(method, subscribersByMethod.get(method));
+        }
+
+        final List<Object> events;
+        synchronized (this) {
+            this.subscribers = registered;
+            events = heldBack;
+            heldBack = null;
+        }
+        for (Object event : events) {
+            post(event);
+        }
+    }
+
+    /**
+     * Stops taking events, waits until all queued events are delivered and shuts down the executor.
+     */
+    void stop(final Duration timeout) throws InterruptedException
+    {
+        stopped = true;
+        final long deadline = System.nanoTime() + timeout.toNanoseconds();
+        synchronized (drained) {
+            for (long remaining = timeout.toNanoseconds(); inFlight.get() > 0 && remaining > 0; remaining = deadline - System.nanoTime()) {
+                TimeUnit.NANOSECONDS.timedWait(drained, remaining);
+            }
+        }
+        if (inFlight.get() > 0) {
+            LOG.warn("{} events were not delivered within {}", inFlight.get(), timeout);
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns why the method can not be a subscriber, or null if it can.
+     */
+    static String getSubscriberError(final Method method)
+    {
+        if (method.getParameterTypes().length != 1 || method.getParameterTypes()[0].isPrimitive()) {
+            return String.format("Subscriber method %s must take exactly one object parameter", method);
+        }
+        return null;
+    }
+
+    private void registerQueued(final Method method, final List<Subscriber> methodSubscribers)
+    {
+        final String queuedName = name(method.getDeclaringClass(), method.getName(), "events", "queued");
+        if (metrics.getGauges().containsKey(queuedName)) {
+            return;
+        }
+        metrics.register(queuedName, new Gauge<Integer>() {
+            @Override
+            public Integer getValue()
+            {
+                int queued = 0;
+                for (Subscriber subscriber : methodSubscribers) {
+                    queued += subscriber.queue.size();
+                }
+                return queued;
+            }
+        });
+    }
+
+    private List<Subscriber> getSubscribers(final List<Subscriber> registered, final Class<?> eventType)
+    {
+        List<Subscriber> matching = subscribersByType.get(eventType);
+        if (matching == null) {
+            final ImmutableList.Builder<Subscriber> builder = ImmutableList.builder();
+            for (Subscriber subscriber : registered) {
+                if (subscriber.eventType.isAssignableFrom(eventType)) {
+                    builder.add(subscriber);
+                }
+            }
+            matching = builder.build();
+            final List<Subscriber> existing = subscribersByType.putIfAbsent(eventType, matching);
+            if (existing != null) {
+                matching = existing;
+            }
+        }
+        return matching;
+    }
+
+    private void delivered()
+    {
+        if (inFlight.decrementAndGet() == 0 && stopped) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+
+    private final class Subscriber implements Runnable
+    {
+        private final MethodCall call;
+        private final Class<?> eventType;
+        private final Queue<Envelope> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Timer latency;
+        private final Counter failures;
+        private final Meter rejected;
+
+        private Subscriber(final MethodCall call)
+        {
+            this.call = call;
+            this.eventType = call.getMethod().getParameterTypes()[0];
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            call.getMethod().setAccessible(true);
+
+            final Method method = call.getMethod();
+            this.latency = metrics.timer(name(method.getDeclaringClass(), method.getName(), "events", "latency"));
+            this.failures = metrics.counter(name(method.getDeclaringClass(), method.getName(), "events", "failures"));
+            this.rejected = metrics.meter(name(method.getDeclaringClass(), method.getName(), "events", "rejected"));
+        }
+
+        private void enqueue(final Object event)
+        {
+            if (stopped || !queue.offer(new Envelope(event, ticker.read()))) {
+                rejected.mark();
+                return;
+            }
+            inFlight.incrementAndGet();
+            schedule();
+        }
+
+        private void schedule()
+        {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                }
+                catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    LOG.warn("Event executor rejected the delivery to {}", call.getMethod(), e);
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    final Envelope envelope = queue.poll();
+                    if (envelope == null) {
+                        break;
+                    }
+                    deliver(envelope);
+                }
+            }
+            finally {
+                scheduled.set(false);
+            }
+
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void deliver(final Envelope envelope)
+        {
+            latency.update(ticker.read() - envelope.postedNanos, TimeUnit.NANOSECONDS);
+            try {
+                call.getMethod().invoke(call.getTarget(), envelope.event);
+            }
+            catch (InvocationTargetException e) {
+                failures.inc();
+                LOG.error("Subscriber {} failed on event {}", call.getMethod(), envelope.event, e.getCause());
+            }
+            catch (IllegalAccessException | RuntimeException e) {
+                failures.inc();
+                LOG.error("Could not deliver event {} to subscriber {}", envelope.event, call.getMethod(), e);
+            }
+            finally {
+                delivered();
+            }
+        }
+    }
+
+    private static final class Envelope
+    {
+        private final Object event;
+        private final long postedNanos;
+
+        private Envelope(final Object event, final long postedNanos)
+        {
+            this.event = event;
+            this.postedNanos = postedNanos;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Receives the events of the {@link EventBus} that are instances of the single parameter type of the method.
+ * The method must be on a Guice bound singleton and take exactly one object parameter; its return value is
+ * ignored.
+ *
+ * <pre>
+ *     &#64;EventSubscriber
+ *     void orderPlaced(final OrderPlaced event) { ... }
+ * </pre>
+ *
+ * Methods annotated with Guava's <tt>&#64;Subscribe</tt> are left alone, they belong to a Guava event bus.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface EventSubscriber
+{
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+/**
+ * Configuration for an executor bound by the {@link ExecutorsModule}.
+ *
+ * <pre>
+ *     executors:
+ *       worker:
+ *         minThreads: 4
+ *         maxThreads: 16
+ *         queueSize: 1000
+ *         rejectionPolicy: CALLER_RUNS
+ * </pre>
+ */
+public class ExecutorConfiguration
+{
+    /**
+     * What happens to a task that can not be queued.
+     */
+    public enum RejectionPolicy
+    {
+        /** Throw a {@link java.util.concurrent.RejectedExecutionException}. */
+        ABORT,
+        /** Run the task on the submitting thread. */
+        CALLER_RUNS,
+        /** Drop the task. */
+        DISCARD,
+        /** Drop the oldest queued task and queue the new one. */
+        DISCARD_OLDEST;
+    }
+
+    @JsonProperty
+    private int minThreads = 1;
+
+    @JsonProperty
+    private int maxThreads = 1;
+
+    @JsonProperty
+    private Duration keepAlive = Duration.minutes(1);
+
+    @JsonProperty
+    private int queueSize = -1;
+
+    @JsonProperty
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+
+    @JsonProperty
+    private boolean scheduled = false;
+
+    @JsonProperty
+    private boolean virtualThreads = false;
+
+    @JsonProperty
+    private Duration shutdownTimeout = Duration.seconds(30);
+
+    /**
+     * Number of threads that are kept when idle. For a scheduled executor, this is the size of the pool.
+     */
+    @Min(0)
+    public int getMinThreads()
+    {
+        return minThreads;
+    }
+
+    public ExecutorConfiguration setMinThreads(final int minThreads)
+    {
+        this.minThreads = minThreads;
+        return this;
+    }
+
+    /**
+     * Maximum number of threads. Threads above <tt>minThreads</tt> are only started when the queue is full.
+     */
+    @Min(1)
+    public int getMaxThreads()
+    {
+        return maxThreads;
+    }
+
+    public ExecutorConfiguration setMaxThreads(final int maxThreads)
+    {
+        this.maxThreads = maxThreads;
+        return this;
+    }
+
+    /**
+     * Time after which idle threads above <tt>minThreads</tt> are stopped.
+     */
+    @NotNull
+    public Duration getKeepAlive()
+    {
+        return keepAlive;
+    }
+
+    public ExecutorConfiguration setKeepAlive(final Duration keepAlive)
+    {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * Size of the task queue. A negative size uses an unbounded queue, in which case the pool runs
+     * <tt>maxThreads</tt> threads that stop after <tt>keepAlive</tt> when idle. A size of 0 hands tasks
+     * directly to a thread.
+     */
+    @Min(-1)
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    public ExecutorConfiguration setQueueSize(final int queueSize)
+    {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    @NotNull
+    public RejectionPolicy getRejectionPolicy()
+    {
+        return rejectionPolicy;
+    }
+
+    public ExecutorConfiguration setRejectionPolicy(final RejectionPolicy rejectionPolicy)
+    {
+        this.rejectionPolicy = rejectionPolicy;
+        return this;
+    }
+
+    /**
+     * If true, the executor is also bound as a {@link java.util.concurrent.ScheduledExecutorService}.
+     * Scheduled executors always have an unbounded queue.
+     */
+    public boolean isScheduled()
+    {
+        return scheduled;
+    }
+
+    public ExecutorConfiguration setScheduled(final boolean scheduled)
+    {
+        this.scheduled = scheduled;
+        return this;
+    }
+
+    /**
+     * If true and the JVM supports it, every task runs on a new virtual thread. All thread and queue
+     * settings are ignored then. On older JVMs, a regular thread pool is used.
+     */
+    public boolean isVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    public ExecutorConfiguration setVirtualThreads(final boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Time that running and queued tasks get to finish when the application stops.
+     */
+    @NotNull
+    public Duration getShutdownTimeout()
+    {
+        return shutdownTimeout;
+    }
+
+    public ExecutorConfiguration setShutdownTimeout(final Duration shutdownTimeout)
+    {
+        this.shutdownTimeout = shutdownTimeout;
+        return this;
+    }
+}
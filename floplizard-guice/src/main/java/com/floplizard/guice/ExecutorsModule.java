@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.base.Function;
+import com.google.inject.Binder;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Binds named executors that are configured in the Dropwizard configuration. Every executor
+ *
+ * <ul>
+ * <li>is bound as <tt>@Named(name) ExecutorService</tt> and, if scheduled, as <tt>@Named(name) ScheduledExecutorService</tt>,</li>
+ * <li>reports its submitted, rejected, active and queued tasks and the task duration as metrics,</li>
+ * <li>is shut down when the application stops, after the objects that depend on it when the parallel lifecycle is used.</li>
+ * </ul>
+ *
+ * For a tenant, the threads and metrics of an executor are named <tt>tenant.name</tt>.
+ * <br>
+ * The gauges of an executor are registered when it starts. When the module is part of a reloadable module group,
+ * the executors of a new generation take over the gauges once they have started, and the old executors are shut
+ * down when the old generation is drained.
+ *
+ * <pre>
+ *     new ExecutorsModule&lt;MyConfiguration&gt;(new Function&lt;MyConfiguration, Map&lt;String, ExecutorConfiguration&gt;&gt;() {
+ *         public Map&lt;String, ExecutorConfiguration&gt; apply(MyConfiguration configuration) {
+ *             return configuration.getExecutors();
+ *         }
+ *     });
+ * </pre>
+ */
+public class ExecutorsModule<T> extends DropwizardAwareModule<T>
+{
+    private final Function<? super T, Map<String, ExecutorConfiguration>> executorsFunction;
+
+    public ExecutorsModule(final Function<? super T, Map<String, ExecutorConfiguration>> executorsFunction)
+    {
+        this.executorsFunction = checkNotNull(executorsFunction, "executorsFunction is null");
+    }
+
+    @Override
+    protected void configure(final Binder binder, final T configuration, final Environment environment)
+    {
+        final Map<String, ExecutorConfiguration> executors = checkNotNull(executorsFunction.apply(configuration), "executor configuration is null");
+
+        for (Map.Entry<String, ExecutorConfiguration> entry : executors.entrySet()) {
+            final String name = entry.getKey();
+            final ExecutorConfiguration config = checkNotNull(entry.getValue(), "configuration for executor %s is null", name);
+            // Tenants have executors of their own, their threads and metrics are named after the tenant.
+            final String executorName = name(getTenant(), name);
+            final ReplaceableGauges gauges = new ReplaceableGauges(environment.metrics(), getGaugeOwner());
+
+            if (config.isScheduled()) {
+                final ScheduledExecutorService executor = InstrumentedExecutors.newScheduledExecutor(executorName, config, environment.metrics(), gauges);
+                final Key<ScheduledExecutorService> key = Key.get(ScheduledExecutorService.class, Names.named(name));
+                binder.bind(key).toProvider(new ManagedExecutor<>(executorName, executor, config.getShutdownTimeout(), gauges));
+                binder.bind(ExecutorService.class).annotatedWith(Names.named(name)).to(key);
+            }
+            else {
+                final ExecutorService executor = InstrumentedExecutors.newExecutor(executorName, config, environment.metrics(), gauges);
+                binder.bind(ExecutorService.class).annotatedWith(Names.named(name)).toProvider(new ManagedExecutor<>(executorName, executor, config.getShutdownTimeout(), gauges));
+            }
+        }
+    }
+}
@@ -13,17 +13,25 @@
  */
 package com.floplizard.guice;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
 
 import com.codahale.metrics.health.HealthCheck;
 import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
 import com.google.inject.Binder;
@@ -34,7 +42,8 @@ import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.Scopes;
 import com.google.inject.Stage;
-import com.google.inject.servlet.GuiceFilter;
+import com.google.inject.name.Names;
+import com.google.inject.servlet.ServletModuleBinding;
 import com.sun.jersey.api.core.ResourceConfig;
 import com.sun.jersey.guice.JerseyServletModule;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
@@ -48,11 +57,14 @@ import org.slf4j.LoggerFactory;
 
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.configuration.ConfigurationFactory;
+import io.dropwizard.configuration.ConfigurationFactoryFactory;
 import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.lifecycle.ServerLifecycleListener;
 import io.dropwizard.servlets.tasks.Task;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 
 /**
  * Dropwizard bundle that adds basic guice integration.
@@ -60,6 +72,7 @@ import io.dropwizard.setup.Environment;
 public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
 {
     private static final Logger LOG = LoggerFactory.getLogger(GuiceBundle.class);
+    private static final Duration DEFAULT_STOP_TIMEOUT = Duration.seconds(30);
 
     /**
      * Returns a builder for the Guice bundle.
@@ -71,27 +84,82 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
 
     private final Class<T> configClass;
     private final ImmutableSet<Module> guiceModules;
+    private final ImmutableList<ModuleGroup> moduleGroups;
+    private final ModuleGroup reloadableModules;
     private final Stage guiceStage;
     private final boolean enforcerEnabled;
-
-    private GuiceBundle(final Class<T> configClass, final ImmutableSet<Module> guiceModules, final Stage guiceStage, final boolean enforcerEnabled)
+    private final int lifecycleThreads;
+    private final Duration lifecycleStopTimeout;
+    private final boolean provisionMetricsEnabled;
+    private final boolean methodMetricsEnabled;
+    private final boolean requestCoalescingEnabled;
+    private final Function<? super T, Map<String, BulkheadConfiguration>> bulkheadsFunction;
+    private final boolean bulkheadHealthCheckEnabled;
+    private final Duration warmupBudget;
+    private final int eventBusThreads;
+    private final int eventBusQueueSize;
+    private final TenantModuleFactory tenantModuleFactory;
+    private final long maximumTenants;
+    private final Duration tenantIdleTimeout;
+    private final boolean resourceLatenciesEnabled;
+    private final boolean smileEnabled;
+    private final boolean guiceFilterBypassEnabled;
+    private final boolean resourceFactoriesEnabled;
+    private final Duration healthCheckTtl;
+    private final Duration healthCheckRefreshInterval;
+    private final Duration healthCheckTimeout;
+    private final boolean lazySingletonsEnabled;
+
+    private volatile Bootstrap<?> bootstrap = null;
+    private volatile ReloadTask.PathRecorder pathRecorder = null;
+
+    private GuiceBundle(final Builder<T> builder)
     {
-        this.configClass = configClass;
-
-        this.guiceModules = guiceModules;
-        this.guiceStage = guiceStage;
-        this.enforcerEnabled = enforcerEnabled;
+        this.configClass = builder.configClass;
+
+        this.guiceModules = builder.guiceModules.build();
+        this.moduleGroups = builder.moduleGroups.build();
+        this.reloadableModules = builder.reloadableModules;
+        this.guiceStage = builder.guiceStage;
+        this.enforcerEnabled = builder.enforcerEnabled;
+        this.lifecycleThreads = builder.lifecycleThreads;
+        this.lifecycleStopTimeout = builder.lifecycleStopTimeout;
+        this.provisionMetricsEnabled = builder.provisionMetricsEnabled;
+        this.methodMetricsEnabled = builder.methodMetricsEnabled;
+        this.requestCoalescingEnabled = builder.requestCoalescingEnabled;
+        this.bulkheadsFunction = builder.bulkheadsFunction;
+        this.bulkheadHealthCheckEnabled = builder.bulkheadHealthCheckEnabled;
+        this.warmupBudget = builder.warmupBudget;
+        this.eventBusThreads = builder.eventBusThreads;
+        this.eventBusQueueSize = builder.eventBusQueueSize;
+        this.tenantModuleFactory = builder.tenantModuleFactory;
+        this.maximumTenants = builder.maximumTenants;
+        this.tenantIdleTimeout = builder.tenantIdleTimeout;
+        this.resourceLatenciesEnabled = builder.resourceLatenciesEnabled;
+        this.smileEnabled = builder.smileEnabled;
+        this.guiceFilterBypassEnabled = builder.guiceFilterBypassEnabled;
+        this.resourceFactoriesEnabled = builder.resourceFactoriesEnabled;
+        this.healthCheckTtl = builder.healthCheckTtl;
+        this.healthCheckRefreshInterval = builder.healthCheckRefreshInterval;
+        this.healthCheckTimeout = builder.healthCheckTimeout;
+        this.lazySingletonsEnabled = builder.lazySingletonsEnabled;
     }
 
     @Override
     public void initialize(final Bootstrap<?> bootstrap)
     {
+        if (reloadableModules != null) {
+            // The reload task reads the same configuration file again.
+            this.pathRecorder = new ReloadTask.PathRecorder(bootstrap.getConfigurationSourceProvider());
+            bootstrap.setConfigurationSourceProvider(pathRecorder);
+            this.bootstrap = bootstrap;
+        }
     }
 
     @Override
     public void run(final T configuration, final Environment environment) throws Exception
     {
-        for (Module module : guiceModules) {
+        for (Module module : Iterables.concat(guiceModules, getGroupModules())) {
             if (module instanceof DropwizardAwareModule<?>) {
                 @SuppressWarnings("unchecked")
                 DropwizardAwareModule<T> dropwizardAwareModule = (DropwizardAwareModule<T>) module;
@@ -100,31 +168,216 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
         }
 
         final DropwizardGuiceModule dropwizardGuiceModule = new DropwizardGuiceModule();
-
-        ImmutableSet.Builder<Module> moduleBuilder = ImmutableSet.builder();
-        moduleBuilder.addAll(guiceModules);
-        moduleBuilder.add(new JerseyServletModule());
-        moduleBuilder.add(dropwizardGuiceModule);
-        moduleBuilder.add(new Module() {
+        final ConcurrentSingletonScope concurrentSingletonScope = new ConcurrentSingletonScope();
+        final LazySingletonScope lazySingletonScope = lazySingletonsEnabled ? new LazySingletonScope(environment.metrics()) : null;
+        final Duration stopTimeout = lifecycleStopTimeout != null ? lifecycleStopTimeout : DEFAULT_STOP_TIMEOUT;
+        final EventBus eventBus;
+        if (eventBusThreads > 0) {
+            final ReplaceableGauges eventBusGauges = new ReplaceableGauges(environment.metrics(), EventBus.class);
+            eventBus = new EventBus(InstrumentedExecutors.newExecutor("floplizard-events", new ExecutorConfiguration().setMinThreads(eventBusThreads).setMaxThreads(eventBusThreads),
+                environment.metrics(), eventBusGauges), eventBusQueueSize, environment.metrics(), Ticker.systemTicker());
+            eventBusGauges.register();
+        }
+        else {
+            eventBus = null;
+        }
+        final TenantInjectors tenantInjectors = tenantModuleFactory != null
+            ? new TenantInjectors(tenantModuleFactory, guiceStage, maximumTenants, tenantIdleTimeout, configuration, environment, dropwizardGuiceModule, concurrentSingletonScope, Ticker.systemTicker())
+            : null;
+        final ReloadableInjector<T> reloadableInjector = reloadableModules != null
+            ? new ReloadableInjector<>(reloadableModules, configuration, dropwizardGuiceModule, concurrentSingletonScope, stopTimeout, environment.metrics())
+            : null;
+
+        // The bundle modules go into the parent injector when there are module groups, everything
+        // else into the application injector.
+        ImmutableSet.Builder<Module> bundleModuleBuilder = ImmutableSet.builder();
+        bundleModuleBuilder.add(dropwizardGuiceModule);
+        bundleModuleBuilder.add(new Module() {
             @Override
             public void configure(final Binder binder)
             {
                 binder.bind(Environment.class).toInstance(environment);
                 binder.bind(configClass).toInstance(configuration);
+                binder.bindScope(ConcurrentSingleton.class, concurrentSingletonScope);
+                if (lazySingletonScope != null) {
+                    binder.bindScope(LazySingleton.class, lazySingletonScope);
+                    binder.requestInjection(lazySingletonScope);
+                }
+                else {
+                    binder.bindScope(LazySingleton.class, Scopes.SINGLETON);
+                }
+
+                if (eventBus != null) {
+                    binder.bind(EventBus.class).toInstance(eventBus);
+                }
+
+                if (tenantInjectors != null) {
+                    binder.bind(TenantInjectors.class).toInstance(tenantInjectors);
+                }
+            }
+        });
+
+        if (enforcerEnabled) {
+            bundleModuleBuilder.add(new GuiceEnforcerModule());
+        }
+
+        if (provisionMetricsEnabled) {
+            bundleModuleBuilder.add(new ProvisionMetricsModule(environment.metrics()));
+        }
+
+        if (methodMetricsEnabled) {
+            bundleModuleBuilder.add(new MethodMetricsModule(environment.metrics()));
+        }
+
+        if (requestCoalescingEnabled) {
+            bundleModuleBuilder.add(new CoalescingModule(environment.metrics()));
+        }
+
+        if (bulkheadsFunction != null) {
+            final Map<String, BulkheadConfiguration> bulkheads = checkNotNull(bulkheadsFunction.apply(configuration), "bulkhead configuration is null");
+            bundleModuleBuilder.add(new BulkheadModule(bulkheads, bulkheadHealthCheckEnabled, environment.metrics()));
+        }
 
+        ImmutableSet.Builder<Module> applicationModuleBuilder = ImmutableSet.builder();
+        applicationModuleBuilder.addAll(guiceModules);
+        applicationModuleBuilder.add(new JerseyServletModule());
+        applicationModuleBuilder.add(new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bindConstant().annotatedWith(Names.named(DropwizardGuiceContainer.RESOURCE_FACTORIES)).to(resourceFactoriesEnabled);
                 binder.bind(GuiceContainer.class).to(DropwizardGuiceContainer.class).in(Scopes.SINGLETON);
+
+                if (resourceLatenciesEnabled) {
+                    binder.bind(ResourceLatencyFilterFactory.class).in(Scopes.SINGLETON);
+                    binder.bind(ResourceLatencyTask.class).asEagerSingleton();
+                }
             }
         });
 
-        if (enforcerEnabled) {
-            moduleBuilder.add(new GuiceEnforcerModule());
+        if (reloadableInjector != null) {
+            applicationModuleBuilder.add(reloadableInjector.getModule());
         }
 
-        final Injector injector = Guice.createInjector(guiceStage, moduleBuilder.build());
+        final List<Injector> injectors;
+        if (moduleGroups.isEmpty()) {
+            final Injector injector = Guice.createInjector(guiceStage, Iterables.concat(applicationModuleBuilder.build(), bundleModuleBuilder.build()));
+            ConcurrentSingletonScope.checkDependencies(injector);
+            if (guiceStage == Stage.PRODUCTION) {
+                concurrentSingletonScope.createSingletons(injector);
+            }
+            injectors = ImmutableList.of(injector);
+        }
+        else {
+            final Injector parent = Guice.createInjector(guiceStage, bundleModuleBuilder.build());
+            ConcurrentSingletonScope.checkDependencies(parent);
+            if (guiceStage == Stage.PRODUCTION) {
+                concurrentSingletonScope.createSingletons(parent);
+            }
+            final List<Injector> children = new ModuleGroupInjectors(parent, guiceStage, moduleGroups, concurrentSingletonScope).createInjectors(applicationModuleBuilder.build());
+            if (lazySingletonScope != null) {
+                for (Injector child : children) {
+                    lazySingletonScope.addInjector(child);
+                }
+            }
+            injectors = ImmutableList.<Injector>builder().add(parent).addAll(children).build();
+            LOG.info("Created injectors for module groups {}", moduleGroups);
+        }
+        final Injector injector = Iterables.getLast(injectors);
+
+        if (lazySingletonScope != null) {
+            // Lifecycle objects must exist before they can be registered with Dropwizard.
+            lazySingletonScope.createSingletons(new Predicate<Key<?>>() {
+                @Override
+                public boolean apply(final Key<?> key)
+                {
+                    return DropwizardGuiceModule.isLifecycleType(key.getTypeLiteral().getRawType());
+                }
+            });
+            environment.lifecycle().addServerLifecycleListener(lazySingletonScope);
+            lazySingletonScope.seal();
+        }
+
+        dropwizardGuiceModule.seal(Iterables.toArray(injectors, Injector.class));
+
+        if (reloadableInjector != null) {
+            reloadableInjector.createInjector(injector);
+        }
+
+        if (tenantInjectors != null) {
+            tenantInjectors.setParent(injector);
+        }
+
+        if (lifecycleThreads > 0) {
+            final List<List<Managed>> levels = ManagedDependencyGraph.getStartLevels(injectors, dropwizardGuiceModule.getManaged());
+            for (int i = 0; i < levels.size(); i++) {
+                for (Managed managed : levels.get(i)) {
+                    LOG.info("Added guice injected managed Object: {} (level {})", managed.getClass().getName(), i);
+                }
+            }
+            environment.lifecycle().manage(new ParallelLifecycle(levels, lifecycleThreads, lifecycleStopTimeout, environment.metrics()));
+        }
+        else {
+            for (Managed managed : dropwizardGuiceModule.getManaged()) {
+                LOG.info("Added guice injected managed Object: {}", managed.getClass().getName());
+                environment.lifecycle().manage(managed);
+            }
+        }
+
+        if (reloadableInjector != null) {
+            checkState(bootstrap != null, "reloadable modules need the bundle to be initialized");
+            environment.lifecycle().manage(reloadableInjector);
+            environment.admin().addTask(new ReloadTask<>(reloadableInjector, newConfigurationFactory(), bootstrap.getConfigurationSourceProvider(), pathRecorder.getPath()));
+            LOG.info("Added reloadable module group {}", reloadableModules);
+        }
+
+        if (tenantInjectors != null) {
+            environment.lifecycle().manage(new Managed() {
+                @Override
+                public void start()
+                {
+                }
+
+                @Override
+                public void stop() throws Exception
+                {
+                    tenantInjectors.stop(stopTimeout);
+                }
+            });
+            LOG.info("Added tenant injectors for at most {} tenants, idle timeout {}", maximumTenants, tenantIdleTimeout);
+        }
+
+        // Dropwizard stops managed objects in reverse order: first the scheduled methods, then the event
+        // bus, which delivers the queued events, then the objects they use.
+        final Set<MethodCall> subscribers = dropwizardGuiceModule.getSubscribers();
+        if (eventBus != null) {
+            eventBus.register(subscribers);
+            environment.lifecycle().manage(new Managed() {
+                @Override
+                public void start()
+                {
+                }
+
+                @Override
+                public void stop() throws Exception
+                {
+                    eventBus.stop(stopTimeout);
+                }
+            });
+            for (MethodCall subscriber : subscribers) {
+                LOG.info("Added guice injected subscriber: {}", subscriber.getMethod());
+            }
+        }
+        else if (!subscribers.isEmpty()) {
+            LOG.warn("Found {} subscriber methods, but the event bus is not enabled!", subscribers.size());
+        }
 
-        for (Managed managed : dropwizardGuiceModule.getManaged()) {
-            LOG.info("Added guice injected managed Object: {}", managed.getClass().getName());
-            environment.lifecycle().manage(managed);
+        final Set<MethodCall> scheduledMethods = dropwizardGuiceModule.getScheduledMethods();
+        if (!scheduledMethods.isEmpty()) {
+            environment.lifecycle().manage(new MethodScheduler(scheduledMethods, stopTimeout, environment.metrics()));
+            for (MethodCall scheduledMethod : scheduledMethods) {
+                LOG.info("Added guice injected scheduled method: {}", scheduledMethod.getMethod());
+            }
         }
 
         for (Task task : dropwizardGuiceModule.getTasks()) {
@@ -132,9 +385,18 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
             LOG.info("Added guice injected Task: {}", task.getClass().getName());
         }
 
-        for (HealthCheck healthcheck : dropwizardGuiceModule.getHealthChecks()) {
-            environment.healthChecks().register(healthcheck.getClass().getSimpleName(), healthcheck);
-            LOG.info("Added guice injected health check: {}", healthcheck.getClass().getName());
+        Map<String, HealthCheck> healthChecks = HealthCheckRunner.getNames(dropwizardGuiceModule.getHealthChecks(), environment.healthChecks().getNames());
+        if (!healthChecks.isEmpty() && healthCheckTimeout != null) {
+            final HealthCheckRunner healthCheckRunner = healthCheckRefreshInterval != null
+                ? HealthCheckRunner.withRefreshInterval(healthChecks, healthCheckRefreshInterval, healthCheckTimeout, environment.metrics())
+                : HealthCheckRunner.withTimeToLive(healthChecks, healthCheckTtl, healthCheckTimeout, environment.metrics());
+            environment.lifecycle().manage(healthCheckRunner);
+            healthChecks = healthCheckRunner.getHealthChecks();
+        }
+
+        for (Map.Entry<String, HealthCheck> healthcheck : healthChecks.entrySet()) {
+            environment.healthChecks().register(healthcheck.getKey(), healthcheck.getValue());
+            LOG.info("Added guice injected health check: {}", healthcheck.getKey());
         }
 
         for (ServerLifecycleListener serverLifecycleListener : dropwizardGuiceModule.getServerLifecycleListeners()) {
@@ -142,15 +404,76 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
             LOG.info("Added guice server lifecycle listener: {}", serverLifecycleListener.getClass().getName());
         }
 
-        addJerseyBindings(environment, injector, ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS, ContainerRequestFilter.class);
-        addJerseyBindings(environment, injector, ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS, ContainerResponseFilter.class);
-        addJerseyBindings(environment, injector, ResourceConfig.PROPERTY_RESOURCE_FILTER_FACTORIES, ResourceFilterFactory.class);
+        final Set<WarmupTask> warmupTasks = dropwizardGuiceModule.getWarmupTasks();
+        if (warmupBudget != null) {
+            final WarmupRunner warmupRunner = new WarmupRunner(warmupTasks, warmupBudget, environment.metrics(), Ticker.systemTicker());
+            environment.lifecycle().addServerLifecycleListener(warmupRunner);
+            environment.healthChecks().register("warmup", warmupRunner.getHealthCheck());
+            for (WarmupTask warmupTask : warmupTasks) {
+                LOG.info("Added guice injected warm-up task: {}", warmupTask.getClass().getName());
+            }
+        }
+        else if (!warmupTasks.isEmpty()) {
+            LOG.warn("Ignoring {} warm-up tasks, warm-up is not enabled", warmupTasks.size());
+        }
+
+        final List<ResourceFilterFactory> resourceFilterFactories = resourceLatenciesEnabled
+            ? ImmutableList.<ResourceFilterFactory>of(injector.getInstance(ResourceLatencyFilterFactory.class))
+            : ImmutableList.<ResourceFilterFactory>of();
+
+        addJerseyBindings(environment, injector, ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS, ContainerRequestFilter.class, ImmutableList.<ContainerRequestFilter>of());
+        addJerseyBindings(environment, injector, ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS, ContainerResponseFilter.class, ImmutableList.<ContainerResponseFilter>of());
+        addJerseyBindings(environment, injector, ResourceConfig.PROPERTY_RESOURCE_FILTER_FACTORIES, ResourceFilterFactory.class, resourceFilterFactories);
+
+        if (smileEnabled) {
+            environment.jersey().register(new SmileMessageBodyProvider(environment.getObjectMapper(), environment.getValidator()));
+        }
 
         environment.jersey().replace(getReplacerFunction(injector.getInstance(GuiceContainer.class)));
-        environment.servlets().addFilter("Guice Filter", GuiceFilter.class).addMappingForUrlPatterns(null, false, environment.getApplicationContext().getContextPath() + "*");
+        environment.servlets().addFilter("Guice Filter", getGuiceFilterRouter(environment, injector)).addMappingForUrlPatterns(null, false, environment.getApplicationContext().getContextPath() + "*");
+    }
+
+    private Iterable<Module> getGroupModules()
+    {
+        final ImmutableList.Builder<Module> modules = ImmutableList.builder();
+        for (ModuleGroup moduleGroup : moduleGroups) {
+            modules.addAll(moduleGroup.getModules());
+        }
+        if (reloadableModules != null) {
+            modules.addAll(reloadableModules.getModules());
+        }
+        return modules.build();
+    }
+
+    private ConfigurationFactory<T> newConfigurationFactory()
+    {
+        @SuppressWarnings("unchecked")
+        final ConfigurationFactoryFactory<T> configurationFactoryFactory = (ConfigurationFactoryFactory<T>) bootstrap.getConfigurationFactoryFactory();
+        return configurationFactoryFactory.create(configClass, bootstrap.getValidatorFactory().getValidator(), bootstrap.getObjectMapper(), "dw");
+    }
+
+    private GuiceFilterRouter getGuiceFilterRouter(final Environment environment, final Injector injector)
+    {
+        // Without explicit bindings, request scoped objects can still show up as just-in-time bindings later.
+        if (!guiceFilterBypassEnabled || !enforcerEnabled) {
+            LOG.info("Routing all requests through the GuiceFilter");
+            return GuiceFilterRouter.routeAll(environment.metrics());
+        }
+
+        final GuiceFilterRouter router = GuiceFilterRouter.forInjector(injector, environment.metrics());
+        if (router.isRouteAll()) {
+            LOG.info("Routing all requests through the GuiceFilter, request or session scoped bindings are present");
+        }
+        else {
+            for (ServletModuleBinding servletModuleBinding : router.getServletModuleBindings()) {
+                LOG.info("Routing requests for {} ({}) through the GuiceFilter", servletModuleBinding.getPattern(), servletModuleBinding.getUriPatternType());
+            }
+            LOG.info("Bypassing the GuiceFilter for all other requests");
+        }
+        return router;
     }
 
-    private static <T> void addJerseyBindings(Environment environment, Injector injector, String propertyName, Class<T> clazz)
+    private static <T> void addJerseyBindings(Environment environment, Injector injector, String propertyName, Class<T> clazz, List<? extends T> builtIns)
     {
         final TypeToken<Set<T>> setToken = new TypeToken<Set<T>>() {}.where(new TypeParameter<T>() {}, clazz);
 
@@ -159,8 +482,13 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
 
         final Binding<? super Set<T>> binding = injector.getExistingBinding(key);
 
-        if (binding != null) {
-            environment.jersey().property(propertyName, ImmutableList.copyOf(injector.getInstance(key)));
+        if (binding != null || !builtIns.isEmpty()) {
+            final ImmutableList.Builder<T> builder = ImmutableList.builder();
+            builder.addAll(builtIns);
+            if (binding != null) {
+                builder.addAll(injector.getInstance(key));
+            }
+            environment.jersey().property(propertyName, builder.build());
         }
     }
 
@@ -180,8 +508,31 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
     {
         private final Class<U> configClass;
         private final ImmutableSet.Builder<Module> guiceModules = ImmutableSet.builder();
+        private final ImmutableList.Builder<ModuleGroup> moduleGroups = ImmutableList.builder();
+        private ModuleGroup reloadableModules = null;
         private Stage guiceStage = Stage.PRODUCTION;
         private boolean enforcerEnabled = true;
+        private int lifecycleThreads = 0;
+        private Duration lifecycleStopTimeout = null;
+        private boolean provisionMetricsEnabled = false;
+        private boolean methodMetricsEnabled = false;
+        private boolean requestCoalescingEnabled = false;
+        private Function<? super U, Map<String, BulkheadConfiguration>> bulkheadsFunction = null;
+        private boolean bulkheadHealthCheckEnabled = false;
+        private Duration warmupBudget = null;
+        private int eventBusThreads = 0;
+        private int eventBusQueueSize = 0;
+        private TenantModuleFactory tenantModuleFactory = null;
+        private long maximumTenants = 0;
+        private Duration tenantIdleTimeout = null;
+        private boolean resourceLatenciesEnabled = false;
+        private boolean smileEnabled = false;
+        private boolean guiceFilterBypassEnabled = true;
+        private boolean resourceFactoriesEnabled = false;
+        private Duration healthCheckTtl = null;
+        private Duration healthCheckRefreshInterval = null;
+        private Duration healthCheckTimeout = null;
+        private boolean lazySingletonsEnabled = false;
 
         private Builder(final Class<U> configClass)
         {
@@ -209,6 +560,198 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
             return this;
         }
 
+        /**
+         * Starts the guice injected {@link Managed} objects in dependency order instead of handing them
+         * to the Dropwizard lifecycle one by one. Objects that do not depend on each other are started in
+         * parallel using at most <tt>maxThreads</tt> threads. Stopping happens in reverse order, each object
+         * gets at most <tt>stopTimeout</tt> to stop.
+         */
+        public Builder<U> enableParallelLifecycle(final int maxThreads, final Duration stopTimeout)
+        {
+            checkArgument(maxThreads > 0, "maxThreads must be positive");
+            this.lifecycleStopTimeout = checkNotNull(stopTimeout, "stopTimeout is null");
+            this.lifecycleThreads = maxThreads;
+            return this;
+        }
+
+        /**
+         * Creates {@link LazySingleton} bindings on first use instead of when the injector is created. Once the
+         * server has started, the lazy singletons that were not used yet are created in the background.
+         */
+        public Builder<U> enableLazySingletons()
+        {
+            this.lazySingletonsEnabled = true;
+            return this;
+        }
+
+        /**
+         * Routes every request through the {@link com.google.inject.servlet.GuiceFilter}. By default, only requests that match a filter or
+         * servlet pattern of a guice servlet module go through the filter, unless request or session scoped
+         * bindings are present.
+         */
+        public Builder<U> disableGuiceFilterBypass()
+        {
+            this.guiceFilterBypassEnabled = false;
+            return this;
+        }
+
+        /**
+         * Runs the guice injected health checks in parallel on a dedicated pool and reuses their results for
+         * <tt>ttl</tt>. A check that does not finish within <tt>timeout</tt> is reported as unhealthy.
+         */
+        public Builder<U> enableCachedHealthChecks(final Duration ttl, final Duration timeout)
+        {
+            this.healthCheckTtl = checkNotNull(ttl, "ttl is null");
+            this.healthCheckTimeout = checkNotNull(timeout, "timeout is null");
+            this.healthCheckRefreshInterval = null;
+            return this;
+        }
+
+        /**
+         * Runs the guice injected health checks in parallel in the background every <tt>interval</tt>. Calls to
+         * the health check endpoint only return the latest results. A check that does not finish within
+         * <tt>timeout</tt> is reported as unhealthy.
+         */
+        public Builder<U> enableBackgroundHealthChecks(final Duration interval, final Duration timeout)
+        {
+            this.healthCheckRefreshInterval = checkNotNull(interval, "interval is null");
+            this.healthCheckTimeout = checkNotNull(timeout, "timeout is null");
+            this.healthCheckTtl = null;
+            return this;
+        }
+
+        /**
+         * Builds Jersey resources without going through Guice on every request. Stateless resources (only
+         * final fields and singleton constructor dependencies) are promoted to singletons, other resources
+         * that only use constructor injection are built by calling their constructor through a method handle.
+         * Resources built that way are not seen by provision or injection listeners, e.g. the provision metrics.
+         */
+        public Builder<U> enableResourceFactories()
+        {
+            this.resourceFactoriesEnabled = true;
+            return this;
+        }
+
+        /**
+         * Records a provisioning timer for every Guice binding in the Dropwizard metrics registry. This
+         * covers the objects created when the injector is built as well as all provisions at request time.
+         */
+        public Builder<U> enableProvisionMetrics()
+        {
+            this.provisionMetricsEnabled = true;
+            return this;
+        }
+
+        /**
+         * Honors the {@link com.codahale.metrics.annotation.Timed}, {@link com.codahale.metrics.annotation.Metered},
+         * {@link com.codahale.metrics.annotation.ExceptionMetered} and {@link Counted} annotations on the methods of
+         * all Guice constructed objects, not only on Jersey resource methods.
+         */
+        public Builder<U> enableMethodMetrics()
+        {
+            this.methodMetricsEnabled = true;
+            return this;
+        }
+
+        /**
+         * Lets concurrent calls of {@link Coalesce} methods with equal arguments share one execution.
+         */
+        public Builder<U> enableRequestCoalescing()
+        {
+            this.requestCoalescingEnabled = true;
+            return this;
+        }
+
+        /**
+         * Enforces the limits of {@link Bulkhead} methods and classes, as given by their annotations.
+         */
+        public Builder<U> enableBulkheads()
+        {
+            return enableBulkheads(new Function<U, Map<String, BulkheadConfiguration>>() {
+                @Override
+                public Map<String, BulkheadConfiguration> apply(@Nonnull final U configuration)
+                {
+                    return ImmutableMap.of();
+                }
+            });
+        }
+
+        /**
+         * Enforces the limits of {@link Bulkhead} methods and classes. The function returns the bulkhead
+         * settings from the configuration by name; they take precedence over the annotations.
+         */
+        public Builder<U> enableBulkheads(final Function<? super U, Map<String, BulkheadConfiguration>> bulkheadsFunction)
+        {
+            this.bulkheadsFunction = checkNotNull(bulkheadsFunction, "bulkheadsFunction is null");
+            return this;
+        }
+
+        /**
+         * Adds a health check that is unhealthy while bulkheads reject calls. Requires bulkheads to be enabled.
+         */
+        public Builder<U> enableBulkheadHealthCheck()
+        {
+            this.bulkheadHealthCheckEnabled = true;
+            return this;
+        }
+
+        /**
+         * Records the latency of every resource method in a high resolution histogram per response status
+         * class. The <tt>resource-latencies</tt> admin task prints the percentiles since its previous run.
+         */
+        public Builder<U> enableResourceLatencyHistograms()
+        {
+            this.resourceLatenciesEnabled = true;
+            return this;
+        }
+
+        /**
+         * Lets clients exchange entities in the binary Smile format instead of JSON, see {@link SmileMessageBodyProvider}.
+         */
+        public Builder<U> enableSmile()
+        {
+            this.smileEnabled = true;
+            return this;
+        }
+
+        /**
+         * Runs the Guice bound {@link WarmupTask}s once the server has started. The <tt>warmup</tt> health check
+         * is unhealthy until the tasks are done or the time budget is used up.
+         */
+        public Builder<U> enableWarmup(final Duration budget)
+        {
+            this.warmupBudget = checkNotNull(budget, "budget is null");
+            return this;
+        }
+
+        /**
+         * Binds an {@link EventBus} that delivers events to the guice injected subscriber methods on up to
+         * <tt>threads</tt> threads. Every subscriber method queues up to <tt>queueSize</tt> events. The executor
+         * reports its metrics like the executors of the {@link ExecutorsModule}, as <tt>floplizard-events</tt>.
+         */
+        public Builder<U> enableEventBus(final int threads, final int queueSize)
+        {
+            checkArgument(threads > 0, "threads must be positive");
+            checkArgument(queueSize > 0, "queueSize must be positive");
+            this.eventBusThreads = threads;
+            this.eventBusQueueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Binds {@link TenantInjectors}, which build a child injector of the application injector for every tenant
+         * from the module that the factory returns. At most <tt>maximumTenants</tt> child injectors are kept; tenants
+         * that were not used for <tt>idleTimeout</tt> are evicted and their managed objects are stopped.
+         */
+        public Builder<U> enableTenants(final TenantModuleFactory moduleFactory, final long maximumTenants, final Duration idleTimeout)
+        {
+            checkArgument(maximumTenants > 0, "maximumTenants must be positive");
+            this.tenantModuleFactory = checkNotNull(moduleFactory, "moduleFactory is null");
+            this.maximumTenants = maximumTenants;
+            this.tenantIdleTimeout = checkNotNull(idleTimeout, "idleTimeout is null");
+            return this;
+        }
+
         /**
          * Adds guice modules to the bundle.
          */
@@ -227,12 +770,38 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
             return this;
         }
 
+        /**
+         * Adds module groups to the bundle. Each group is built as its own child injector, see {@link ModuleGroup}.
+         */
+        public Builder<U> moduleGroups(final ModuleGroup ... moduleGroups)
+        {
+            this.moduleGroups.addAll(Arrays.asList(moduleGroups));
+
+            return this;
+        }
+
+        /**
+         * Builds the modules of the group as a child injector of the application injector that can be rebuilt
+         * without a restart. The <tt>reload</tt> admin task reads the configuration again, passes it to the
+         * {@link DropwizardAwareModule}s of the group and swaps in the new child injector. The exported keys are
+         * available as {@link Reloadable} in the application injector; the {@link io.dropwizard.lifecycle.Managed}
+         * objects of the group are started and stopped with every generation.
+         */
+        public Builder<U> reloadableModules(final ModuleGroup moduleGroup)
+        {
+            checkState(this.reloadableModules == null, "reloadable modules were already added");
+            this.reloadableModules = checkNotNull(moduleGroup, "moduleGroup is null");
+
+            return this;
+        }
+
         /**
          * Returns a Bundle that can be added to the bootstrap.
          */
         public GuiceBundle<U> build()
         {
-            return new GuiceBundle<U>(configClass, guiceModules.build(), guiceStage, enforcerEnabled);
+            checkState(bulkheadsFunction != null || !bulkheadHealthCheckEnabled, "the bulkhead health check requires bulkheads to be enabled");
+            return new GuiceBundle<U>(this);
         }
     }
 }
@@ -0,0 +1,274 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.servlet.GuiceFilter;
+import com.google.inject.servlet.InstanceFilterBinding;
+import com.google.inject.servlet.InstanceServletBinding;
+import com.google.inject.servlet.LinkedFilterBinding;
+import com.google.inject.servlet.LinkedServletBinding;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModuleBinding;
+import com.google.inject.servlet.ServletModuleTargetVisitor;
+import com.google.inject.servlet.ServletScopes;
+import com.google.inject.servlet.SessionScoped;
+import com.google.inject.spi.DefaultBindingTargetVisitor;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.ElementSource;
+import com.google.inject.spi.HasDependencies;
+
+/**
+ * Sends only the requests through the {@link GuiceFilter} that need it. These are the requests
+ * that match a filter or servlet pattern of a guice servlet module. If any binding outside of guice-servlet
+ * and jersey-guice is request or session scoped (or depends on a request scoped binding), all requests
+ * need the Guice request scope and are routed through the filter.
+ * <br>
+ * The decision is made once when the injector has been created. Every request is counted either on the
+ * <tt>routed</tt> or the <tt>bypassed</tt> meter.
+ */
+class GuiceFilterRouter implements Filter
+{
+    private static final String[] INTERNAL_PACKAGES = { "com.google.inject.servlet.", "com.sun.jersey.guice." };
+
+    private final GuiceFilter guiceFilter = new GuiceFilter();
+    private final boolean routeAll;
+    private final List<ServletModuleBinding> servletModuleBindings;
+    private final Meter routed;
+    private final Meter bypassed;
+
+    /**
+     * Creates a router that only sends matching requests to the GuiceFilter.
+     */
+    static GuiceFilterRouter forInjector(final Injector injector, final MetricRegistry metrics)
+    {
+        checkNotNull(injector, "injector is null");
+        return new GuiceFilterRouter(needsRequestScope(injector), getServletModuleBindings(injector), metrics);
+    }
+
+    /**
+     * Creates a router that sends every request to the GuiceFilter.
+     */
+    static GuiceFilterRouter routeAll(final MetricRegistry metrics)
+    {
+        return new GuiceFilterRouter(true, ImmutableList.<ServletModuleBinding>of(), metrics);
+    }
+
+    private GuiceFilterRouter(final boolean routeAll, final List<ServletModuleBinding> servletModuleBindings, final MetricRegistry metrics)
+    {
+        checkNotNull(metrics, "metrics is null");
+
+        this.routeAll = routeAll;
+        this.servletModuleBindings = checkNotNull(servletModuleBindings, "servletModuleBindings is null");
+        this.routed = metrics.meter(name(GuiceFilterRouter.class, "routed"));
+        this.bypassed = metrics.meter(name(GuiceFilterRouter.class, "bypassed"));
+    }
+
+    boolean isRouteAll()
+    {
+        return routeAll;
+    }
+
+    List<ServletModuleBinding> getServletModuleBindings()
+    {
+        return servletModuleBindings;
+    }
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException
+    {
+        guiceFilter.init(filterConfig);
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException
+    {
+        if (routeAll || !(request instanceof HttpServletRequest) || matches(getContextRelativePath((HttpServletRequest) request))) {
+            routed.mark();
+            guiceFilter.doFilter(request, response, chain);
+        }
+        else {
+            bypassed.mark();
+            chain.doFilter(request, response);
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        guiceFilter.destroy();
+    }
+
+    boolean matches(final String path)
+    {
+        for (ServletModuleBinding servletModuleBinding : servletModuleBindings) {
+            if (servletModuleBinding.matchesUri(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same path that the guice servlet pipeline matches its patterns against.
+     */
+    private static String getContextRelativePath(final HttpServletRequest request)
+    {
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.isEmpty() ? "/" : path;
+    }
+
+    static List<ServletModuleBinding> getServletModuleBindings(final Injector injector)
+    {
+        final ImmutableList.Builder<ServletModuleBinding> builder = ImmutableList.builder();
+        final ServletModuleBindingVisitor visitor = new ServletModuleBindingVisitor();
+        for (Binding<?> binding : injector.getAllBindings().values()) {
+            final ServletModuleBinding servletModuleBinding = binding.acceptTargetVisitor(visitor);
+            if (servletModuleBinding != null) {
+                builder.add(servletModuleBinding);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns true if any binding that is not part of guice-servlet or jersey-guice is request or session
+     * scoped or depends directly on such a binding.
+     */
+    static boolean needsRequestScope(final Injector injector)
+    {
+        final Set<Key<?>> requestScopedKeys = Sets.newHashSet();
+        for (Binding<?> binding : injector.getAllBindings().values()) {
+            if (isRequestScoped(binding)) {
+                if (!isInternal(binding)) {
+                    return true;
+                }
+                requestScopedKeys.add(binding.getKey());
+            }
+        }
+
+        for (Binding<?> binding : injector.getAllBindings().values()) {
+            if (binding instanceof HasDependencies && !isInternal(binding)) {
+                for (Dependency<?> dependency : ((HasDependencies) binding).getDependencies()) {
+                    if (requestScopedKeys.contains(getProvidedKey(dependency.getKey()))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRequestScoped(final Binding<?> binding)
+    {
+        return Scopes.isScoped(binding, ServletScopes.REQUEST, RequestScoped.class) || Scopes.isScoped(binding, ServletScopes.SESSION, SessionScoped.class);
+    }
+
+    private static boolean isInternal(final Binding<?> binding)
+    {
+        Object source = binding.getSource();
+        if (source instanceof ElementSource) {
+            source = ((ElementSource) source).getDeclaringSource();
+        }
+
+        final String className;
+        if (source instanceof Class<?>) {
+            className = ((Class<?>) source).getName();
+        }
+        else if (source instanceof Method) {
+            className = ((Method) source).getDeclaringClass().getName();
+        }
+        else if (source instanceof StackTraceElement) {
+            className = ((StackTraceElement) source).getClassName();
+        }
+        else {
+            return false;
+        }
+
+        for (String internalPackage : INTERNAL_PACKAGES) {
+            if (className.startsWith(internalPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Injecting a Provider of a request scoped binding also needs the request scope.
+     */
+    private static Key<?> getProvidedKey(final Key<?> key)
+    {
+        final Class<?> rawType = key.getTypeLiteral().getRawType();
+        final Type type = key.getTypeLiteral().getType();
+        if ((rawType == Provider.class || rawType == javax.inject.Provider.class) && type instanceof ParameterizedType) {
+            return key.ofType(((ParameterizedType) type).getActualTypeArguments()[0]);
+        }
+        return key;
+    }
+
+    private static class ServletModuleBindingVisitor extends DefaultBindingTargetVisitor<Object, ServletModuleBinding>
+        implements ServletModuleTargetVisitor<Object, ServletModuleBinding>
+    {
+        @Override
+        public ServletModuleBinding visit(final LinkedFilterBinding binding)
+        {
+            return binding;
+        }
+
+        @Override
+        public ServletModuleBinding visit(final InstanceFilterBinding binding)
+        {
+            return binding;
+        }
+
+        @Override
+        public ServletModuleBinding visit(final LinkedServletBinding binding)
+        {
+            return binding;
+        }
+
+        @Override
+        public ServletModuleBinding visit(final InstanceServletBinding binding)
+        {
+            return binding;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Ticker;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+
+/**
+ * Runs the guice injected health checks on a dedicated pool and caches their results. The health checks
+ * that are registered with Dropwizard only return the cached result, so the cost of a <tt>/healthcheck</tt>
+ * call does not depend on how often it is polled.
+ *
+ * <ul>
+ * <li>With a time to live, a result is reused until it expires. The first call after that refreshes
+ * all expired checks in parallel.</li>
+ * <li>With a refresh interval, all checks are run in parallel in the background.</li>
+ * </ul>
+ *
+ * A check never runs more than once at the same time. If a check does not finish within the timeout, it is
+ * reported as unhealthy until it finishes.
+ */
+class HealthCheckRunner implements Managed
+{
+    private final Map<String, Entry> entries;
+    private final long maxAgeNanos;
+    private final Duration refreshInterval;
+    private final Duration timeout;
+    private final Ticker ticker;
+    private final ExecutorService executor;
+    private volatile ScheduledExecutorService scheduler = null;
+
+    static HealthCheckRunner withTimeToLive(final Map<String, HealthCheck> healthChecks, final Duration ttl, final Duration timeout, final MetricRegistry metrics)
+    {
+        return new HealthCheckRunner(healthChecks, checkNotNull(ttl, "ttl is null").toNanoseconds(), null, timeout, metrics, Ticker.systemTicker());
+    }
+
+    static HealthCheckRunner withRefreshInterval(final Map<String, HealthCheck> healthChecks, final Duration interval, final Duration timeout, final MetricRegistry metrics)
+    {
+        checkNotNull(interval, "interval is null");
+        checkNotNull(timeout, "timeout is null");
+        return new HealthCheckRunner(healthChecks, interval.toNanoseconds() + timeout.toNanoseconds(), interval, timeout, metrics, Ticker.systemTicker());
+    }
+
+    HealthCheckRunner(final Map<String, HealthCheck> healthChecks, final long maxAgeNanos, final Duration refreshInterval, final Duration timeout, final MetricRegistry metrics, final Ticker ticker)
+    {
+        checkNotNull(healthChecks, "healthChecks is null");
+        checkNotNull(metrics, "metrics is null");
+        checkArgument(maxAgeNanos >= 0, "maxAge must not be negative");
+
+        this.maxAgeNanos = maxAgeNanos;
+        this.refreshInterval = refreshInterval;
+        this.timeout = checkNotNull(timeout, "timeout is null");
+        this.ticker = checkNotNull(ticker, "ticker is null");
+
+        final ImmutableMap.Builder<String, Entry> builder = ImmutableMap.builder();
+        for (Map.Entry<String, HealthCheck> healthCheck : healthChecks.entrySet()) {
+            builder.put(healthCheck.getKey(), new Entry(healthCheck.getValue(),
+                metrics.timer(name(HealthCheckRunner.class, healthCheck.getKey(), "duration")),
+                metrics.meter(name(HealthCheckRunner.class, healthCheck.getKey(), "timeouts"))));
+        }
+        this.entries = builder.build();
+
+        // As a check never runs twice at the same time, one thread per check is enough.
+        this.executor = Executors.newFixedThreadPool(Math.max(1, entries.size()), new ThreadFactoryBuilder().setNameFormat("floplizard-healthcheck-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Returns the health checks to register with Dropwizard.
+     */
+    Map<String, HealthCheck> getHealthChecks()
+    {
+        final ImmutableMap.Builder<String, HealthCheck> builder = ImmutableMap.builder();
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            builder.put(entry.getKey(), new HealthCheck() {
+                @Override
+                protected Result check()
+                {
+                    return getResult(entry.getValue());
+                }
+            });
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void start()
+    {
+        if (refreshInterval != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("floplizard-healthcheck-refresh").setDaemon(true).build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    refresh(entries.values(), true);
+                }
+            }, 0, refreshInterval.toNanoseconds(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+
+    HealthCheck.Result getResult(final Entry entry)
+    {
+        final TimedResult cached = entry.result;
+        if (!isExpired(cached)) {
+            return cached.result;
+        }
+
+        if (refreshInterval == null) {
+            // Refresh everything that expired at once, the following checks find their run in progress.
+            refresh(entries.values(), false);
+        }
+
+        final Run run = refresh(entry, false);
+        final long remaining = timeout.toNanoseconds() - (ticker.read() - run.startNanos);
+        try {
+            return run.future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            entry.timeouts.mark();
+            return HealthCheck.Result.unhealthy("Health check did not finish within " + timeout);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HealthCheck.Result.unhealthy(e);
+        }
+        catch (ExecutionException e) {
+            return HealthCheck.Result.unhealthy(e.getCause());
+        }
+    }
+
+    private void refresh(final Collection<Entry> toRefresh, final boolean force)
+    {
+        for (Entry entry : toRefresh) {
+            refresh(entry, force);
+        }
+    }
+
+    /**
+     * Returns the current run of the health check. A new run is started if none is in progress and either
+     * <tt>force</tt> is set or the last result has expired.
+     */
+    private Run refresh(final Entry entry, final boolean force)
+    {
+        synchronized (entry) {
+            if (entry.run != null && (!entry.run.future.isDone() || (!force && !isExpired(entry.result)))) {
+                return entry.run;
+            }
+
+            final Future<HealthCheck.Result> future = executor.submit(new Callable<HealthCheck.Result>() {
+                @Override
+                public HealthCheck.Result call()
+                {
+                    final Timer.Context context = entry.duration.time();
+                    try {
+                        final HealthCheck.Result result = entry.healthCheck.execute();
+                        entry.result = new TimedResult(result, ticker.read());
+                        return result;
+                    }
+                    finally {
+                        context.stop();
+                    }
+                }
+            });
+            entry.run = new Run(future, ticker.read());
+            return entry.run;
+        }
+    }
+
+    private boolean isExpired(final TimedResult result)
+    {
+        return result == null || ticker.read() - result.nanos >= maxAgeNanos;
+    }
+
+    /**
+     * Names the health checks by their simple class name. If the simple name is not unique or already taken,
+     * the fully qualified class name is used, followed by a counter if there is more than one instance of a class.
+     */
+    static Map<String, HealthCheck> getNames(final Iterable<HealthCheck> healthChecks, final Set<String> existingNames)
+    {
+        final Multiset<String> simpleNames = HashMultiset.create();
+        for (HealthCheck healthCheck : healthChecks) {
+            simpleNames.add(healthCheck.getClass().getSimpleName());
+        }
+
+        final Map<String, HealthCheck> names = Maps.newLinkedHashMap();
+        for (HealthCheck healthCheck : healthChecks) {
+            String name = healthCheck.getClass().getSimpleName();
+            if (name.isEmpty() || simpleNames.count(name) > 1 || existingNames.contains(name)) {
+                name = healthCheck.getClass().getName();
+            }
+
+            final String baseName = name;
+            for (int i = 2; names.containsKey(name) || existingNames.contains(name); i++) {
+                name = baseName + "-" + i;
+            }
+            names.put(name, healthCheck);
+        }
+        return names;
+    }
+
+    static final class Entry
+    {
+        private final HealthCheck healthCheck;
+        private final Timer duration;
+        private final Meter timeouts;
+
+        private volatile TimedResult result = null;
+        private Run run = null;
+
+        private Entry(final HealthCheck healthCheck, final Timer duration, final Meter timeouts)
+        {
+            this.healthCheck = healthCheck;
+            this.duration = duration;
+            this.timeouts = timeouts;
+        }
+    }
+
+    private static final class TimedResult
+    {
+        private final HealthCheck.Result result;
+        private final long nanos;
+
+        private TimedResult(final HealthCheck.Result result, final long nanos)
+        {
+            this.result = result;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final class Run
+    {
+        private final Future<HealthCheck.Result> future;
+        private final long startNanos;
+
+        private Run(final Future<HealthCheck.Result> future, final long startNanos)
+        {
+            this.future = future;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates executors that report to the metrics registry. For an executor named <tt>name</tt>, the metrics
+ * are named <tt>com.floplizard.guice.ExecutorsModule.name.*</tt>:
+ *
+ * <ul>
+ * <li><tt>submitted</tt>, <tt>rejected</tt> - meters for submitted and rejected tasks</li>
+ * <li><tt>duration</tt> - timer for the run time of the tasks</li>
+ * <li><tt>active</tt>, <tt>queued</tt> - gauges for running and waiting tasks</li>
+ * </ul>
+ *
+ * The gauges are {@link ReplaceableGauges}; they are registered once the executor is started.
+ */
+final class InstrumentedExecutors
+{
+    private static final Logger LOG = LoggerFactory.getLogger(InstrumentedExecutors.class);
+
+    private InstrumentedExecutors()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    static ExecutorService newExecutor(final String name, final ExecutorConfiguration config, final MetricRegistry metrics, final ReplaceableGauges gauges)
+    {
+        checkArgument(!config.isScheduled(), "executor %s is a scheduled executor", name);
+
+        if (config.isVirtualThreads()) {
+            final ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                return new InstrumentedExecutorService(virtualThreadExecutor, new ExecutorMetrics(name, metrics, gauges));
+            }
+            LOG.warn("Virtual threads are not supported by this JVM, executor {} uses a thread pool", name);
+        }
+
+        checkArgument(config.getMinThreads() <= config.getMaxThreads(), "executor %s: minThreads must not be larger than maxThreads", name);
+
+        final BlockingQueue<Runnable> queue;
+        final int coreThreads;
+        if (config.getQueueSize() < 0) {
+            // The pool never grows past the core size with an unbounded queue.
+            queue = new LinkedBlockingQueue<>();
+            coreThreads = config.getMaxThreads();
+        }
+        else {
+            queue = config.getQueueSize() == 0 ? new SynchronousQueue<Runnable>() : new ArrayBlockingQueue<Runnable>(config.getQueueSize());
+            coreThreads = config.getMinThreads();
+        }
+
+        final InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor(coreThreads, config.getMaxThreads(), config.getKeepAlive().toMilliseconds(), queue, newThreadFactory(name),
+            getRejectedExecutionHandler(config.getRejectionPolicy()), new ExecutorMetrics(name, metrics, gauges));
+        executor.allowCoreThreadTimeOut(config.getQueueSize() < 0 && config.getMinThreads() < config.getMaxThreads());
+        return executor;
+    }
+
+    static ScheduledExecutorService newScheduledExecutor(final String name, final ExecutorConfiguration config, final MetricRegistry metrics, final ReplaceableGauges gauges)
+    {
+        checkArgument(config.isScheduled(), "executor %s is not a scheduled executor", name);
+        checkArgument(!config.isVirtualThreads(), "scheduled executor %s can not use virtual threads", name);
+
+        final InstrumentedScheduledThreadPoolExecutor executor = new InstrumentedScheduledThreadPoolExecutor(Math.max(1, config.getMinThreads()), newThreadFactory(name),
+            getRejectedExecutionHandler(config.getRejectionPolicy()), new ExecutorMetrics(name, metrics, gauges));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ThreadFactory newThreadFactory(final String name)
+    {
+        return new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(false).build();
+    }
+
+    private static RejectedExecutionHandler getRejectedExecutionHandler(final ExecutorConfiguration.RejectionPolicy rejectionPolicy)
+    {
+        switch (checkNotNull(rejectionPolicy, "rejectionPolicy is null")) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+
+    /**
+     * Calls <tt>Executors.newVirtualThreadPerTaskExecutor()</tt> if the JVM has it.
+     */
+    private static ExecutorService newVirtualThreadExecutor()
+    {
+        final Method method;
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+
+    static final class ExecutorMetrics
+    {
+        private final Meter submitted;
+        private final Meter rejected;
+        private final Timer duration;
+        private final Counter running;
+        private final ThreadLocal<Timer.Context> context = new ThreadLocal<>();
+        private final ReplaceableGauges gauges;
+        private final String name;
+
+        private ExecutorMetrics(final String name, final MetricRegistry metrics, final ReplaceableGauges gauges)
+        {
+            checkNotNull(metrics, "metrics is null");
+            this.name = checkNotNull(name, "name is null");
+            this.gauges = checkNotNull(gauges, "gauges is null");
+            this.submitted = metrics.meter(name(ExecutorsModule.class, name, "submitted"));
+            this.rejected = metrics.meter(name(ExecutorsModule.class, name, "rejected"));
+            this.duration = metrics.timer(name(ExecutorsModule.class, name, "duration"));
+            this.running = new Counter();
+        }
+
+        private void registerGauges(final Gauge<Integer> active, final Gauge<Integer> queued)
+        {
+            gauges.add(name(ExecutorsModule.class, name, "active"), active);
+            gauges.add(name(ExecutorsModule.class, name, "queued"), queued);
+        }
+
+        private void beforeExecute()
+        {
+            running.inc();
+            context.set(duration.time());
+        }
+
+        private void afterExecute()
+        {
+            final Timer.Context ctx = context.get();
+            context.remove();
+            if (ctx != null) {
+                ctx.stop();
+            }
+            running.dec();
+        }
+
+        private RejectedExecutionHandler instrument(final RejectedExecutionHandler handler)
+        {
+            return new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor)
+                {
+                    rejected.mark();
+                    handler.rejectedExecution(runnable, executor);
+                }
+            };
+        }
+    }
+
+    static class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor
+    {
+        private final ExecutorMetrics executorMetrics;
+
+        InstrumentedThreadPoolExecutor(final int coreThreads, final int maxThreads, final long keepAliveMillis, final BlockingQueue<Runnable> queue, final ThreadFactory threadFactory,
+            final RejectedExecutionHandler handler, final ExecutorMetrics executorMetrics)
+        {
+            super(coreThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, queue, threadFactory, executorMetrics.instrument(handler));
+            this.executorMetrics = executorMetrics;
+            executorMetrics.registerGauges(new Gauge<Integer>() {
+                @Override
+                public Integer getValue()
+                {
+                    return getActiveCount();
+                }
+            }, new Gauge<Integer>() {
+                @Override
+                public Integer getValue()
+                {
+                    return getQueue().size();
+                }
+            });
+        }
+
+        @Override
+        public void execute(final Runnable command)
+        {
+            executorMetrics.submitted.mark();
+            super.execute(command);
+        }
+
+        @Override
+        protected void beforeExecute(final Thread thread, final Runnable runnable)
+        {
+            super.beforeExecute(thread, runnable);
+            executorMetrics.beforeExecute();
+        }
+
+        @Override
+        protected void afterExecute(final Runnable runnable, final Throwable throwable)
+        {
+            executorMetrics.afterExecute();
+            super.afterExecute(runnable, throwable);
+        }
+    }
+
+    static class InstrumentedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor
+    {
+        private final ExecutorMetrics executorMetrics;
+
+        InstrumentedScheduledThreadPoolExecutor(final int threads, final ThreadFactory threadFactory, final RejectedExecutionHandler handler, final ExecutorMetrics executorMetrics)
+        {
+            super(threads, threadFactory, executorMetrics.instrument(handler));
+            this.executorMetrics = executorMetrics;
+            executorMetrics.registerGauges(new Gauge<Integer>() {
+                @Override
+                public Integer getValue()
+                {
+                    return getActiveCount();
+                }
+            }, new Gauge<Integer>() {
+                @Override
+                public Integer getValue()
+                {
+                    return getQueue().size();
+                }
+            });
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(final Runnable runnable, final RunnableScheduledFuture<V> task)
+        {
+            executorMetrics.submitted.mark();
+            return task;
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(final Callable<V> callable, final RunnableScheduledFuture<V> task)
+        {
+            executorMetrics.submitted.mark();
+            return task;
+        }
+
+        @Override
+        protected void beforeExecute(final Thread thread, final Runnable runnable)
+        {
+            super.beforeExecute(thread, runnable);
+            executorMetrics.beforeExecute();
+        }
+
+        @Override
+        protected void afterExecute(final Runnable runnable, final Throwable throwable)
+        {
+            executorMetrics.afterExecute();
+            super.afterExecute(runnable, throwable);
+        }
+    }
+
+    /**
+     * Wraps executors that are not thread pools, e.g. the virtual thread per task executor.
+     */
+    static class InstrumentedExecutorService extends AbstractExecutorService
+    {
+        private final ExecutorService delegate;
+        private final ExecutorMetrics executorMetrics;
+
+        InstrumentedExecutorService(final ExecutorService delegate, final ExecutorMetrics executorMetrics)
+        {
+            this.delegate = delegate;
+            this.executorMetrics = executorMetrics;
+            executorMetrics.registerGauges(new Gauge<Integer>() {
+                @Override
+                public Integer getValue()
+                {
+                    return (int) executorMetrics.running.getCount();
+                }
+            }, new Gauge<Integer>() {
+                @Override
+                public Integer getValue()
+                {
+                    return 0;
+                }
+            });
+        }
+
+        @Override
+        public void execute(final Runnable command)
+        {
+            checkNotNull(command, "command is null");
+            executorMetrics.submitted.mark();
+            delegate.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    executorMetrics.beforeExecute();
+                    try {
+                        command.run();
+                    }
+                    finally {
+                        executorMetrics.afterExecute();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void shutdown()
+        {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException
+        {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
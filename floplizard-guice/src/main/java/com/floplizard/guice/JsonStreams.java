@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import com.google.inject.Inject;
+
+/**
+ * Streams large JSON arrays to the client element by element, so the resource never holds the whole result
+ * and the response is never buffered as a whole. The elements are written with the shared Dropwizard object
+ * mapper through Jackson's streaming generator into pooled chunk buffers.
+ *
+ * <pre>
+ *     &#64;GET
+ *     &#64;Produces(MediaType.APPLICATION_JSON)
+ *     public StreamingOutput export() {
+ *         return jsonStreams.array(Order.class, orderDao.iterateAll());
+ *     }
+ * </pre>
+ *
+ * The iterator is consumed while the response is written, on the request thread. Once the first chunk is
+ * written, the response is committed; a failure after that can only abort the response.
+ * <br>
+ * Bound by the {@link ObjectMapperModule}.
+ */
+public class JsonStreams
+{
+    static final int CHUNK_SIZE = 32 * 1024;
+    private static final int MAX_POOLED_CHUNKS = 64;
+
+    private final ObjectMapperCache objectMapperCache;
+    private final ChunkedOutputStream.BufferPool bufferPool = new ChunkedOutputStream.BufferPool(CHUNK_SIZE, MAX_POOLED_CHUNKS);
+
+    @Inject
+    JsonStreams(final ObjectMapperCache objectMapperCache)
+    {
+        this.objectMapperCache = checkNotNull(objectMapperCache, "objectMapperCache is null");
+    }
+
+    /**
+     * Returns a response entity that writes the elements as a JSON array.
+     */
+    public <T> StreamingOutput array(final Class<T> type, final Iterable<? extends T> elements)
+    {
+        checkNotNull(elements, "elements is null");
+        return array(type, elements.iterator());
+    }
+
+    /**
+     * Returns a response entity that writes the remaining elements of the iterator as a JSON array.
+     */
+    public <T> StreamingOutput array(final Class<T> type, final Iterator<? extends T> elements)
+    {
+        checkNotNull(type, "type is null");
+        checkNotNull(elements, "elements is null");
+
+        final ObjectWriter writer = objectMapperCache.getWriter(new TypeToken<Iterator<T>>() {}.where(new TypeParameter<T>() {}, type).getType());
+        return new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException
+            {
+                // Jackson writes the iterator as an array, pulling one element at a time.
+                try (ChunkedOutputStream chunkedOutput = new ChunkedOutputStream(output, bufferPool)) {
+                    writer.writeValue(chunkedOutput, elements);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Stopwatch;
+import com.google.inject.Binding;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.ServerLifecycleListener;
+
+/**
+ * The scope for {@link LazySingleton} bindings when lazy singletons are enabled. Instances are created by
+ * a {@link ConcurrentSingletonScope}, so the warm-up does not block requests that need other singletons. Guice
+ * only creates {@link com.google.inject.Scopes#SINGLETON} bindings eagerly, so lazy singletons are left alone.
+ * <br>
+ * Once the server has started, all lazy singletons that were not used yet are created on a background
+ * thread. Every lazy singleton that a request thread has to create before that is counted as a cold hit.
+ * <br>
+ * Once sealed, the scope stops keeping track of new lazy singletons. The injectors of reloadable module
+ * groups and tenants are built and dropped while the application runs; their lazy singletons are
+ * created on first use like {@link ConcurrentSingleton}s and are not warmed up.
+ */
+class LazySingletonScope implements Scope, ServerLifecycleListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LazySingletonScope.class);
+
+    private final MetricRegistry metrics;
+    private final Meter coldHits;
+    private final List<LazyProvider<?>> providers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Boolean> warmingUp = new ThreadLocal<>();
+    private final Scope singletonScope = new ConcurrentSingletonScope();
+
+    private final List<Injector> injectors = new CopyOnWriteArrayList<>();
+    private volatile boolean serving = false;
+    private volatile boolean sealed = false;
+
+    LazySingletonScope(final MetricRegistry metrics)
+    {
+        this.metrics = checkNotNull(metrics, "metrics is null");
+        this.coldHits = metrics.meter(name(LazySingletonScope.class, "cold-hits"));
+
+        metrics.register(name(LazySingletonScope.class, "pending"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue()
+            {
+                int pending = 0;
+                for (LazyProvider<?> provider : providers) {
+                    if (!provider.created.get()) {
+                        pending++;
+                    }
+                }
+                return pending;
+            }
+        });
+    }
+
+    @Override
+    public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped)
+    {
+        if (sealed) {
+            return singletonScope.scope(key, unscoped);
+        }
+        final LazyProvider<T> provider = new LazyProvider<>(key, singletonScope.scope(key, unscoped));
+        providers.add(provider);
+        return provider;
+    }
+
+    @Inject
+    void addInjector(final Injector injector)
+    {
+        injectors.add(checkNotNull(injector, "injector is null"));
+    }
+
+    /**
+     * Creates all lazy singletons whose key matches and that do not exist yet. Returns the number of
+     * singletons created. Fails if one of them can not be created, so that the application does not start
+     * without its lifecycle objects.
+     */
+    int createSingletons(final Predicate<Key<?>> keys)
+    {
+        return createSingletons(keys, false);
+    }
+
+    /**
+     * Like {@link #createSingletons(Predicate)}, but only logs the lazy singletons that can not be created.
+     */
+    int warmUp(final Predicate<Key<?>> keys)
+    {
+        return createSingletons(keys, true);
+    }
+
+    private int createSingletons(final Predicate<Key<?>> keys, final boolean ignoreFailures)
+    {
+        checkState(!injectors.isEmpty(), "injector was not injected");
+
+        int count = 0;
+        warmingUp.set(Boolean.TRUE);
+        try {
+            for (LazyProvider<?> provider : providers) {
+                if (!provider.created.get() && keys.apply(provider.key)) {
+                    try {
+                        // Only the injector can provide the context that Guice needs to create the instance.
+                        getInjector(provider.key).getInstance(provider.key);
+                        count++;
+                    }
+                    catch (RuntimeException e) {
+                        if (!ignoreFailures) {
+                            throw e;
+                        }
+                        // The request that needs the singleton will run into the same problem and report it.
+                        LOG.warn("Could not create lazy singleton {}", provider.key, e);
+                    }
+                }
+            }
+        }
+        finally {
+            warmingUp.remove();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the injector that binds the key. With module groups, the lazy singletons of a group are only
+     * bound in its child injector.
+     */
+    private Injector getInjector(final Key<?> key)
+    {
+        for (Injector injector : injectors) {
+            final Binding<?> binding = injector.getExistingBinding(key);
+            if (binding != null && !ModuleGroupInjectors.isExport(binding)) {
+                return injector;
+            }
+        }
+        return injectors.get(0);
+    }
+
+    /**
+     * Stops keeping track of lazy singletons. Must be called once the application injectors were built,
+     * before any injector that can be dropped again.
+     */
+    void seal()
+    {
+        sealed = true;
+    }
+
+    @Override
+    public void serverStarted(final Server server)
+    {
+        startServing();
+        startWarmUp();
+    }
+
+    /**
+     * From now on, every lazy singleton that is created outside of the warm-up is a cold hit.
+     */
+    void startServing()
+    {
+        serving = true;
+    }
+
+    /**
+     * Creates all lazy singletons that do not exist yet on a background thread.
+     */
+    void startWarmUp()
+    {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                final Stopwatch stopwatch = Stopwatch.createStarted();
+                final int count = warmUp(Predicates.<Key<?>>alwaysTrue());
+                LOG.info("Created {} lazy singletons in the background in {}", count, stopwatch);
+            }
+        }, "floplizard-lazy-singleton-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LazySingleton";
+    }
+
+    private final class LazyProvider<T> implements Provider<T>
+    {
+        private final Key<T> key;
+        private final Provider<T> singleton;
+        private final AtomicBoolean created = new AtomicBoolean(false);
+
+        private LazyProvider(final Key<T> key, final Provider<T> singleton)
+        {
+            this.key = key;
+            this.singleton = singleton;
+        }
+
+        @Override
+        public T get()
+        {
+            final T instance = singleton.get();
+            if (!created.get() && created.compareAndSet(false, true) && serving && warmingUp.get() == null) {
+                coldHits.mark();
+                metrics.counter(name(LazySingletonScope.class, getName(key), "cold-hits")).inc();
+                LOG.info("Lazy singleton {} was created on the request path", key);
+            }
+            return instance;
+        }
+
+        @Override
+        public String toString()
+        {
+            return singleton.toString();
+        }
+    }
+
+    private static String getName(final Key<?> key)
+    {
+        final Object annotation = key.getAnnotation() != null ? key.getAnnotation() : key.getAnnotationType();
+        return annotation == null ? key.getTypeLiteral().toString() : key.getTypeLiteral() + "@" + annotation;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.spi.ConstructorBinding;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderBinding;
+import com.google.inject.spi.ProviderInstanceBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * Works out the order in which {@link Managed} objects must be started from the Guice
+ * dependency graph. A managed object depends on another one if it is reachable through
+ * the dependencies of the binding that created it. Objects with no (remaining) dependencies
+ * end up in the same level and can be started in parallel.
+ */
+final class ManagedDependencyGraph
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ManagedDependencyGraph.class);
+
+    private ManagedDependencyGraph()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    /**
+     * Returns the managed objects grouped into levels. All objects in a level only depend on objects
+     * in earlier levels. Stopping must happen in reverse order.
+     */
+    static List<List<Managed>> getStartLevels(final Iterable<Injector> injectors, final Iterable<Managed> managed)
+    {
+        checkNotNull(injectors, "injectors is null");
+        checkNotNull(managed, "managed is null");
+
+        final Set<Managed> managedObjects = Sets.newIdentityHashSet();
+        final Map<Class<?>, List<Managed>> managedByClass = Maps.newHashMap();
+        for (Managed m : managed) {
+            if (managedObjects.add(m)) {
+                List<Managed> list = managedByClass.get(m.getClass());
+                if (list == null) {
+                    list = Lists.newArrayList();
+                    managedByClass.put(m.getClass(), list);
+                }
+                list.add(m);
+            }
+        }
+
+        // Find the bindings that produce each managed object.
+        final Map<Managed, List<Binding<?>>> producers = Maps.newIdentityHashMap();
+        final Map<Binding<?>, Set<Managed>> produced = Maps.newIdentityHashMap();
+        for (Injector injector : injectors) {
+            for (Binding<?> binding : injector.getAllBindings().values()) {
+                final Set<Managed> result = findProduced(binding, managedObjects, managedByClass);
+                if (!result.isEmpty()) {
+                    produced.put(binding, result);
+                    for (Managed m : result) {
+                        List<Binding<?>> list = producers.get(m);
+                        if (list == null) {
+                            list = Lists.newArrayList();
+                            producers.put(m, list);
+                        }
+                        list.add(binding);
+                    }
+                }
+            }
+        }
+
+        // Walk the dependencies of each producing binding until another managed object is reached.
+        final Map<Managed, Set<Managed>> dependencies = Maps.newIdentityHashMap();
+        for (Managed m : managedObjects) {
+            final Set<Managed> found = Sets.newIdentityHashSet();
+            final List<Binding<?>> roots = producers.get(m);
+            if (roots != null) {
+                final Set<Key<?>> visited = Sets.newHashSet();
+                final Deque<Binding<?>> work = new ArrayDeque<>(roots);
+                while (!work.isEmpty()) {
+                    final Binding<?> binding = work.pop();
+                    for (Key<?> key : getDependencyKeys(binding)) {
+                        if (!visited.add(key)) {
+                            continue;
+                        }
+                        for (Injector injector : injectors) {
+                            final Binding<?> dependency = injector.getExistingBinding(key);
+                            if (dependency == null || ModuleGroupInjectors.isExport(dependency)) {
+                                // Exports of module groups are looked up in the group that binds them.
+                                continue;
+                            }
+                            final Set<Managed> reached = produced.get(dependency);
+                            if (reached != null && !reached.contains(m)) {
+                                // The other managed object has its own dependencies, no need to go further.
+                                found.addAll(reached);
+                            }
+                            else {
+                                work.push(dependency);
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+            dependencies.put(m, found);
+        }
+
+        return levelize(managed, dependencies);
+    }
+
+    private static List<List<Managed>> levelize(final Iterable<Managed> managed, final Map<Managed, Set<Managed>> dependencies)
+    {
+        final ImmutableList.Builder<List<Managed>> levels = ImmutableList.builder();
+        final Set<Managed> started = Sets.newIdentityHashSet();
+        final Set<Managed> remaining = Sets.newIdentityHashSet();
+        final List<Managed> ordered = Lists.newArrayList();
+        for (Managed m : managed) {
+            if (remaining.add(m)) {
+                ordered.add(m);
+            }
+        }
+
+        while (!remaining.isEmpty()) {
+            final List<Managed> level = Lists.newArrayList();
+            for (Managed m : ordered) {
+                if (remaining.contains(m) && started.containsAll(dependencies.get(m))) {
+                    level.add(m);
+                }
+            }
+
+            if (level.isEmpty()) {
+                // Can only happen through provider cycles. Start whatever is left one by one.
+                LOG.warn("Dependency cycle between managed objects, starting {} remaining objects sequentially!", remaining.size());
+                for (Managed m : ordered) {
+                    if (remaining.contains(m)) {
+                        levels.add(ImmutableList.of(m));
+                    }
+                }
+                break;
+            }
+
+            levels.add(ImmutableList.copyOf(level));
+            started.addAll(level);
+            remaining.removeAll(level);
+        }
+
+        return levels.build();
+    }
+
+    private static Set<Managed> findProduced(final Binding<?> binding, final Set<Managed> managedObjects, final Map<Class<?>, List<Managed>> managedByClass)
+    {
+        if (binding instanceof InstanceBinding<?>) {
+            final Object instance = ((InstanceBinding<?>) binding).getInstance();
+            return managedObjects.contains(instance) ? ImmutableSet.of((Managed) instance) : ImmutableSet.<Managed>of();
+        }
+        else if (binding instanceof ConstructorBinding<?>) {
+            final List<Managed> instances = managedByClass.get(binding.getKey().getTypeLiteral().getRawType());
+            return instances == null ? ImmutableSet.<Managed>of() : ImmutableSet.copyOf(instances);
+        }
+        else if (binding instanceof ProviderInstanceBinding<?> && managedObjects.contains(((ProviderInstanceBinding<?>) binding).getUserSuppliedProvider())) {
+            // A managed provider, e.g. of an executor. Everything that uses the provided object depends on it.
+            return ImmutableSet.of((Managed) ((ProviderInstanceBinding<?>) binding).getUserSuppliedProvider());
+        }
+        else if (binding instanceof LinkedKeyBinding<?> || binding instanceof ProviderBinding<?>) {
+            // Pass-through, the target binding is looked at on its own.
+            return ImmutableSet.of();
+        }
+        else if (ConcurrentSingletonScope.isSingleton(binding)) {
+            // Provider bindings. Asking the provider could create the object after startup, so only managed
+            // objects of exactly the bound class are matched.
+            final List<Managed> instances = managedByClass.get(binding.getKey().getTypeLiteral().getRawType());
+            return instances == null ? ImmutableSet.<Managed>of() : ImmutableSet.copyOf(instances);
+        }
+        return ImmutableSet.of();
+    }
+
+    private static List<Key<?>> getDependencyKeys(final Binding<?> binding)
+    {
+        final List<Key<?>> keys = new ArrayList<>();
+        if (binding instanceof LinkedKeyBinding<?>) {
+            keys.add(((LinkedKeyBinding<?>) binding).getLinkedKey());
+        }
+        if (binding instanceof ProviderKeyBinding<?>) {
+            keys.add(((ProviderKeyBinding<?>) binding).getProviderKey());
+        }
+        if (binding instanceof ProviderBinding<?>) {
+            keys.add(((ProviderBinding<?>) binding).getProvidedKey());
+        }
+        if (binding instanceof HasDependencies) {
+            for (Dependency<?> dependency : ((HasDependencies) binding).getDependencies()) {
+                keys.add(dependency.getKey());
+            }
+        }
+        return keys;
+    }
+}
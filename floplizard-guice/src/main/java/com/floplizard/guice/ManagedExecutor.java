@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.inject.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+
+/**
+ * Provides an executor bound by the {@link ExecutorsModule} and shuts it down when the application stops.
+ * Running and queued tasks get the configured shutdown timeout to finish, afterwards the remaining
+ * tasks are interrupted. The gauges of the executor are registered when it starts and removed when it stops.
+ * <br>
+ * As this object is the provider of the executor binding, the parallel lifecycle stops everything that
+ * depends on the executor before the executor itself.
+ */
+class ManagedExecutor<E extends ExecutorService> implements Managed, Provider<E>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ManagedExecutor.class);
+
+    private final String name;
+    private final E executor;
+    private final Duration shutdownTimeout;
+    private final ReplaceableGauges gauges;
+
+    ManagedExecutor(final String name, final E executor, final Duration shutdownTimeout, final ReplaceableGauges gauges)
+    {
+        this.name = checkNotNull(name, "name is null");
+        this.executor = checkNotNull(executor, "executor is null");
+        this.shutdownTimeout = checkNotNull(shutdownTimeout, "shutdownTimeout is null");
+        this.gauges = checkNotNull(gauges, "gauges is null");
+    }
+
+    @Override
+    public E get()
+    {
+        return executor;
+    }
+
+    @Override
+    public void start()
+    {
+        gauges.register();
+    }
+
+    @Override
+    public void stop() throws InterruptedException
+    {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout.toMilliseconds(), TimeUnit.MILLISECONDS)) {
+                final List<Runnable> dropped = executor.shutdownNow();
+                LOG.warn("Executor {} did not finish within {}, interrupted running tasks and dropped {} queued tasks", name, shutdownTimeout, dropped.size());
+            }
+        }
+        finally {
+            gauges.remove();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ManagedExecutor[" + name + "]";
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * Starts and stops the {@link Managed} objects of injectors that are built after startup.
+ */
+final class ManagedObjects
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ManagedObjects.class);
+
+    private ManagedObjects()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    /**
+     * Starts the objects in order. If one fails to start, the objects that were already started are stopped again.
+     */
+    static void start(final List<Managed> managed) throws Exception
+    {
+        final List<Managed> started = Lists.newArrayList();
+        try {
+            for (Managed object : managed) {
+                object.start();
+                started.add(object);
+            }
+        }
+        catch (Exception | Error e) {
+            stop(started);
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the objects in reverse order. Failures are logged.
+     */
+    static void stop(final List<Managed> managed)
+    {
+        for (Managed object : Lists.reverse(managed)) {
+            try {
+                object.stop();
+            }
+            catch (Exception e) {
+                LOG.warn("Could not stop {}", object.getClass().getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binding;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * The caches of the {@link CacheModule}, by name. Every cache reports its hits, misses, evictions and
+ * size as gauges and refreshes entries on a shared background pool, which is shut down with the application.
+ * The gauges are {@link ReplaceableGauges}; they are registered once the caches are started.
+ */
+class MethodCaches implements Managed
+{
+    /** Guava caches do not allow null values. */
+    static final Object NULL = new Object();
+
+    private static final ThreadLocal<Boolean> REFRESHING = new ThreadLocal<>();
+
+    private final Map<String, LoadingCache<MethodCall, Object>> caches;
+    private final String tenant;
+    private final ReplaceableGauges gauges;
+    private final ExecutorService refreshExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("floplizard-cache-refresh-%d").setDaemon(true).build());
+
+    private volatile Injector injector = null;
+
+    /**
+     * The tenant may be null; it goes into the names of the gauges.
+     */
+    MethodCaches(final Map<String, CacheConfiguration> configurations, final Map<String, Weigher<Object, Object>> weighers, final String tenant, final ReplaceableGauges gauges)
+    {
+        checkNotNull(configurations, "configurations is null");
+        checkNotNull(weighers, "weighers is null");
+        this.tenant = tenant;
+        this.gauges = checkNotNull(gauges, "gauges is null");
+
+        final ImmutableMap.Builder<String, LoadingCache<MethodCall, Object>> builder = ImmutableMap.builder();
+        for (Map.Entry<String, CacheConfiguration> entry : configurations.entrySet()) {
+            final String name = entry.getKey();
+            final LoadingCache<MethodCall, Object> cache = newCache(name, checkNotNull(entry.getValue(), "configuration for cache %s is null", name), weighers.get(name));
+            registerGauges(name, cache);
+            builder.put(name, cache);
+        }
+        this.caches = builder.build();
+    }
+
+    /**
+     * Returns the cache with the given name or null if there is none.
+     */
+    LoadingCache<MethodCall, Object> getCache(final String name)
+    {
+        return caches.get(name);
+    }
+
+    /**
+     * Called once the injector of the {@link CacheModule} exists. From then on, the listener of the module also
+     * hears the types of its child injectors.
+     */
+    @Inject
+    void setInjector(final Injector injector)
+    {
+        this.injector = checkNotNull(injector, "injector is null");
+    }
+
+    boolean isInjected()
+    {
+        return injector != null;
+    }
+
+    /**
+     * Returns the caches of the nearest injector with a {@link CacheModule}, starting at the given injector, or
+     * null if there is none. Tenants and reloadable module groups may have their own caches.
+     */
+    static MethodCaches find(final Injector injector)
+    {
+        for (Injector current = injector; current != null; current = current.getParent()) {
+            final List<Binding<MethodCaches>> bindings = current.findBindingsByType(TypeLiteral.get(MethodCaches.class));
+            if (!bindings.isEmpty()) {
+                return bindings.get(0).getProvider().get();
+            }
+        }
+        return null;
+    }
+
+    Set<String> getNames()
+    {
+        return caches.keySet();
+    }
+
+    @Override
+    public void start()
+    {
+        gauges.register();
+    }
+
+    @Override
+    public void stop()
+    {
+        refreshExecutor.shutdownNow();
+        gauges.remove();
+    }
+
+    /**
+     * Returns true once, if the current thread is calling a method to refresh a cache entry. The interceptor
+     * must then call the method instead of asking the cache.
+     */
+    static boolean isRefreshing()
+    {
+        if (REFRESHING.get() == null) {
+            return false;
+        }
+        // Only the refreshed method itself bypasses its cache, not the cached methods it calls.
+        REFRESHING.remove();
+        return true;
+    }
+
+    private LoadingCache<MethodCall, Object> newCache(final String name, final CacheConfiguration config, final Weigher<Object, Object> weigher)
+    {
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (config.getMaximumSize() >= 0) {
+            builder.maximumSize(config.getMaximumSize());
+        }
+        if (config.getMaximumWeight() >= 0) {
+            checkArgument(weigher != null, "cache %s has a maximum weight but no weigher", name);
+            builder.maximumWeight(config.getMaximumWeight()).weigher(new Weigher<Object, Object>() {
+                @Override
+                public int weigh(final Object key, final Object value)
+                {
+                    return value == NULL ? 0 : weigher.weigh(((MethodCall) key).getArguments(), value);
+                }
+            });
+        }
+        if (config.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(config.getExpireAfterWrite().toNanoseconds(), TimeUnit.NANOSECONDS);
+        }
+        if (config.getExpireAfterAccess() != null) {
+            builder.expireAfterAccess(config.getExpireAfterAccess().toNanoseconds(), TimeUnit.NANOSECONDS);
+        }
+        if (config.getRefreshAfterWrite() != null) {
+            builder.refreshAfterWrite(config.getRefreshAfterWrite().toNanoseconds(), TimeUnit.NANOSECONDS);
+        }
+
+        return builder.build(CacheLoader.asyncReloading(new CacheLoader<MethodCall, Object>() {
+            @Override
+            public Object load(final MethodCall call) throws Exception
+            {
+                return invoke(call);
+            }
+        }, refreshExecutor));
+    }
+
+    /**
+     * Refreshes an entry in the background. The method is called through the Guice proxy, so that the other
+     * interceptors of the method still apply.
+     */
+    private static Object invoke(final MethodCall call) throws Exception
+    {
+        REFRESHING.set(Boolean.TRUE);
+        try {
+            final Object result = call.getMethod().invoke(call.getTarget(), call.getArguments().toArray());
+            return result == null ? NULL : result;
+        }
+        catch (InvocationTargetException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+            throw Throwables.propagate(e.getCause());
+        }
+        finally {
+            REFRESHING.remove();
+        }
+    }
+
+    private void registerGauges(final String name, final LoadingCache<MethodCall, Object> cache)
+    {
+        gauges.add(name(CacheModule.class, tenant, name, "size"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return cache.size();
+            }
+        });
+        gauges.add(name(CacheModule.class, tenant, name, "hits"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return cache.stats().hitCount();
+            }
+        });
+        gauges.add(name(CacheModule.class, tenant, name, "misses"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return cache.stats().missCount();
+            }
+        });
+        gauges.add(name(CacheModule.class, tenant, name, "evictions"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return cache.stats().evictionCount();
+            }
+        });
+        gauges.add(name(CacheModule.class, tenant, name, "hit-ratio"), new Gauge<Double>() {
+            @Override
+            public Double getValue()
+            {
+                final CacheStats stats = cache.stats();
+                return stats.requestCount() == 0 ? Double.NaN : stats.hitRate();
+            }
+        });
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A call of an intercepted, scheduled or subscriber method. The called objects are compared by identity, the arguments by value.
+ */
+final class MethodCall
+{
+    private final Object target;
+    private final Method method;
+    private final Object[] arguments;
+    private final int hashCode;
+
+    MethodCall(final Object target, final Method method, final Object[] arguments)
+    {
+        this.target = checkNotNull(target, "target is null");
+        this.method = checkNotNull(method, "method is null");
+        this.arguments = checkNotNull(arguments, "arguments is null").clone();
+        this.hashCode = 31 * (31 * System.identityHashCode(target) + method.hashCode()) + Arrays.deepHashCode(this.arguments);
+    }
+
+    Object getTarget()
+    {
+        return target;
+    }
+
+    Method getMethod()
+    {
+        return method;
+    }
+
+    List<Object> getArguments()
+    {
+        return Arrays.asList(arguments);
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        final MethodCall that = (MethodCall) other;
+        return target == that.target && method.equals(that.method) && Arrays.deepEquals(arguments, that.arguments);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return method.getName() + Arrays.deepToString(arguments);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Metered;
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.base.Strings;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Instruments the methods of all Guice constructed objects that carry a {@link Timed}, {@link Metered},
+ * {@link ExceptionMetered} or {@link Counted} annotation. The metrics are named like the ones Dropwizard
+ * creates for resource methods and are resolved once per method when Guice first sees a type, so a call only
+ * pays for updating them.
+ * <br>
+ * Jersey resource methods are left alone, Dropwizard already instruments them. Guice can only intercept
+ * methods that are not private, static or final, in classes that are not final and that Guice constructs.
+ */
+class MethodMetricsModule implements Module, TypeListener
+{
+    private final MetricRegistry metrics;
+
+    MethodMetricsModule(final MetricRegistry metrics)
+    {
+        this.metrics = checkNotNull(metrics, "metrics is null");
+    }
+
+    @Override
+    public void configure(final Binder binder)
+    {
+        binder.bindListener(Matchers.any(), this);
+    }
+
+    @Override
+    public <T> void hear(final TypeLiteral<T> type, final TypeEncounter<T> encounter)
+    {
+        final Class<? super T> rawType = type.getRawType();
+        if (Modifier.isFinal(rawType.getModifiers())) {
+            return;
+        }
+
+        for (Class<?> current = rawType; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (isInterceptable(method) && !isResourceMethod(method)) {
+                    bindInterceptors(method, encounter);
+                }
+            }
+        }
+    }
+
+    private void bindInterceptors(final Method method, final TypeEncounter<?> encounter)
+    {
+        final Timed timed = method.getAnnotation(Timed.class);
+        if (timed != null) {
+            encounter.bindInterceptor(Matchers.only(method), new TimedInterceptor(metrics.timer(getName(method, timed.name(), timed.absolute()))));
+        }
+
+        final Metered metered = method.getAnnotation(Metered.class);
+        if (metered != null) {
+            encounter.bindInterceptor(Matchers.only(method), new MeteredInterceptor(metrics.meter(getName(method, metered.name(), metered.absolute()))));
+        }
+
+        final ExceptionMetered exceptionMetered = method.getAnnotation(ExceptionMetered.class);
+        if (exceptionMetered != null) {
+            final Meter meter = metrics.meter(getName(method, exceptionMetered.name(), exceptionMetered.absolute(), ExceptionMetered.DEFAULT_NAME_SUFFIX));
+            encounter.bindInterceptor(Matchers.only(method), new ExceptionMeteredInterceptor(meter, exceptionMetered.cause()));
+        }
+
+        final Counted counted = method.getAnnotation(Counted.class);
+        if (counted != null) {
+            encounter.bindInterceptor(Matchers.only(method), new CountedInterceptor(metrics.counter(getName(method, counted.name(), counted.absolute())), counted.monotonic()));
+        }
+    }
+
+    private static String getName(final Method method, final String explicitName, final boolean absolute, final String ... suffixes)
+    {
+        if (Strings.isNullOrEmpty(explicitName)) {
+            return name(name(method.getDeclaringClass(), method.getName()), suffixes);
+        }
+        return absolute ? explicitName : name(method.getDeclaringClass(), explicitName);
+    }
+
+    static boolean isInterceptable(final Method method)
+    {
+        final int modifiers = method.getModifiers();
+        return !method.isSynthetic() && !method.isBridge() && !Modifier.isPrivate(modifiers) && !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers);
+    }
+
+    private static boolean isResourceMethod(final Method method)
+    {
+        if (method.isAnnotationPresent(Path.class)) {
+            return true;
+        }
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation.annotationType().isAnnotationPresent(HttpMethod.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class TimedInterceptor implements MethodInterceptor
+    {
+        private final Timer timer;
+
+        private TimedInterceptor(final Timer timer)
+        {
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            final Timer.Context context = timer.time();
+            try {
+                return invocation.proceed();
+            }
+            finally {
+                context.stop();
+            }
+        }
+    }
+
+    private static final class MeteredInterceptor implements MethodInterceptor
+    {
+        private final Meter meter;
+
+        private MeteredInterceptor(final Meter meter)
+        {
+            this.meter = meter;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            meter.mark();
+            return invocation.proceed();
+        }
+    }
+
+    private static final class ExceptionMeteredInterceptor implements MethodInterceptor
+    {
+        private final Meter meter;
+        private final Class<? extends Throwable> cause;
+
+        private ExceptionMeteredInterceptor(final Meter meter, final Class<? extends Throwable> cause)
+        {
+            this.meter = meter;
+            this.cause = cause;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            try {
+                return invocation.proceed();
+            }
+            catch (Throwable t) {
+                if (cause.isInstance(t)) {
+                    meter.mark();
+                }
+                throw t;
+            }
+        }
+    }
+
+    private static final class CountedInterceptor implements MethodInterceptor
+    {
+        private final Counter counter;
+        private final boolean monotonic;
+
+        private CountedInterceptor(final Counter counter, final boolean monotonic)
+        {
+            this.counter = counter;
+            this.monotonic = monotonic;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable
+        {
+            counter.inc();
+            try {
+                return invocation.proceed();
+            }
+            finally {
+                if (!monotonic) {
+                    counter.dec();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+
+/**
+ * Runs the {@link Scheduled} methods of the Guice bound singletons. One thread triggers the runs, every
+ * method runs on its own worker thread, so a slow method never delays another one. Runs that are due while
+ * the previous run of the same method is still going are counted as overruns.
+ */
+class MethodScheduler implements Managed
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MethodScheduler.class);
+
+    private final List<Job> jobs;
+    private final Duration stopTimeout;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    private volatile boolean stopped = false;
+
+    MethodScheduler(final Iterable<MethodCall> methods, final Duration stopTimeout, final MetricRegistry metrics)
+    {
+        checkNotNull(methods, "methods is null");
+        this.stopTimeout = checkNotNull(stopTimeout, "stopTimeout is null");
+        checkNotNull(metrics, "metrics is null");
+
+        final ImmutableList.Builder<Job> builder = ImmutableList.builder();
+        for (MethodCall method : methods) {
+            builder.add(new Job(method, metrics));
+        }
+        this.jobs = builder.build();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("floplizard-scheduler").setDaemon(true).build());
+        this.workers = Executors.newFixedThreadPool(Math.max(1, jobs.size()), new ThreadFactoryBuilder().setNameFormat("floplizard-scheduled-%d").setDaemon(true).build());
+    }
+
+    @Override
+    public void start()
+    {
+        for (Job job : jobs) {
+            job.schedule();
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException
+    {
+        stopped = true;
+        scheduler.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(stopTimeout.toNanoseconds(), TimeUnit.NANOSECONDS)) {
+            LOG.warn("Scheduled methods did not finish within {}, interrupting them!", stopTimeout);
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns why the method can not be scheduled, or null if it can.
+     */
+    static String getScheduleError(final Method method)
+    {
+        final Scheduled scheduled = method.getAnnotation(Scheduled.class);
+        if (method.getParameterTypes().length > 0) {
+            return String.format("Scheduled method %s must not take parameters", method);
+        }
+        if ((scheduled.fixedRate() > 0) == (scheduled.fixedDelay() > 0)) {
+            return String.format("Scheduled method %s must have either a fixedRate or a fixedDelay", method);
+        }
+        if (scheduled.fixedRate() < 0 || scheduled.fixedDelay() < 0 || scheduled.initialDelay() < 0) {
+            return String.format("Scheduled method %s must not have negative times", method);
+        }
+        return null;
+    }
+
+    private final class Job implements Runnable
+    {
+        private final MethodCall call;
+        private final Scheduled scheduled;
+        private final Timer duration;
+        private final Counter failures;
+        private final Counter overruns;
+
+        private final RunState state;
+
+        private final Runnable trigger = new Runnable() {
+            @Override
+            public void run()
+            {
+                if (state.trigger()) {
+                    execute();
+                }
+                else {
+                    overruns.inc();
+                }
+            }
+        };
+
+        private Job(final MethodCall call, final MetricRegistry metrics)
+        {
+            this.call = call;
+            this.scheduled = call.getMethod().getAnnotation(Scheduled.class);
+            this.state = new RunState(scheduled.overrun() == Scheduled.Overrun.COALESCE);
+            call.getMethod().setAccessible(true);
+
+            final Method method = call.getMethod();
+            this.duration = metrics.timer(name(method.getDeclaringClass(), method.getName(), "scheduled", "duration"));
+            this.failures = metrics.counter(name(method.getDeclaringClass(), method.getName(), "scheduled", "failures"));
+            this.overruns = metrics.counter(name(method.getDeclaringClass(), method.getName(), "scheduled", "overruns"));
+        }
+
+        private void schedule()
+        {
+            if (scheduled.fixedRate() > 0) {
+                scheduler.scheduleAtFixedRate(trigger, scheduled.initialDelay(), scheduled.fixedRate(), scheduled.unit());
+            }
+            else {
+                scheduler.schedule(trigger, scheduled.initialDelay(), scheduled.unit());
+            }
+        }
+
+        private void execute()
+        {
+            try {
+                workers.execute(this);
+            }
+            catch (RejectedExecutionException e) {
+                // Shutting down.
+                state.reset();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            do {
+                invoke();
+            } while (state.finish() && !stopped);
+
+            if (scheduled.fixedDelay() > 0 && !stopped) {
+                try {
+                    scheduler.schedule(trigger, scheduled.fixedDelay(), scheduled.unit());
+                }
+                catch (RejectedExecutionException e) {
+                    // Shutting down.
+                }
+            }
+        }
+
+        private void invoke()
+        {
+            final Timer.Context context = duration.time();
+            try {
+                call.getMethod().invoke(call.getTarget());
+            }
+            catch (InvocationTargetException e) {
+                failures.inc();
+                LOG.error("Scheduled method {} failed", call.getMethod(), e.getCause());
+            }
+            catch (IllegalAccessException | RuntimeException e) {
+                failures.inc();
+                LOG.error("Could not run scheduled method {}", call.getMethod(), e);
+            }
+            finally {
+                context.stop();
+            }
+        }
+    }
+
+    /**
+     * Whether a method is running and whether a coalesced run is due after it. Both are kept in one atomic
+     * value, so a trigger can not slip in between the end of a run and the check for a pending run.
+     */
+    static final class RunState
+    {
+        private static final int IDLE = 0;
+        private static final int RUNNING = 1;
+        private static final int PENDING = 2;
+
+        private final boolean coalesce;
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        RunState(final boolean coalesce)
+        {
+            this.coalesce = coalesce;
+        }
+
+        /**
+         * Returns true if the caller must start a run, false if the run overlaps with the running one and is
+         * skipped or combined into the pending run.
+         */
+        boolean trigger()
+        {
+            while (true) {
+                final int current = state.get();
+                if (current == IDLE) {
+                    if (state.compareAndSet(IDLE, RUNNING)) {
+                        return true;
+                    }
+                }
+                else if (current == RUNNING && coalesce) {
+                    if (state.compareAndSet(RUNNING, PENDING)) {
+                        return false;
+                    }
+                }
+                else {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Ends a run. Returns true if a pending run must start right away, the method then counts as running.
+         */
+        boolean finish()
+        {
+            if (state.compareAndSet(RUNNING, IDLE)) {
+                return false;
+            }
+            // Only the running method leaves the pending state.
+            state.set(RUNNING);
+            return true;
+        }
+
+        /**
+         * Ends a run that could not be started.
+         */
+        void reset()
+        {
+            state.set(IDLE);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Key;
+import com.google.inject.Module;
+
+/**
+ * A group of modules that is built as its own child injector. The child injectors of all groups share a
+ * parent injector that holds the {@link io.dropwizard.setup.Environment}, the configuration and the bundle
+ * modules. The modules added with {@link GuiceBundle.Builder#modules(Module...)} form the application
+ * injector, which also holds Jersey and all servlet modules.
+ * <br>
+ * A group sees only its own bindings, the bindings of the parent and the keys exported by other groups.
+ * Every exported key is visible in all other groups and in the application injector, so resources that
+ * live in a group must be exported as well.
+ *
+ * <pre>
+ *     GuiceBundle.defaultBuilder(MyConfiguration.class)
+ *         .modules(new ResourcesModule())
+ *         .moduleGroups(
+ *             new ModuleGroup("storage")
+ *                 .modules(new DatabaseModule(), new DaoModule())
+ *                 .exports(UserDao.class, OrderDao.class),
+ *             new ModuleGroup("billing")
+ *                 .modules(new BillingModule())
+ *                 .exports(InvoiceService.class))
+ *         .build();
+ * </pre>
+ *
+ * The modules of all groups are configured in parallel. The child injectors are then created in the order
+ * in which the groups were added, so eager singletons may only use exports of groups that were added before
+ * their own group. Finally all {@link ConcurrentSingleton} bindings are created in parallel.
+ */
+public class ModuleGroup
+{
+    private final String name;
+    private final ImmutableSet.Builder<Module> modules = ImmutableSet.builder();
+    private final ImmutableSet.Builder<Key<?>> exports = ImmutableSet.builder();
+
+    public ModuleGroup(final String name)
+    {
+        this.name = checkNotNull(name, "name is null");
+    }
+
+    /**
+     * Adds guice modules to the group.
+     */
+    public ModuleGroup modules(final Module ... modules)
+    {
+        return modules(Arrays.asList(modules));
+    }
+
+    /**
+     * Adds guice modules to the group.
+     */
+    public ModuleGroup modules(final Iterable<? extends Module> modules)
+    {
+        this.modules.addAll(modules);
+        return this;
+    }
+
+    /**
+     * Makes the bindings for the given types visible to the other groups and to the application injector.
+     */
+    public ModuleGroup exports(final Class<?> ... types)
+    {
+        for (Class<?> type : types) {
+            exports.add(Key.get(type));
+        }
+        return this;
+    }
+
+    /**
+     * Makes the bindings for the given keys visible to the other groups and to the application injector.
+     */
+    public ModuleGroup exports(final Key<?> ... keys)
+    {
+        exports.addAll(Arrays.asList(keys));
+        return this;
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    Set<Module> getModules()
+    {
+        return modules.build();
+    }
+
+    Set<Key<?>> getExports()
+    {
+        return exports.build();
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
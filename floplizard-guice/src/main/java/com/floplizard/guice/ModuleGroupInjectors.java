@@ -0,0 +1,249 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Stage;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.PrivateElements;
+import com.google.inject.spi.ProviderInstanceBinding;
+
+/**
+ * Creates the child injectors for the {@link ModuleGroup}s and the application injector.
+ * <br>
+ * Guice configures all modules and processes all bindings of a child injector while holding a lock that
+ * it shares with the parent and all siblings, and it creates every {@link com.google.inject.Scopes#SINGLETON}
+ * instance while holding a global lock. Creating the child injectors on several threads would only make
+ * them wait for each other. Instead, the modules of every injector are configured in parallel by recording
+ * their elements, the injectors are created from the recorded elements one by one, and the
+ * {@link ConcurrentSingleton} bindings, which take no global lock, are created in parallel.
+ */
+final class ModuleGroupInjectors
+{
+    private final Injector parent;
+    private final Stage stage;
+    private final List<ModuleGroup> groups;
+    private final ConcurrentSingletonScope concurrentSingletonScope;
+    private final Map<Key<?>, ExportProvider<?>> exports = Maps.newLinkedHashMap();
+
+    ModuleGroupInjectors(final Injector parent, final Stage stage, final List<ModuleGroup> groups, final ConcurrentSingletonScope concurrentSingletonScope)
+    {
+        this.parent = checkNotNull(parent, "parent is null");
+        this.stage = checkNotNull(stage, "stage is null");
+        this.groups = ImmutableList.copyOf(checkNotNull(groups, "groups is null"));
+        this.concurrentSingletonScope = checkNotNull(concurrentSingletonScope, "concurrentSingletonScope is null");
+
+        final Set<String> names = Sets.newHashSet();
+        for (ModuleGroup group : this.groups) {
+            checkArgument(names.add(group.getName()), "module group %s was added twice", group.getName());
+            for (Key<?> key : group.getExports()) {
+                final ExportProvider<?> existing = exports.put(key, newExportProvider(key, group));
+                if (existing != null) {
+                    throw new IllegalArgumentException(String.format("%s is exported by module groups %s and %s", key, existing.group, group));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the binding makes a key exported by another group visible.
+     */
+    static boolean isExport(final Binding<?> binding)
+    {
+        return binding instanceof ProviderInstanceBinding<?> && ((ProviderInstanceBinding<?>) binding).getUserSuppliedProvider() instanceof ExportProvider<?>;
+    }
+
+    /**
+     * Creates the child injectors for all groups and the application injector from the given modules. Returns
+     * the injectors of the groups followed by the application injector.
+     */
+    List<Injector> createInjectors(final Iterable<? extends Module> applicationModules) throws InterruptedException
+    {
+        checkNotNull(applicationModules, "applicationModules is null");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(groups.size() + 1, new ThreadFactoryBuilder().setNameFormat("floplizard-module-group-%d").setDaemon(true).build());
+        try {
+            final List<Future<List<Element>>> elements = Lists.newArrayList();
+            for (ModuleGroup group : groups) {
+                elements.add(executor.submit(recordElements(group.getModules(), new ImportModule(group))));
+            }
+            elements.add(executor.submit(recordElements(applicationModules, new ImportModule(null))));
+
+            final ImmutableList.Builder<Injector> injectors = ImmutableList.builder();
+            for (int i = 0; i < elements.size(); i++) {
+                final List<Element> recorded = getUnchecked(elements.get(i));
+                final ModuleGroup group = i < groups.size() ? groups.get(i) : null;
+                if (group != null) {
+                    final Set<Key<?>> bound = getBoundKeys(recorded);
+                    for (Key<?> key : group.getExports()) {
+                        checkState(bound.contains(key), "module group %s exports %s but does not bind it", group, key);
+                    }
+                }
+
+                final Injector injector = parent.createChildInjector(Elements.getModule(recorded));
+                if (group != null) {
+                    for (Key<?> key : group.getExports()) {
+                        exports.get(key).injector = injector;
+                    }
+                }
+                injectors.add(injector);
+            }
+
+            final List<Injector> result = injectors.build();
+            for (Injector injector : result) {
+                ConcurrentSingletonScope.checkDependencies(injector);
+            }
+            if (stage == Stage.PRODUCTION) {
+                final List<Future<?>> singletons = Lists.newArrayList();
+                for (final Injector injector : result) {
+                    singletons.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            concurrentSingletonScope.createSingletons(injector);
+                        }
+                    }));
+                }
+                for (Future<?> future : singletons) {
+                    getUnchecked(future);
+                }
+            }
+            return result;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<List<Element>> recordElements(final Iterable<? extends Module> modules, final Module importModule)
+    {
+        return new Callable<List<Element>>() {
+            @Override
+            public List<Element> call()
+            {
+                return Elements.getElements(stage, Iterables.concat(modules, ImmutableList.of(importModule)));
+            }
+        };
+    }
+
+    private static Set<Key<?>> getBoundKeys(final List<Element> elements)
+    {
+        final Set<Key<?>> keys = Sets.newHashSet();
+        for (Element element : elements) {
+            if (element instanceof Binding<?>) {
+                keys.add(((Binding<?>) element).getKey());
+            }
+            else if (element instanceof PrivateElements) {
+                keys.addAll(((PrivateElements) element).getExposedKeys());
+            }
+        }
+        return keys;
+    }
+
+    private static <T> T getUnchecked(final Future<T> future) throws InterruptedException
+    {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private static <T> ExportProvider<T> newExportProvider(final Key<T> key, final ModuleGroup group)
+    {
+        return new ExportProvider<>(key, group);
+    }
+
+    /**
+     * Binds the keys exported by all other groups.
+     */
+    private final class ImportModule implements Module
+    {
+        private final ModuleGroup group;
+
+        private ImportModule(final ModuleGroup group)
+        {
+            this.group = group;
+        }
+
+        @Override
+        public void configure(final Binder binder)
+        {
+            for (ExportProvider<?> export : exports.values()) {
+                if (export.group != group) {
+                    bindExport(binder, export);
+                }
+            }
+        }
+
+        private <T> void bindExport(final Binder binder, final ExportProvider<T> export)
+        {
+            binder.bind(export.key).toProvider(export);
+        }
+    }
+
+    static final class ExportProvider<T> implements Provider<T>
+    {
+        private final Key<T> key;
+        private final ModuleGroup group;
+        private volatile Injector injector = null;
+
+        private ExportProvider(final Key<T> key, final ModuleGroup group)
+        {
+            this.key = key;
+            this.group = group;
+        }
+
+        @Override
+        public T get()
+        {
+            final Injector exporter = injector;
+            checkState(exporter != null, "%s is exported by module group %s, which was not created yet; eager singletons may only use exports of groups added before their own group", key, group);
+            return exporter.getInstance(key);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "export of " + key + " from module group " + group;
+        }
+    }
+}
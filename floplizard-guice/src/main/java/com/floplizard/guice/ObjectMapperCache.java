@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.inject.Inject;
+
+/**
+ * Hands out {@link ObjectReader} and {@link ObjectWriter} instances for the shared object mapper. Readers
+ * and writers are immutable and thread safe, so they are built once per target type and then reused.
+ * <br>
+ * Bound by the {@link ObjectMapperModule}.
+ */
+public class ObjectMapperCache
+{
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    @Inject
+    ObjectMapperCache(final ObjectMapper objectMapper)
+    {
+        this.objectMapper = checkNotNull(objectMapper, "objectMapper is null");
+    }
+
+    public ObjectMapper getObjectMapper()
+    {
+        return objectMapper;
+    }
+
+    public ObjectReader getReader(final TypeReference<?> typeReference)
+    {
+        return getReader(typeReference.getType());
+    }
+
+    public ObjectReader getReader(final Type type)
+    {
+        checkNotNull(type, "type is null");
+
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = objectMapper.reader(objectMapper.constructType(type));
+            final ObjectReader existing = readers.putIfAbsent(type, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+    public ObjectWriter getWriter(final TypeReference<?> typeReference)
+    {
+        return getWriter(typeReference.getType());
+    }
+
+    public ObjectWriter getWriter(final Type type)
+    {
+        checkNotNull(type, "type is null");
+
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = objectMapper.writerWithType(objectMapper.constructType(type));
+            final ObjectWriter existing = writers.putIfAbsent(type, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+}
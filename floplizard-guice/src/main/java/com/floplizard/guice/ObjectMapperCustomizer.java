@@ -0,0 +1,27 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Configures a variant of the Dropwizard {@link ObjectMapper}. See {@link ObjectMapperModule#variant(Class, ObjectMapperCustomizer)}.
+ */
+public interface ObjectMapperCustomizer
+{
+    /**
+     * Customizes a copy of the Dropwizard object mapper. Called exactly once per variant.
+     */
+    void customize(ObjectMapper objectMapper);
+}
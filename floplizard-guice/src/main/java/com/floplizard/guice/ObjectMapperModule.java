@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+
+import io.dropwizard.setup.Environment;
+
+/**
+ * Shares the Dropwizard {@link ObjectMapper} instead of handing out copies. Binds
+ *
+ * <ul>
+ * <li>{@link ObjectMapper} to the object mapper returned by {@link Environment#getObjectMapper()}. This is the
+ * same instance that Jersey uses, so it must not be reconfigured after startup.</li>
+ * <li>{@link ObjectMapperCache}, which hands out prebuilt readers and writers per target type.</li>
+ * <li>{@link JsonStreams}, which streams large JSON arrays to the client.</li>
+ * <li>every variant added with {@link #variant(Key, ObjectMapperCustomizer)} as a customized copy of the
+ * Dropwizard object mapper. Each variant is built exactly once.</li>
+ * </ul>
+ *
+ * When the application starts, the serializers and deserializers for all entity types of the registered
+ * resources (and all types added with {@link #warmup(Class...)}) are built eagerly.
+ *
+ * <pre>
+ *     new ObjectMapperModule()
+ *         .variant(Names.named("pretty"), new ObjectMapperCustomizer() {
+ *             public void customize(ObjectMapper objectMapper) {
+ *                 objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+ *             }
+ *         });
+ * </pre>
+ */
+public class ObjectMapperModule implements Module
+{
+    private final Map<Key<ObjectMapper>, ObjectMapperCustomizer> variants = Maps.newLinkedHashMap();
+    private final ImmutableSet.Builder<Class<?>> warmupTypes = ImmutableSet.builder();
+
+    /**
+     * Adds a variant of the object mapper, bound to the given binding annotation.
+     */
+    public ObjectMapperModule variant(final Annotation annotation, final ObjectMapperCustomizer customizer)
+    {
+        return variant(Key.get(ObjectMapper.class, annotation), customizer);
+    }
+
+    /**
+     * Adds a variant of the object mapper, bound to the given binding annotation type.
+     */
+    public ObjectMapperModule variant(final Class<? extends Annotation> annotationType, final ObjectMapperCustomizer customizer)
+    {
+        return variant(Key.get(ObjectMapper.class, annotationType), customizer);
+    }
+
+    /**
+     * Adds a variant of the object mapper, bound to the given key.
+     */
+    public ObjectMapperModule variant(final Key<ObjectMapper> key, final ObjectMapperCustomizer customizer)
+    {
+        checkNotNull(key, "key is null");
+        checkNotNull(key.getAnnotationType(), "a variant needs a binding annotation");
+        variants.put(key, checkNotNull(customizer, "customizer is null"));
+        return this;
+    }
+
+    /**
+     * Adds types for which serializers and deserializers are built at startup in addition to the
+     * entity types of the resources.
+     */
+    public ObjectMapperModule warmup(final Class<?> ... types)
+    {
+        warmupTypes.addAll(Arrays.asList(types));
+        return this;
+    }
+
+    @Override
+    public void configure(final Binder binder)
+    {
+        binder.bind(ObjectMapper.class).toProvider(SharedObjectMapperProvider.class).in(Scopes.SINGLETON);
+        binder.bind(ObjectMapperCache.class).in(Scopes.SINGLETON);
+        binder.bind(JsonStreams.class).in(Scopes.SINGLETON);
+
+        for (Map.Entry<Key<ObjectMapper>, ObjectMapperCustomizer> variant : variants.entrySet()) {
+            binder.bind(variant.getKey()).toProvider(new VariantObjectMapperProvider(variant.getValue())).in(Scopes.SINGLETON);
+        }
+
+        binder.bind(new TypeLiteral<Set<Class<?>>>() {}).annotatedWith(Names.named(ObjectMapperWarmer.WARMUP_TYPES)).toInstance(warmupTypes.build());
+        binder.bind(ObjectMapperWarmer.class).in(Scopes.SINGLETON);
+    }
+
+    static class SharedObjectMapperProvider implements Provider<ObjectMapper>
+    {
+        private final Environment environment;
+
+        @Inject
+        SharedObjectMapperProvider(final Environment environment)
+        {
+            this.environment = checkNotNull(environment, "environment is null");
+        }
+
+        @Override
+        public ObjectMapper get()
+        {
+            return environment.getObjectMapper();
+        }
+    }
+
+    static class VariantObjectMapperProvider implements Provider<ObjectMapper>
+    {
+        private final ObjectMapperCustomizer customizer;
+        private volatile Environment environment = null;
+
+        VariantObjectMapperProvider(final ObjectMapperCustomizer customizer)
+        {
+            this.customizer = customizer;
+        }
+
+        @Inject
+        void setEnvironment(final Environment environment)
+        {
+            this.environment = environment;
+        }
+
+        @Override
+        public ObjectMapper get()
+        {
+            final ObjectMapper objectMapper = checkNotNull(environment, "environment was not injected").getObjectMapper().copy();
+            customizer.customize(objectMapper);
+            return objectMapper;
+        }
+    }
+}
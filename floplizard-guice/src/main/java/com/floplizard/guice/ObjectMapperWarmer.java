@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Set;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Named;
+import com.sun.jersey.api.core.ResourceConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Builds the Jackson serializers and deserializers for all entity types of the registered
+ * resources when the application starts, so the first requests do not have to.
+ */
+class ObjectMapperWarmer implements Managed
+{
+    static final String WARMUP_TYPES = "floplizard.object-mapper.warmup-types";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ObjectMapperWarmer.class);
+
+    private final Injector injector;
+    private final ResourceConfig resourceConfig;
+    private final ObjectMapperCache objectMapperCache;
+    private final Set<Class<?>> warmupTypes;
+
+    @Inject
+    ObjectMapperWarmer(final Injector injector, final Environment environment, final ObjectMapperCache objectMapperCache, @Named(WARMUP_TYPES) final Set<Class<?>> warmupTypes)
+    {
+        this.injector = checkNotNull(injector, "injector is null");
+        this.resourceConfig = checkNotNull(environment, "environment is null").jersey().getResourceConfig();
+        this.objectMapperCache = checkNotNull(objectMapperCache, "objectMapperCache is null");
+        this.warmupTypes = checkNotNull(warmupTypes, "warmupTypes is null");
+    }
+
+    @Override
+    public void start()
+    {
+        final Set<Type> types = Sets.newLinkedHashSet();
+        types.addAll(warmupTypes);
+
+        final Set<Class<?>> resources = Sets.newLinkedHashSet();
+        for (Key<?> key : injector.getBindings().keySet()) {
+            resources.add(key.getTypeLiteral().getRawType());
+        }
+        resources.addAll(resourceConfig.getRootResourceClasses());
+        for (Object singleton : resourceConfig.getRootResourceSingletons()) {
+            resources.add(singleton.getClass());
+        }
+
+        for (Class<?> resource : resources) {
+            if (resource.isAnnotationPresent(Path.class)) {
+                addEntityTypes(resource, types);
+            }
+        }
+
+        final ObjectMapper objectMapper = objectMapperCache.getObjectMapper();
+        int count = 0;
+        for (Type type : types) {
+            for (Class<?> rawType : getRawTypes(type)) {
+                objectMapper.canSerialize(rawType);
+            }
+            objectMapper.canDeserialize(objectMapper.constructType(type));
+            objectMapperCache.getReader(type);
+            objectMapperCache.getWriter(type);
+            count++;
+        }
+        LOG.info("Warmed up object mapper for {} types", count);
+    }
+
+    @Override
+    public void stop()
+    {
+    }
+
+    private static void addEntityTypes(final Class<?> resource, final Set<Type> types)
+    {
+        for (Method method : resource.getMethods()) {
+            if (!isResourceMethod(method)) {
+                continue;
+            }
+
+            final Type returnType = method.getGenericReturnType();
+            if (returnType != void.class && returnType != Response.class) {
+                types.add(returnType);
+            }
+
+            // The entity parameter is the only one without annotations.
+            final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+            for (int i = 0; i < parameterAnnotations.length; i++) {
+                if (parameterAnnotations[i].length == 0) {
+                    types.add(method.getGenericParameterTypes()[i]);
+                }
+            }
+        }
+    }
+
+    private static boolean isResourceMethod(final Method method)
+    {
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation.annotationType().isAnnotationPresent(HttpMethod.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Class<?>> getRawTypes(final Type type)
+    {
+        final ImmutableSet.Builder<Class<?>> builder = ImmutableSet.builder();
+        if (type instanceof Class<?>) {
+            builder.add((Class<?>) type);
+        }
+        else if (type instanceof ParameterizedType) {
+            final ParameterizedType parameterizedType = (ParameterizedType) type;
+            builder.addAll(getRawTypes(parameterizedType.getRawType()));
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                builder.addAll(getRawTypes(argument));
+            }
+        }
+        else if (type instanceof GenericArrayType) {
+            builder.addAll(getRawTypes(((GenericArrayType) type).getGenericComponentType()));
+        }
+        return builder.build();
+    }
+}
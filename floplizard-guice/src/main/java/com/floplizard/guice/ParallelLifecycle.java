@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+
+/**
+ * Starts and stops a set of {@link Managed} objects level by level. All objects in a level are
+ * started in parallel on a bounded executor; stopping happens in reverse level order, each
+ * object gets at most the configured timeout to stop.
+ */
+class ParallelLifecycle implements Managed
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelLifecycle.class);
+
+    private final List<List<Managed>> levels;
+    private final int maxThreads;
+    private final Duration stopTimeout;
+    private final Timer startTimer;
+    private final Timer stopTimer;
+
+    ParallelLifecycle(final List<List<Managed>> levels, final int maxThreads, final Duration stopTimeout, final MetricRegistry metrics)
+    {
+        checkArgument(maxThreads > 0, "maxThreads must be positive");
+        checkNotNull(metrics, "metrics is null");
+
+        this.levels = ImmutableList.copyOf(checkNotNull(levels, "levels is null"));
+        this.maxThreads = maxThreads;
+        this.stopTimeout = checkNotNull(stopTimeout, "stopTimeout is null");
+        this.startTimer = metrics.timer(name(ParallelLifecycle.class, "start"));
+        this.stopTimer = metrics.timer(name(ParallelLifecycle.class, "stop"));
+    }
+
+    @Override
+    public void start() throws Exception
+    {
+        final ExecutorService executor = createExecutor("start");
+        final List<List<Managed>> started = Lists.newArrayList();
+        final Timer.Context context = startTimer.time();
+        try {
+            for (List<Managed> level : levels) {
+                final List<Managed> levelStarted = Lists.newArrayList();
+                started.add(levelStarted);
+
+                final List<Future<Managed>> futures = Lists.newArrayList();
+                for (final Managed managed : level) {
+                    futures.add(executor.submit(new Callable<Managed>() {
+                        @Override
+                        public Managed call() throws Exception
+                        {
+                            managed.start();
+                            return managed;
+                        }
+                    }));
+                }
+
+                Exception failure = null;
+                for (Future<Managed> future : futures) {
+                    try {
+                        levelStarted.add(future.get());
+                    }
+                    catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = unwrap(e);
+                        }
+                        else {
+                            LOG.error("Additional failure while starting managed objects", e.getCause());
+                        }
+                    }
+                }
+
+                if (failure != null) {
+                    LOG.error("Could not start all managed objects, stopping the ones already started!");
+                    stopLevels(executor, Lists.reverse(started));
+                    throw failure;
+                }
+            }
+        }
+        finally {
+            context.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception
+    {
+        final ExecutorService executor = createExecutor("stop");
+        final Timer.Context context = stopTimer.time();
+        try {
+            stopLevels(executor, Lists.reverse(levels));
+        }
+        finally {
+            context.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    private void stopLevels(final ExecutorService executor, final List<List<Managed>> reverseLevels) throws InterruptedException
+    {
+        for (List<Managed> level : reverseLevels) {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for (final Managed managed : level) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        managed.stop();
+                        return null;
+                    }
+                }));
+            }
+
+            // All objects in the level were submitted at the same time, so they share the deadline.
+            final long deadline = System.nanoTime() + stopTimeout.toNanoseconds();
+            for (int i = 0; i < futures.size(); i++) {
+                final Managed managed = level.get(i);
+                final Future<?> future = futures.get(i);
+                try {
+                    future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+                catch (ExecutionException e) {
+                    LOG.error("Could not stop managed object {}", managed.getClass().getName(), e.getCause());
+                }
+                catch (TimeoutException e) {
+                    future.cancel(true);
+                    LOG.warn("Managed object {} did not stop within {}, abandoning it!", managed.getClass().getName(), stopTimeout);
+                }
+            }
+        }
+    }
+
+    private ExecutorService createExecutor(final String phase)
+    {
+        return Executors.newFixedThreadPool(maxThreads, new ThreadFactoryBuilder()
+            .setNameFormat("floplizard-lifecycle-" + phase + "-%d")
+            .setDaemon(true)
+            .build());
+    }
+
+    private static Exception unwrap(final ExecutionException e)
+    {
+        final Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        throw Throwables.propagate(cause);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scope;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.ProvisionListener;
+
+/**
+ * Records a provisioning timer for every binding. The timers are named after the scope and the
+ * key of the binding and include the time needed to provision the dependencies of an object.
+ * <br>
+ * This module is only installed when requested, so there is no cost on the injection path otherwise.
+ */
+class ProvisionMetricsModule implements Module, ProvisionListener
+{
+    private final MetricRegistry metrics;
+    private final ConcurrentMap<Key<?>, Timer> timers = new ConcurrentHashMap<>();
+
+    ProvisionMetricsModule(final MetricRegistry metrics)
+    {
+        this.metrics = checkNotNull(metrics, "metrics is null");
+    }
+
+    @Override
+    public void configure(final Binder binder)
+    {
+        binder.bindListener(Matchers.any(), this);
+    }
+
+    @Override
+    public <T> void onProvision(final ProvisionInvocation<T> provision)
+    {
+        final Timer.Context context = getTimer(provision.getBinding()).time();
+        try {
+            provision.provision();
+        }
+        finally {
+            context.stop();
+        }
+    }
+
+    private Timer getTimer(final Binding<?> binding)
+    {
+        final Key<?> key = binding.getKey();
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = metrics.timer(name(ProvisionMetricsModule.class, getScopeName(binding), getKeyName(key)));
+            final Timer existing = timers.putIfAbsent(key, timer);
+            if (existing != null) {
+                timer = existing;
+            }
+        }
+        return timer;
+    }
+
+    static String getKeyName(final Key<?> key)
+    {
+        final StringBuilder sb = new StringBuilder(key.getTypeLiteral().toString());
+        final Annotation annotation = key.getAnnotation();
+        if (annotation != null) {
+            sb.append('@').append(annotation);
+        }
+        else if (key.getAnnotationType() != null) {
+            sb.append('@').append(key.getAnnotationType().getName());
+        }
+        return sb.toString();
+    }
+
+    static String getScopeName(final Binding<?> binding)
+    {
+        return binding.acceptScopingVisitor(new DefaultBindingScopingVisitor<String>() {
+            @Override
+            public String visitEagerSingleton()
+            {
+                return "singleton";
+            }
+
+            @Override
+            public String visitScope(final Scope scope)
+            {
+                return scope.toString();
+            }
+
+            @Override
+            public String visitScopeAnnotation(final Class<? extends Annotation> scopeAnnotation)
+            {
+                return scopeAnnotation.getSimpleName();
+            }
+
+            @Override
+            public String visitNoScoping()
+            {
+                return "unscoped";
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
+
+import io.dropwizard.configuration.ConfigurationFactory;
+import io.dropwizard.configuration.ConfigurationSourceProvider;
+import io.dropwizard.servlets.tasks.Task;
+
+/**
+ * Reads the Dropwizard configuration again and rebuilds the reloadable modules with it. Reads the file that the
+ * application was started with, or the file given in the <tt>file</tt> parameter. If the configuration is invalid
+ * or the modules can not be built, the task fails and the current instances stay in place.
+ */
+class ReloadTask<T> extends Task
+{
+    private final ReloadableInjector<T> reloadableInjector;
+    private final ConfigurationFactory<T> configurationFactory;
+    private final ConfigurationSourceProvider configurationSourceProvider;
+    private final String path;
+
+    ReloadTask(final ReloadableInjector<T> reloadableInjector, final ConfigurationFactory<T> configurationFactory, final ConfigurationSourceProvider configurationSourceProvider, final String path)
+    {
+        super("reload");
+        this.reloadableInjector = checkNotNull(reloadableInjector, "reloadableInjector is null");
+        this.configurationFactory = checkNotNull(configurationFactory, "configurationFactory is null");
+        this.configurationSourceProvider = checkNotNull(configurationSourceProvider, "configurationSourceProvider is null");
+        this.path = path;
+    }
+
+    @Override
+    public void execute(final ImmutableMultimap<String, String> parameters, final PrintWriter output) throws Exception
+    {
+        final String file = Iterables.getFirst(parameters.get("file"), path);
+        if (file == null) {
+            output.println("The configuration file is not known, pass it as the 'file' parameter");
+            return;
+        }
+
+        final T configuration = configurationFactory.build(configurationSourceProvider, file);
+        final long generation = reloadableInjector.reload(configuration);
+        output.println(reloadableInjector.getName() + ": reloaded from " + file + ", generation " + generation);
+    }
+
+    /**
+     * Remembers the path of the configuration file that the application was started with.
+     */
+    static final class PathRecorder implements ConfigurationSourceProvider
+    {
+        private final ConfigurationSourceProvider delegate;
+        private volatile String path = null;
+
+        PathRecorder(final ConfigurationSourceProvider delegate)
+        {
+            this.delegate = checkNotNull(delegate, "delegate is null");
+        }
+
+        @Override
+        public InputStream open(final String path) throws IOException
+        {
+            this.path = path;
+            return delegate.open(path);
+        }
+
+        String getPath()
+        {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+/**
+ * Returns the current instance of a key that is exported by the reloadable modules. Every reload of the
+ * configuration builds new instances; <tt>get()</tt> always returns the instance that belongs to the
+ * latest configuration and never blocks.
+ *
+ * <pre>
+ *     GuiceBundle.defaultBuilder(MyConfiguration.class)
+ *         .reloadableModules(new ModuleGroup("limits")
+ *             .modules(new LimitsModule())
+ *             .exports(RateLimits.class))
+ *         .build();
+ *
+ *     &#64;Inject
+ *     OrderResource(final Reloadable&lt;RateLimits&gt; rateLimits) { ... }
+ *
+ *     rateLimits.get().check(user);
+ * </pre>
+ *
+ * Keep the <tt>Reloadable</tt> and call <tt>get()</tt> whenever the instance is used; an instance that is kept
+ * in a field does not see later reloads.
+ */
+public interface Reloadable<T>
+{
+    T get();
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Binder;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.util.Types;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+
+/**
+ * Builds the reloadable modules as a child injector of the application injector and rebuilds them when
+ * the configuration is reloaded. The exported keys are bound as {@link Reloadable} in the application
+ * injector and always return the instances of the current child injector.
+ * <br>
+ * A reload builds and starts the new child injector on the calling thread while the old one keeps serving,
+ * then swaps it in with a single volatile write. The {@link Managed} objects of the old child injector are
+ * stopped in the background. Other lifecycle objects in the reloadable modules are ignored. The
+ * {@link ConcurrentSingleton}s of a generation are created with it, in every stage, so that their managed
+ * objects are started and stopped with the generation.
+ */
+final class ReloadableInjector<T> implements Managed
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ReloadableInjector.class);
+
+    private final ModuleGroup moduleGroup;
+    private final DropwizardGuiceModule dropwizardGuiceModule;
+    private final ConcurrentSingletonScope concurrentSingletonScope;
+    private final Duration stopTimeout;
+    private final Timer reloads;
+    private final Meter failures;
+    private final ExecutorService drainExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("floplizard-reload-drain").setDaemon(true).build());
+
+    private Injector parent = null;
+    private T configuration = null;
+    private boolean started = false;
+    private volatile Generation current = null;
+
+    ReloadableInjector(final ModuleGroup moduleGroup, final T configuration, final DropwizardGuiceModule dropwizardGuiceModule, final ConcurrentSingletonScope concurrentSingletonScope, final Duration stopTimeout, final MetricRegistry metrics)
+    {
+        this.moduleGroup = checkNotNull(moduleGroup, "moduleGroup is null");
+        this.configuration = checkNotNull(configuration, "configuration is null");
+        this.dropwizardGuiceModule = checkNotNull(dropwizardGuiceModule, "dropwizardGuiceModule is null");
+        this.concurrentSingletonScope = checkNotNull(concurrentSingletonScope, "concurrentSingletonScope is null");
+        this.stopTimeout = checkNotNull(stopTimeout, "stopTimeout is null");
+        for (Module module : moduleGroup.getModules()) {
+            if (module instanceof DropwizardAwareModule<?>) {
+                ((DropwizardAwareModule<?>) module).setBuiltAfterStartup();
+            }
+        }
+
+        checkNotNull(metrics, "metrics is null");
+        this.reloads = metrics.timer(name(ReloadableInjector.class, moduleGroup.getName(), "reloads"));
+        this.failures = metrics.meter(name(ReloadableInjector.class, moduleGroup.getName(), "failures"));
+        metrics.register(name(ReloadableInjector.class, moduleGroup.getName(), "generation"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                final Generation generation = current;
+                return generation == null ? 0L : generation.number;
+            }
+        });
+    }
+
+    /**
+     * Returns the module that binds the {@link Reloadable}s for the exported keys. Goes into the application injector.
+     */
+    Module getModule()
+    {
+        return new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                for (Key<?> key : moduleGroup.getExports()) {
+                    bindReloadable(binder, key);
+                }
+            }
+        };
+    }
+
+    /**
+     * Builds the first child injector. Must be called after the application injector was sealed, so that the
+     * {@link Managed} objects of the reloadable modules are not registered with Dropwizard.
+     */
+    synchronized void createInjector(final Injector parent)
+    {
+        checkState(this.parent == null, "injector was already created");
+        this.parent = checkNotNull(parent, "parent is null");
+        this.current = createGeneration(1L);
+    }
+
+    /**
+     * Rebuilds the reloadable modules with the new configuration and returns the number of the new generation.
+     * If the child injector can not be built or one of its managed objects does not start, the current
+     * generation stays in place.
+     */
+    synchronized long reload(final T configuration) throws Exception
+    {
+        checkNotNull(configuration, "configuration is null");
+        checkState(parent != null, "injector was not created yet");
+
+        final Timer.Context context = reloads.time();
+        final Generation next;
+        try {
+            setConfiguration(configuration);
+            next = createGeneration(current.number + 1);
+            if (started) {
+                ManagedObjects.start(next.managed);
+            }
+        }
+        catch (Exception | Error e) {
+            failures.mark();
+            setConfiguration(this.configuration);
+            throw e;
+        }
+        finally {
+            context.stop();
+        }
+
+        this.configuration = configuration;
+        final Generation previous = current;
+        current = next;
+        LOG.info("Reloaded module group {}, generation {} replaces generation {}", moduleGroup, next.number, previous.number);
+
+        drainExecutor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                ManagedObjects.stop(previous.managed);
+            }
+        });
+        return next.number;
+    }
+
+    String getName()
+    {
+        return moduleGroup.getName();
+    }
+
+    @Override
+    public synchronized void start() throws Exception
+    {
+        checkState(current != null, "injector was not created yet");
+        ManagedObjects.start(current.managed);
+        started = true;
+    }
+
+    @Override
+    public synchronized void stop() throws Exception
+    {
+        started = false;
+        drainExecutor.shutdown();
+        if (!drainExecutor.awaitTermination(stopTimeout.toNanoseconds(), TimeUnit.NANOSECONDS)) {
+            LOG.warn("Managed objects of earlier generations of {} did not stop within {}", moduleGroup, stopTimeout);
+        }
+        if (current != null) {
+            ManagedObjects.stop(current.managed);
+        }
+    }
+
+    private Generation createGeneration(final long number)
+    {
+        final Injector injector;
+        final List<Managed> managed;
+        dropwizardGuiceModule.beginCollecting();
+        try {
+            injector = parent.createChildInjector(moduleGroup.getModules());
+            ConcurrentSingletonScope.checkDependencies(injector);
+            // Managed objects are only collected while the generation is built.
+            concurrentSingletonScope.createSingletons(injector);
+        }
+        finally {
+            managed = dropwizardGuiceModule.endCollecting();
+        }
+
+        final ImmutableMap.Builder<Key<?>, Provider<?>> exports = ImmutableMap.builder();
+        for (Key<?> key : moduleGroup.getExports()) {
+            checkState(injector.getBindings().containsKey(key), "reloadable module group %s exports %s but does not bind it", moduleGroup, key);
+            exports.put(key, injector.getProvider(key));
+        }
+        return new Generation(number, exports.build(), managed);
+    }
+
+    private void setConfiguration(final T configuration)
+    {
+        for (Module module : moduleGroup.getModules()) {
+            if (module instanceof DropwizardAwareModule<?>) {
+                @SuppressWarnings("unchecked")
+                final DropwizardAwareModule<T> dropwizardAwareModule = (DropwizardAwareModule<T>) module;
+                dropwizardAwareModule.reloadDropwizardConfiguration(configuration);
+            }
+        }
+    }
+
+    private <E> void bindReloadable(final Binder binder, final Key<E> key)
+    {
+        @SuppressWarnings("unchecked")
+        final Key<Reloadable<E>> reloadableKey = (Key<Reloadable<E>>) key.ofType(Types.newParameterizedType(Reloadable.class, key.getTypeLiteral().getType()));
+        binder.bind(reloadableKey).toInstance(new Reloadable<E>() {
+            @Override
+            public E get()
+            {
+                final Generation generation = current;
+                checkState(generation != null, "reloadable module group %s was not built yet", moduleGroup);
+
+                @SuppressWarnings("unchecked")
+                final Provider<E> provider = (Provider<E>) generation.exports.get(key);
+                return provider.get();
+            }
+
+            @Override
+            public String toString()
+            {
+                return "Reloadable[" + key + "]";
+            }
+        });
+    }
+
+    private static final class Generation
+    {
+        private final long number;
+        private final Map<Key<?>, Provider<?>> exports;
+        private final List<Managed> managed;
+
+        private Generation(final long number, final Map<Key<?>, Provider<?>> exports, final List<Managed> managed)
+        {
+            checkArgument(number > 0, "number must be positive");
+            this.number = number;
+            this.exports = exports;
+            this.managed = managed;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+
+/**
+ * The gauges of an executor or cache that is built again while the application runs, by a reload of its
+ * module group or when an evicted tenant is used again. The gauges are registered when the executor or cache
+ * starts and removed when it stops, so an instance that fails to build never shows up in the registry.
+ * <br>
+ * Instances with equal owners are generations of the same executor or cache. A generation that starts takes
+ * over the gauges of the earlier one; if it stops while the earlier one still runs, e.g. because the rest of
+ * a reload failed to start, the gauges of the earlier generation are put back. Gauges of other owners are
+ * never replaced, so a real name collision still fails.
+ */
+final class ReplaceableGauges
+{
+    private static final Object LOCK = new Object();
+
+    private final MetricRegistry metrics;
+    private final Object owner;
+    private final List<ReplaceableGauge<?>> gauges = Lists.newArrayList();
+
+    // guarded by LOCK
+    private boolean registered = false;
+    private boolean removed = false;
+
+    ReplaceableGauges(final MetricRegistry metrics, final Object owner)
+    {
+        this.metrics = checkNotNull(metrics, "metrics is null");
+        this.owner = checkNotNull(owner, "owner is null");
+    }
+
+    /**
+     * Adds a gauge, which is registered by {@link #register()}.
+     */
+    <T> void add(final String name, final Gauge<T> gauge)
+    {
+        synchronized (LOCK) {
+            checkState(!registered, "gauges were already registered");
+            gauges.add(new ReplaceableGauge<>(this, checkNotNull(name, "name is null"), checkNotNull(gauge, "gauge is null")));
+        }
+    }
+
+    /**
+     * Registers the gauges and takes over the gauges of an earlier generation with the same names.
+     *
+     * @throws IllegalArgumentException if a name is taken by another metric; no gauge is registered then.
+     */
+    void register()
+    {
+        synchronized (LOCK) {
+            checkState(!removed, "gauges were already removed");
+            if (registered) {
+                return;
+            }
+            registered = true;
+
+            try {
+                for (ReplaceableGauge<?> gauge : gauges) {
+                    final Metric existing = metrics.getMetrics().get(gauge.name);
+                    if (existing instanceof ReplaceableGauge<?> && ((ReplaceableGauge<?>) existing).gauges.owner.equals(owner)) {
+                        metrics.remove(gauge.name);
+                        gauge.replaced = new WeakReference<ReplaceableGauge<?>>((ReplaceableGauge<?>) existing);
+                    }
+                    metrics.register(gauge.name, gauge);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                removeGauges();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Removes the gauges that were not taken over by a later generation.
+     */
+    void remove()
+    {
+        synchronized (LOCK) {
+            removeGauges();
+        }
+    }
+
+    private void removeGauges()
+    {
+        removed = true;
+        for (ReplaceableGauge<?> gauge : gauges) {
+            if (metrics.getMetrics().get(gauge.name) == gauge) {
+                metrics.remove(gauge.name);
+                final ReplaceableGauge<?> replaced = gauge.replaced != null ? gauge.replaced.get() : null;
+                if (replaced != null && !replaced.gauges.removed) {
+                    metrics.register(gauge.name, replaced);
+                }
+            }
+            gauge.replaced = null;
+        }
+    }
+
+    private static final class ReplaceableGauge<T> implements Gauge<T>
+    {
+        private final ReplaceableGauges gauges;
+        private final String name;
+        private final Gauge<T> delegate;
+
+        // The earlier generation must not be kept alive by its successor.
+        private WeakReference<ReplaceableGauge<?>> replaced = null;
+
+        private ReplaceableGauge(final ReplaceableGauges gauges, final String name, final Gauge<T> delegate)
+        {
+            this.gauges = gauges;
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T getValue()
+        {
+            return delegate.getValue();
+        }
+    }
+}
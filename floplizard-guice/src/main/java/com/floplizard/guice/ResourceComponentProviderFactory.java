@@ -0,0 +1,276 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.Path;
+
+import com.google.common.base.Throwables;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.servlet.ServletScopes;
+import com.google.inject.spi.ConstructorBinding;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.Dependency;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.core.spi.component.ComponentContext;
+import com.sun.jersey.core.spi.component.ComponentScope;
+import com.sun.jersey.core.spi.component.ioc.IoCComponentProvider;
+import com.sun.jersey.core.spi.component.ioc.IoCManagedComponentProvider;
+import com.sun.jersey.guice.spi.container.GuiceComponentProviderFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Component provider factory that avoids going through Guice for every request to a resource.
+ *
+ * <ul>
+ * <li>Resources that are stateless (all fields are final and all constructor dependencies are singletons)
+ * are promoted to singletons. Guice builds them once.</li>
+ * <li>All other resources that only use constructor injection are built by a factory that calls the
+ * constructor through a {@link MethodHandle}. Singleton dependencies are looked up once, everything else
+ * is provided by Guice for each instance.</li>
+ * <li>Resources with field or method injection, method interceptors, scopes or lifecycle interfaces
+ * are left to Guice.</li>
+ * </ul>
+ *
+ * Resources built by a factory are not seen by provision or injection listeners.
+ */
+class ResourceComponentProviderFactory extends GuiceComponentProviderFactory
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceComponentProviderFactory.class);
+
+    private final Injector injector;
+
+    ResourceComponentProviderFactory(final ResourceConfig resourceConfig, final Injector injector)
+    {
+        super(resourceConfig, injector);
+        this.injector = checkNotNull(injector, "injector is null");
+    }
+
+    @Override
+    public Map<Scope, ComponentScope> createScopeMap()
+    {
+        final Map<Scope, ComponentScope> scopeMap = super.createScopeMap();
+        scopeMap.put(ServletScopes.REQUEST, ComponentScope.PerRequest);
+        return scopeMap;
+    }
+
+    @Override
+    public IoCComponentProvider getComponentProvider(final ComponentContext componentContext, final Class<?> clazz)
+    {
+        if (clazz.isAnnotationPresent(Path.class)) {
+            final Binding<?> binding = injector.getExistingBinding(Key.get(clazz));
+            if (binding != null) {
+                switch (getTreatment(binding)) {
+                    case SINGLETON:
+                        LOG.info("Resource {} is stateless, promoted to singleton", clazz.getName());
+                        return new ResourceComponentProvider(ComponentScope.Singleton, injector.getProvider(clazz));
+                    case FACTORY:
+                        LOG.info("Resource {} is built by a constructor factory", clazz.getName());
+                        return new ResourceComponentProvider(ComponentScope.PerRequest, newResourceFactory((ConstructorBinding<?>) binding));
+                    default:
+                        LOG.info("Resource {} is built by Guice", clazz.getName());
+                        break;
+                }
+            }
+        }
+        return super.getComponentProvider(componentContext, clazz);
+    }
+
+    enum Treatment
+    {
+        SINGLETON, FACTORY, GUICE;
+    }
+
+    Treatment getTreatment(final Binding<?> binding)
+    {
+        if (!(binding instanceof ConstructorBinding<?>) || !isUnscoped(binding)) {
+            return Treatment.GUICE;
+        }
+
+        final ConstructorBinding<?> constructorBinding = (ConstructorBinding<?>) binding;
+        final Class<?> type = binding.getKey().getTypeLiteral().getRawType();
+        if (!constructorBinding.getInjectableMembers().isEmpty() || !constructorBinding.getMethodInterceptors().isEmpty() || DropwizardGuiceModule.isLifecycleType(type)) {
+            return Treatment.GUICE;
+        }
+
+        return hasOnlyFinalFields(type) && hasOnlySingletonDependencies(constructorBinding) ? Treatment.SINGLETON : Treatment.FACTORY;
+    }
+
+    private <T> Provider<T> newResourceFactory(final ConstructorBinding<T> binding)
+    {
+        return new ResourceFactory<T>(injector, binding);
+    }
+
+    private boolean hasOnlySingletonDependencies(final ConstructorBinding<?> binding)
+    {
+        for (Dependency<?> dependency : binding.getConstructor().getDependencies()) {
+            if (!ConcurrentSingletonScope.isSingleton(injector.getBinding(dependency.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUnscoped(final Binding<?> binding)
+    {
+        return binding.acceptScopingVisitor(new DefaultBindingScopingVisitor<Boolean>() {
+            @Override
+            public Boolean visitNoScoping()
+            {
+                return true;
+            }
+
+            @Override
+            protected Boolean visitOther()
+            {
+                return false;
+            }
+        });
+    }
+
+    private static boolean hasOnlyFinalFields(final Class<?> type)
+    {
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class ResourceComponentProvider implements IoCManagedComponentProvider
+    {
+        private final ComponentScope scope;
+        private final Provider<?> provider;
+
+        ResourceComponentProvider(final ComponentScope scope, final Provider<?> provider)
+        {
+            this.scope = scope;
+            this.provider = provider;
+        }
+
+        @Override
+        public ComponentScope getScope()
+        {
+            return scope;
+        }
+
+        @Override
+        public Object getInstance()
+        {
+            return provider.get();
+        }
+
+        @Override
+        public Object getInjectableInstance(final Object instance)
+        {
+            return instance;
+        }
+    }
+
+    /**
+     * Calls the injectable constructor of a resource through a method handle.
+     */
+    static class ResourceFactory<T> implements Provider<T>
+    {
+        private final Class<?> type;
+        private final MethodHandle constructor;
+        private final Provider<?>[] arguments;
+
+        ResourceFactory(final Injector injector, final ConstructorBinding<T> binding)
+        {
+            this.type = checkNotNull(binding, "binding is null").getKey().getTypeLiteral().getRawType();
+
+            final Constructor<?> member = (Constructor<?>) binding.getConstructor().getMember();
+            final List<Dependency<?>> dependencies = binding.getConstructor().getDependencies();
+            try {
+                member.setAccessible(true);
+                this.constructor = MethodHandles.lookup().unreflectConstructor(member)
+                    .asType(MethodType.genericMethodType(dependencies.size()))
+                    .asSpreader(Object[].class, dependencies.size());
+            }
+            catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can not access constructor of " + type.getName(), e);
+            }
+
+            this.arguments = new Provider<?>[dependencies.size()];
+            for (int i = 0; i < arguments.length; i++) {
+                final Key<?> key = dependencies.get(i).getKey();
+                arguments[i] = ConcurrentSingletonScope.isSingleton(injector.getBinding(key)) ? new SingletonArgument<>(injector.getProvider(key)) : injector.getProvider(key);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get()
+        {
+            final Object[] values = new Object[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].get();
+            }
+
+            try {
+                final Object instance = (Object) constructor.invokeExact(values);
+                return (T) instance;
+            }
+            catch (Throwable t) {
+                throw Throwables.propagate(t);
+            }
+        }
+    }
+
+    /**
+     * Looks up a singleton dependency on first use and keeps it.
+     */
+    private static class SingletonArgument<T> implements Provider<T>
+    {
+        private final Provider<T> provider;
+        private volatile T instance = null;
+
+        SingletonArgument(final Provider<T> provider)
+        {
+            this.provider = provider;
+        }
+
+        @Override
+        public T get()
+        {
+            T result = instance;
+            if (result == null) {
+                result = provider.get();
+                instance = result;
+            }
+            return result;
+        }
+    }
+}
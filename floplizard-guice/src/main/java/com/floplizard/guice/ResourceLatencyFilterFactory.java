@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records the latency of every resource method in a histogram per response status class. The filter of a
+ * method holds its histograms, so recording a request needs no lookup and no lock; the histograms are
+ * HdrHistogram {@link Recorder}s, which are swapped out when the {@link ResourceLatencyTask} reads them.
+ * <br>
+ * Latencies are recorded in microseconds with two significant digits.
+ */
+class ResourceLatencyFilterFactory implements ResourceFilterFactory
+{
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    // Request and response filters of a request run on the same thread.
+    private static final ThreadLocal<long[]> START_NANOS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue()
+        {
+            return new long[1];
+        }
+    };
+
+    private final ConcurrentMap<String, MethodLatencies> latencies = new ConcurrentSkipListMap<>();
+
+    @Inject
+    ResourceLatencyFilterFactory()
+    {
+    }
+
+    @Override
+    public List<ResourceFilter> create(final AbstractMethod method)
+    {
+        // Sub-resource locators are not resource methods, the methods of the located resource are.
+        if (!(method instanceof AbstractResourceMethod)) {
+            return null;
+        }
+
+        final String name = getName((AbstractResourceMethod) method);
+        MethodLatencies methodLatencies = latencies.get(name);
+        if (methodLatencies == null) {
+            methodLatencies = new MethodLatencies();
+            final MethodLatencies existing = latencies.putIfAbsent(name, methodLatencies);
+            if (existing != null) {
+                methodLatencies = existing;
+            }
+        }
+        return ImmutableList.<ResourceFilter>of(new LatencyFilter(methodLatencies));
+    }
+
+    /**
+     * Returns the latencies recorded since the previous call for every method and status class that had
+     * requests in between, keyed by method name and status class.
+     */
+    Map<String, Histogram> getIntervalHistograms()
+    {
+        final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+        for (Map.Entry<String, MethodLatencies> entry : latencies.entrySet()) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                final Histogram histogram = entry.getValue().getIntervalHistogram(i);
+                if (histogram != null && histogram.getTotalCount() > 0) {
+                    histograms.put(name(entry.getKey(), STATUS_CLASSES[i]), histogram);
+                }
+            }
+        }
+        return histograms;
+    }
+
+    private static String getName(final AbstractResourceMethod method)
+    {
+        // Named like the resource method timers of Dropwizard.
+        return name(method.getResource().getResourceClass(), method.getMethod().getName());
+    }
+
+    private static final class MethodLatencies
+    {
+        // Created on first use, most methods never see most status classes.
+        private final AtomicReferenceArray<Recorder> recorders = new AtomicReferenceArray<>(STATUS_CLASSES.length);
+
+        private void record(final int status, final long nanos)
+        {
+            final int statusClass = Math.min(Math.max(status / 100 - 1, 0), STATUS_CLASSES.length - 1);
+            Recorder recorder = recorders.get(statusClass);
+            if (recorder == null) {
+                recorders.compareAndSet(statusClass, null, new Recorder(2));
+                recorder = recorders.get(statusClass);
+            }
+            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        private Histogram getIntervalHistogram(final int statusClass)
+        {
+            final Recorder recorder = recorders.get(statusClass);
+            return recorder == null ? null : recorder.getIntervalHistogram();
+        }
+    }
+
+    private static final class LatencyFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter
+    {
+        private final MethodLatencies methodLatencies;
+
+        private LatencyFilter(final MethodLatencies methodLatencies)
+        {
+            this.methodLatencies = methodLatencies;
+        }
+
+        @Override
+        public ContainerRequestFilter getRequestFilter()
+        {
+            return this;
+        }
+
+        @Override
+        public ContainerResponseFilter getResponseFilter()
+        {
+            return this;
+        }
+
+        @Override
+        public ContainerRequest filter(final ContainerRequest request)
+        {
+            START_NANOS.get()[0] = System.nanoTime();
+            return request;
+        }
+
+        @Override
+        public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response)
+        {
+            methodLatencies.record(response.getStatus(), System.nanoTime() - START_NANOS.get()[0]);
+            return response;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.inject.Inject;
+
+import org.HdrHistogram.Histogram;
+
+import io.dropwizard.servlets.tasks.Task;
+
+/**
+ * Prints the latency percentiles of all resource methods, in milliseconds, since the task ran the previous
+ * time and starts a new interval.
+ *
+ * <pre>
+ *     POST /tasks/resource-latencies
+ * </pre>
+ */
+class ResourceLatencyTask extends Task
+{
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final ResourceLatencyFilterFactory filterFactory;
+
+    @Inject
+    ResourceLatencyTask(final ResourceLatencyFilterFactory filterFactory)
+    {
+        super("resource-latencies");
+        this.filterFactory = checkNotNull(filterFactory, "filterFactory is null");
+    }
+
+    @Override
+    public synchronized void execute(final ImmutableMultimap<String, String> parameters, final PrintWriter output)
+    {
+        final Map<String, Histogram> histograms = filterFactory.getIntervalHistograms();
+        if (histograms.isEmpty()) {
+            output.println("No requests since the previous run");
+            return;
+        }
+
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            output.print(entry.getKey());
+            output.print(": count=" + histogram.getTotalCount());
+            for (double percentile : PERCENTILES) {
+                output.printf(" p%s=%.3f", percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile), toMillis(histogram.getValueAtPercentile(percentile)));
+            }
+            output.printf(" max=%.3f%n", toMillis(histogram.getMaxValue()));
+        }
+    }
+
+    private static double toMillis(final long micros)
+    {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a method of a Guice bound singleton periodically once the application has started. The method must
+ * not take any parameters; its return value is ignored. Exactly one of <tt>fixedRate</tt> and
+ * <tt>fixedDelay</tt> must be set.
+ *
+ * <pre>
+ *     &#64;Scheduled(fixedRate = 30, unit = TimeUnit.SECONDS, overrun = Scheduled.Overrun.COALESCE)
+ *     void refreshRates() { ... }
+ * </pre>
+ *
+ * A run never overlaps with another run of the same method. A failing run is counted and logged, the next run
+ * happens as scheduled. On shutdown, no new runs are started and the running ones are given the stop timeout
+ * from {@link GuiceBundle.Builder#enableParallelLifecycle(int, io.dropwizard.util.Duration)} (30 seconds by
+ * default) to finish before they are interrupted.
+ * <br>
+ * For every method, a timer <tt>duration</tt> and the counters <tt>failures</tt> and <tt>overruns</tt> are
+ * registered under <tt>&lt;class&gt;.&lt;method&gt;.scheduled</tt>.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface Scheduled
+{
+    /**
+     * The time between the starts of two runs.
+     */
+    long fixedRate() default 0;
+
+    /**
+     * The time between the end of a run and the start of the next one.
+     */
+    long fixedDelay() default 0;
+
+    /**
+     * The time between the application start and the first run.
+     */
+    long initialDelay() default 0;
+
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * What happens when a run with a fixed rate is due while the previous run is still going.
+     */
+    Overrun overrun() default Overrun.SKIP;
+
+    enum Overrun
+    {
+        /** The run is dropped. */
+        SKIP,
+
+        /** All runs that are due while the previous run is going are combined into one, which starts as soon as the previous run ends. */
+        COALESCE
+    }
+}
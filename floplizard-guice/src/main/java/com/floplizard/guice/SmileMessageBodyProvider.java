@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.validation.Validator;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.dropwizard.jersey.jackson.JacksonMessageBodyProvider;
+
+/**
+ * Reads and writes entities in the binary Smile format. Uses the same object mapper, with the same modules and
+ * serializer caches, and the same validation as the Dropwizard JSON provider; only the parser and generator
+ * are different. Smile carries the same data model as JSON but is smaller and much cheaper to parse.
+ * <br>
+ * Only requests and responses that are explicitly of the Smile media type use this provider, so JSON stays the
+ * default. Resource methods that declare their media types must add {@link #APPLICATION_JACKSON_SMILE}:
+ *
+ * <pre>
+ *     &#64;Produces({MediaType.APPLICATION_JSON, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE})
+ * </pre>
+ *
+ * Registered by the bundle when enabled with {@link GuiceBundle.Builder#enableSmile()}.
+ */
+@Provider
+@Consumes(SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE)
+@Produces(SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE)
+public class SmileMessageBodyProvider extends JacksonMessageBodyProvider
+{
+    public static final String APPLICATION_JACKSON_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_JACKSON_SMILE_TYPE = MediaType.valueOf(APPLICATION_JACKSON_SMILE);
+
+    private final SmileFactory smileFactory = new SmileFactory();
+
+    public SmileMessageBodyProvider(final ObjectMapper objectMapper, final Validator validator)
+    {
+        super(objectMapper, validator);
+    }
+
+    @Override
+    protected boolean hasMatchingMediaType(final MediaType mediaType)
+    {
+        // Wildcards do not match, so JSON stays the default for clients that accept anything.
+        return mediaType != null
+            && APPLICATION_JACKSON_SMILE_TYPE.getType().equalsIgnoreCase(mediaType.getType())
+            && APPLICATION_JACKSON_SMILE_TYPE.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+
+    @Override
+    protected JsonParser _createParser(final ObjectReader reader, final InputStream rawStream) throws IOException
+    {
+        final JsonParser parser = smileFactory.createParser(rawStream);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        return parser;
+    }
+
+    @Override
+    protected JsonGenerator _createGenerator(final ObjectWriter writer, final OutputStream rawStream, final JsonEncoding encoding) throws IOException
+    {
+        final JsonGenerator generator = smileFactory.createGenerator(rawStream, encoding);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalListeners;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+
+/**
+ * Builds a child injector of the application injector for every tenant, from the module that the
+ * {@link TenantModuleFactory} returns for the tenant. The child injector is built when the tenant is first
+ * used and cached; at most <tt>maximumTenants</tt> tenants are kept, and tenants that were not used for
+ * the idle timeout are evicted.
+ *
+ * <pre>
+ *     GuiceBundle.defaultBuilder(MyConfiguration.class)
+ *         .enableTenants(new TenantModuleFactory() {
+ *             public Module getModule(final String tenant) { return new TenantDataSourceModule(tenant); }
+ *         }, 1000, Duration.minutes(30))
+ *         .build();
+ *
+ *     &#64;Inject
+ *     ReportResource(final TenantInjectors tenants) { ... }
+ *
+ *     tenants.getInstance(tenant, ReportDao.class).getReports();
+ * </pre>
+ *
+ * If the module of a tenant is a {@link DropwizardAwareModule}, it gets the application configuration and
+ * the tenant; the {@link ExecutorsModule} and the {@link CacheModule} put the tenant into their metric names.
+ * <br>
+ * The {@link Managed} objects of a tenant are started when its child injector is built and stopped in the
+ * background when the tenant is evicted. Other lifecycle objects in the tenant modules are ignored. The
+ * {@link ConcurrentSingleton}s of a tenant are created with its child injector, in every stage, so that their
+ * managed objects are started and stopped with the tenant.
+ * <br>
+ * The tenant modules are configured on the calling thread without holding a Guice lock; only creating the
+ * child injector itself waits for builds of other tenants. A timer <tt>builds</tt> and the gauges
+ * <tt>tenants</tt>, <tt>hit-ratio</tt> and <tt>evictions</tt> are registered under
+ * <tt>com.floplizard.guice.TenantInjectors</tt>.
+ * <br>
+ * Bound when tenants are enabled with {@link GuiceBundle.Builder#enableTenants(TenantModuleFactory, long, Duration)}.
+ */
+public class TenantInjectors
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TenantInjectors.class);
+
+    private final TenantModuleFactory moduleFactory;
+    private final Stage stage;
+    private final Configuration configuration;
+    private final Environment environment;
+    private final DropwizardGuiceModule dropwizardGuiceModule;
+    private final ConcurrentSingletonScope concurrentSingletonScope;
+    private final Timer builds;
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("floplizard-tenant-eviction").setDaemon(true).build());
+    private final LoadingCache<String, Tenant> tenants;
+
+    private volatile Injector parent = null;
+    private volatile boolean stopped = false;
+
+    TenantInjectors(final TenantModuleFactory moduleFactory,
+                    final Stage stage,
+                    final long maximumTenants,
+                    final Duration idleTimeout,
+                    final Configuration configuration,
+                    final Environment environment,
+                    final DropwizardGuiceModule dropwizardGuiceModule,
+                    final ConcurrentSingletonScope concurrentSingletonScope,
+                    final Ticker ticker)
+    {
+        checkArgument(maximumTenants > 0, "maximumTenants must be positive");
+        checkNotNull(idleTimeout, "idleTimeout is null");
+        checkArgument(idleTimeout.getQuantity() > 0, "idleTimeout must be positive");
+
+        this.moduleFactory = checkNotNull(moduleFactory, "moduleFactory is null");
+        this.stage = checkNotNull(stage, "stage is null");
+        this.configuration = checkNotNull(configuration, "configuration is null");
+        this.environment = checkNotNull(environment, "environment is null");
+        this.dropwizardGuiceModule = checkNotNull(dropwizardGuiceModule, "dropwizardGuiceModule is null");
+        this.concurrentSingletonScope = checkNotNull(concurrentSingletonScope, "concurrentSingletonScope is null");
+
+        final MetricRegistry metrics = environment.metrics();
+        this.builds = metrics.timer(name(TenantInjectors.class, "builds"));
+
+        this.tenants = CacheBuilder.newBuilder()
+            .maximumSize(maximumTenants)
+            .expireAfterAccess(idleTimeout.toNanoseconds(), TimeUnit.NANOSECONDS)
+            .ticker(checkNotNull(ticker, "ticker is null"))
+            .recordStats()
+            .removalListener(RemovalListeners.asynchronous(new RemovalListener<String, Tenant>() {
+                @Override
+                public void onRemoval(final RemovalNotification<String, Tenant> notification)
+                {
+                    LOG.info("Removed tenant {} ({})", notification.getKey(), notification.getCause());
+                    ManagedObjects.stop(notification.getValue().managed);
+                }
+            }, evictionExecutor))
+            .build(new CacheLoader<String, Tenant>() {
+                @Override
+                public Tenant load(final String tenant) throws Exception
+                {
+                    return build(tenant);
+                }
+            });
+
+        // The cache only evicts while it is used; clean up regularly so that idle tenants are stopped.
+        evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run()
+            {
+                tenants.cleanUp();
+            }
+        }, idleTimeout.getQuantity(), idleTimeout.getQuantity(), idleTimeout.getUnit());
+
+        metrics.register(name(TenantInjectors.class, "tenants"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return tenants.size();
+            }
+        });
+        metrics.register(name(TenantInjectors.class, "evictions"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return tenants.stats().evictionCount();
+            }
+        });
+        metrics.register(name(TenantInjectors.class, "hit-ratio"), new Gauge<Double>() {
+            @Override
+            public Double getValue()
+            {
+                final CacheStats stats = tenants.stats();
+                return stats.requestCount() == 0 ? Double.NaN : stats.hitRate();
+            }
+        });
+    }
+
+    /**
+     * Returns the child injector of the tenant and builds it if necessary.
+     */
+    public Injector getInjector(final String tenant)
+    {
+        checkNotNull(tenant, "tenant is null");
+        checkState(parent != null, "tenant injectors are not available before the application injector was built");
+        checkState(!stopped, "tenant injectors were stopped");
+
+        try {
+            return tenants.get(tenant).injector;
+        }
+        catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the instance of the type from the child injector of the tenant.
+     */
+    public <T> T getInstance(final String tenant, final Class<T> type)
+    {
+        return getInjector(tenant).getInstance(type);
+    }
+
+    /**
+     * Returns the instance of the key from the child injector of the tenant.
+     */
+    public <T> T getInstance(final String tenant, final Key<T> key)
+    {
+        return getInjector(tenant).getInstance(key);
+    }
+
+    /**
+     * Evicts the tenant, e.g. after its settings changed. The next use builds a new child injector.
+     */
+    public void evict(final String tenant)
+    {
+        tenants.invalidate(checkNotNull(tenant, "tenant is null"));
+    }
+
+    void setParent(final Injector parent)
+    {
+        checkState(this.parent == null, "parent was already set");
+        this.parent = checkNotNull(parent, "parent is null");
+    }
+
+    /**
+     * Evicts all tenants and waits until their managed objects have stopped.
+     */
+    void stop(final Duration timeout) throws InterruptedException
+    {
+        stopped = true;
+        tenants.invalidateAll();
+        evictionExecutor.shutdown();
+        if (!evictionExecutor.awaitTermination(timeout.toNanoseconds(), TimeUnit.NANOSECONDS)) {
+            LOG.warn("Managed objects of the tenants did not stop within {}", timeout);
+        }
+    }
+
+    private Tenant build(final String tenant) throws Exception
+    {
+        final Timer.Context context = builds.time();
+        try {
+            final Module module = checkNotNull(moduleFactory.getModule(tenant), "module for tenant %s is null", tenant);
+            if (module instanceof DropwizardAwareModule<?>) {
+                @SuppressWarnings("unchecked")
+                final DropwizardAwareModule<Configuration> dropwizardAwareModule = (DropwizardAwareModule<Configuration>) module;
+                dropwizardAwareModule.setDropwizardConfiguration(configuration, environment);
+                dropwizardAwareModule.setTenant(tenant);
+                dropwizardAwareModule.setBuiltAfterStartup();
+            }
+
+            // Guice configures the modules of a child injector while it holds the injector lock; recording the
+            // elements first keeps that work out of the lock.
+            final List<Element> elements = Elements.getElements(stage, module);
+
+            final Injector injector;
+            final List<Managed> managed;
+            dropwizardGuiceModule.beginCollecting();
+            try {
+                injector = parent.createChildInjector(Elements.getModule(elements));
+                ConcurrentSingletonScope.checkDependencies(injector);
+                // Managed objects are only collected while the child injector is built.
+                concurrentSingletonScope.createSingletons(injector);
+            }
+            finally {
+                managed = dropwizardGuiceModule.endCollecting();
+            }
+
+            ManagedObjects.start(managed);
+            LOG.info("Built injector for tenant {}", tenant);
+            return new Tenant(injector, managed);
+        }
+        finally {
+            context.stop();
+        }
+    }
+
+    private static final class Tenant
+    {
+        private final Injector injector;
+        private final List<Managed> managed;
+
+        private Tenant(final Injector injector, final List<Managed> managed)
+        {
+            this.injector = injector;
+            this.managed = managed;
+        }
+    }
+}
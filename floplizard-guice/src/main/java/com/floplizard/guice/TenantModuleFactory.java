@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import com.google.inject.Module;
+
+/**
+ * Creates the modules for the child injector of a tenant. See {@link TenantInjectors}.
+ */
+public interface TenantModuleFactory
+{
+    /**
+     * Returns the module with the bindings of the given tenant. Called once every time the child injector of
+     * the tenant is built, possibly from several threads at the same time for different tenants. A
+     * {@link DropwizardAwareModule} must be a new instance every time.
+     */
+    Module getModule(String tenant);
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.dropwizard.lifecycle.ServerLifecycleListener;
+import io.dropwizard.util.Duration;
+
+/**
+ * Runs the {@link WarmupTask}s on a background thread once the server has started. Until all tasks are done
+ * or the time budget is used up, the warm-up health check reports unhealthy, so that load balancers keep
+ * traffic away from the cold instance.
+ * <br>
+ * Every iteration is timed with a timer named after the task; the <tt>duration</tt> gauge holds the
+ * milliseconds the warm-up took so far.
+ */
+class WarmupRunner implements ServerLifecycleListener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private final List<WarmupTask> tasks;
+    private final long budgetNanos;
+    private final Duration budget;
+    private final MetricRegistry metrics;
+    private final Ticker ticker;
+    private final AtomicInteger finishedTasks = new AtomicInteger();
+    private final HealthCheck healthCheck = new WarmupHealthCheck();
+
+    private volatile long startNanos = -1;
+    private volatile long durationNanos = -1;
+
+    WarmupRunner(final Iterable<WarmupTask> tasks, final Duration budget, final MetricRegistry metrics, final Ticker ticker)
+    {
+        this.tasks = ImmutableList.copyOf(checkNotNull(tasks, "tasks is null"));
+        this.budget = checkNotNull(budget, "budget is null");
+        this.budgetNanos = budget.toNanoseconds();
+        this.metrics = checkNotNull(metrics, "metrics is null");
+        this.ticker = checkNotNull(ticker, "ticker is null");
+
+        metrics.register(name(WarmupRunner.class, "duration"), new Gauge<Long>() {
+            @Override
+            public Long getValue()
+            {
+                return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+            }
+        });
+    }
+
+    HealthCheck getHealthCheck()
+    {
+        return healthCheck;
+    }
+
+    @Override
+    public void serverStarted(final Server server)
+    {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                WarmupRunner.this.run();
+            }
+        }, "floplizard-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs all tasks until they are done or the budget is used up.
+     */
+    void run()
+    {
+        startNanos = ticker.read();
+
+        for (WarmupTask task : tasks) {
+            final String taskName = task.getClass().getName();
+            final Timer timer = metrics.timer(name(WarmupRunner.class, taskName));
+            final int iterations = task.getIterations();
+            int iteration = 0;
+            while (iteration < iterations && !isOverBudget()) {
+                final Timer.Context context = timer.time();
+                try {
+                    task.run();
+                }
+                catch (Exception e) {
+                    LOG.warn("Warm-up task {} failed in iteration {}", taskName, iteration, e);
+                    break;
+                }
+                finally {
+                    context.stop();
+                }
+                iteration++;
+            }
+            LOG.info("Warm-up task {} ran {} of {} iterations", taskName, iteration, iterations);
+            finishedTasks.incrementAndGet();
+        }
+
+        durationNanos = ticker.read() - startNanos;
+        LOG.info("Warm-up took {} ms", TimeUnit.NANOSECONDS.toMillis(durationNanos));
+    }
+
+    private boolean isOverBudget()
+    {
+        if (ticker.read() - startNanos < budgetNanos) {
+            return false;
+        }
+        LOG.warn("Warm-up did not finish within {}", budget);
+        return true;
+    }
+
+    private long getElapsedNanos()
+    {
+        if (durationNanos >= 0) {
+            return durationNanos;
+        }
+        return startNanos < 0 ? 0 : ticker.read() - startNanos;
+    }
+
+    private final class WarmupHealthCheck extends HealthCheck
+    {
+        @Override
+        protected Result check()
+        {
+            if (durationNanos >= 0) {
+                return Result.healthy("Warm-up finished in " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms");
+            }
+            if (startNanos < 0) {
+                return Result.unhealthy("Warm-up has not started yet");
+            }
+            if (getElapsedNanos() >= budgetNanos) {
+                return Result.healthy("Warm-up did not finish within " + budget);
+            }
+            return Result.unhealthy("Warming up, " + finishedTasks.get() + " of " + tasks.size() + " tasks done");
+        }
+    }
+}
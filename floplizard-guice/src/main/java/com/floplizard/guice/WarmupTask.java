@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+/**
+ * Exercises code paths of the application after the server has started, so that the JIT compiles them
+ * before real traffic arrives. A warm-up task typically injects resources or services and calls them with
+ * synthetic requests. Like {@link io.dropwizard.lifecycle.Managed} objects, warm-up tasks must be singletons
+ * to be found.
+ * <br>
+ * Warm-up tasks are run one after another when warm-up is enabled with
+ * {@link GuiceBundle.Builder#enableWarmup(io.dropwizard.util.Duration)}.
+ */
+public interface WarmupTask
+{
+    /**
+     * How often {@link #run()} is called.
+     */
+    int getIterations();
+
+    /**
+     * Runs one iteration of the warm-up. An exception ends the warm-up of this task.
+     */
+    void run() throws Exception;
+}
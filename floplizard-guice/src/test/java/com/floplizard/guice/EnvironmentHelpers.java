@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import javax.validation.Validation;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Creates Dropwizard environments for tests that do not need a running application.
+ */
+public final class EnvironmentHelpers
+{
+    private EnvironmentHelpers()
+    {
+        throw new AssertionError("do not instantiate");
+    }
+
+    public static Environment newEnvironment()
+    {
+        return new Environment("test", Jackson.newObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), new MetricRegistry(), EnvironmentHelpers.class.getClassLoader());
+    }
+}
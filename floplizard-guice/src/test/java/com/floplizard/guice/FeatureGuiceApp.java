@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+
+import com.google.inject.Binder;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+
+import io.dropwizard.Application;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Test application with the opt-in features of the bundle enabled. {@link LittleGuiceApp} covers the defaults.
+ */
+public class FeatureGuiceApp extends Application<LittleGuiceAppConfiguration>
+{
+    @Override
+    public void initialize(final Bootstrap<LittleGuiceAppConfiguration> bootstrap)
+    {
+        final GuiceBundle<LittleGuiceAppConfiguration> guiceBundle = GuiceBundle.defaultBuilder(LittleGuiceAppConfiguration.class)
+            .modules(new Module() {
+                @Override
+                public void configure(final Binder binder)
+                {
+                    binder.bind(FeatureResource.class);
+                }
+            })
+            .enableProvisionMetrics()
+            .enableResourceFactories()
+            .enableResourceLatencyHistograms()
+            .enableSmile()
+            .build();
+
+        bootstrap.addBundle(guiceBundle);
+    }
+
+    @Override
+    public void run(final LittleGuiceAppConfiguration configuration, final Environment environment) throws Exception
+    {
+    }
+
+    @Path("/feature")
+    public static class FeatureResource
+    {
+        @Inject
+        public FeatureResource()
+        {
+        }
+
+        @GET
+        public Response get()
+        {
+            return Response.ok("feature").build();
+        }
+    }
+}
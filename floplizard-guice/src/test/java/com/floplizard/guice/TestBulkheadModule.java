@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.dropwizard.util.Duration;
+
+public class TestBulkheadModule
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRejection() throws Exception
+    {
+        final Injector injector = createInjector(ImmutableMap.<String, BulkheadConfiguration>of());
+        final Service service = injector.getInstance(Service.class);
+        final HealthCheck healthCheck = injector.getInstance(BulkheadHealthCheck.class);
+
+        final Future<?> blocked = executor.submit(new Runnable() {
+            @Override
+            public void run()
+            {
+                service.block();
+            }
+        });
+        assertTrue(service.entered.await(5, TimeUnit.SECONDS));
+
+        try {
+            service.block();
+            fail("bulkhead did not reject the call");
+        }
+        catch (BulkheadRejectedException e) {
+            // expected
+        }
+        assertEquals(1, metrics.meter(name(Bulkhead.class, "downstream", "rejected")).getCount());
+        assertEquals(1, getGauge("downstream", "in-flight"));
+        assertFalse(healthCheck.execute().isHealthy());
+
+        service.release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        assertEquals(0, getGauge("downstream", "in-flight"));
+        assertTrue(healthCheck.execute().isHealthy());
+
+        // Other methods of the class share the class bulkhead.
+        service.other();
+        assertEquals(0, metrics.meter(name(Bulkhead.class, Service.class.getName(), "rejected")).getCount());
+    }
+
+    @Test
+    public void testConfiguration()
+    {
+        createInjector(ImmutableMap.of("downstream", new BulkheadConfiguration().setMaxConcurrent(5)));
+
+        assertEquals(5, getGauge("downstream", "limit"));
+        assertEquals(3, getGauge(Service.class.getName(), "limit"));
+    }
+
+    @Test
+    public void testAdaptiveLimit()
+    {
+        final BulkheadConfiguration config = new BulkheadConfiguration()
+            .setMaxConcurrent(10)
+            .setAdaptive(true)
+            .setMinConcurrent(8)
+            .setLatencyThreshold(Duration.milliseconds(1))
+            .setBackoffRatio(0.5);
+        final Service service = createInjector(ImmutableMap.of(Service.class.getName(), config)).getInstance(Service.class);
+
+        service.sleep(5);
+        assertEquals(8, getGauge(Service.class.getName(), "limit"));
+
+        for (int i = 0; i < 30; i++) {
+            service.other();
+        }
+        assertEquals(10, getGauge(Service.class.getName(), "limit"));
+    }
+
+    @Test
+    public void testNestedCalls()
+    {
+        final Nested nested = Guice.createInjector(new BulkheadModule(ImmutableMap.<String, BulkheadConfiguration>of(), false, metrics)).getInstance(Nested.class);
+
+        // The nested call through the proxy runs in the slot of the outer call instead of being rejected.
+        assertEquals(1, nested.outer());
+        assertEquals(0, getGauge(Nested.class.getName(), "in-flight"));
+        assertEquals(1, nested.outer());
+        assertEquals(0, metrics.meter(name(Bulkhead.class, Nested.class.getName(), "rejected")).getCount());
+    }
+
+    @Test
+    public void testConflictingLimits()
+    {
+        try {
+            Guice.createInjector(new BulkheadModule(ImmutableMap.<String, BulkheadConfiguration>of(), false, metrics), new AbstractModule() {
+                @Override
+                protected void configure()
+                {
+                    bind(Conflicting.class);
+                }
+            });
+            fail("conflicting limits were accepted");
+        }
+        catch (CreationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Bulkhead 'shared'"));
+        }
+    }
+
+    private int getGauge(final String bulkhead, final String gauge)
+    {
+        @SuppressWarnings("unchecked")
+        final Gauge<Integer> value = metrics.getGauges().get(name(Bulkhead.class, bulkhead, gauge));
+        return value.getValue();
+    }
+
+    private Injector createInjector(final Map<String, BulkheadConfiguration> configurations)
+    {
+        return Guice.createInjector(new BulkheadModule(configurations, true, metrics), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Service.class);
+            }
+        });
+    }
+
+    @Bulkhead(maxConcurrent = 3)
+    static class Service
+    {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Inject
+        Service()
+        {
+        }
+
+        @Bulkhead(name = "downstream", maxConcurrent = 1)
+        void block()
+        {
+            entered.countDown();
+            Uninterruptibles.awaitUninterruptibly(release);
+        }
+
+        void other()
+        {
+        }
+
+        void sleep(final long millis)
+        {
+            Uninterruptibles.sleepUninterruptibly(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Bulkhead(maxConcurrent = 1)
+    static class Nested
+    {
+        @Inject
+        Nested()
+        {
+        }
+
+        int outer()
+        {
+            return inner();
+        }
+
+        int inner()
+        {
+            return 1;
+        }
+    }
+
+    static class Conflicting
+    {
+        @Inject
+        Conflicting()
+        {
+        }
+
+        @Bulkhead(name = "shared", maxConcurrent = 1)
+        void first()
+        {
+        }
+
+        @Bulkhead(name = "shared", maxConcurrent = 2)
+        void second()
+        {
+        }
+    }
+}
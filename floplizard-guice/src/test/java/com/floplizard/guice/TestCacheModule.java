@@ -0,0 +1,234 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.matcher.Matchers;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Test;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.servlets.tasks.Task;
+import io.dropwizard.setup.Environment;
+
+public class TestCacheModule
+{
+    private final Environment environment = EnvironmentHelpers.newEnvironment();
+    private final DropwizardGuiceModule dropwizardGuiceModule = new DropwizardGuiceModule();
+
+    @Test
+    public void testCaching() throws Exception
+    {
+        final Service service = createInjector(Service.class).getInstance(Service.class);
+        for (Managed managed : dropwizardGuiceModule.getManaged()) {
+            managed.start();
+        }
+
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals("b-2", service.lookup("b"));
+        assertNull(service.missing("a"));
+        assertNull(service.missing("a"));
+        assertEquals(3, service.calls.get());
+
+        assertEquals(2L, environment.metrics().getGauges().get(name(CacheModule.class, "lookups", "hits")).getValue());
+        assertEquals(3L, environment.metrics().getGauges().get(name(CacheModule.class, "lookups", "misses")).getValue());
+    }
+
+    @Test
+    public void testOtherInterceptorsRunOnce()
+    {
+        final AtomicInteger intercepted = new AtomicInteger();
+        final Service service = createInjector(Service.class, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindInterceptor(Matchers.subclassesOf(Service.class), Matchers.any(), new MethodInterceptor() {
+                    @Override
+                    public Object invoke(final MethodInvocation invocation) throws Throwable
+                    {
+                        intercepted.incrementAndGet();
+                        return invocation.proceed();
+                    }
+                });
+            }
+        }).getInstance(Service.class);
+
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals(2, intercepted.get());
+        assertEquals(1, service.calls.get());
+    }
+
+    @Test
+    public void testExceptionsAreNotCached()
+    {
+        final Service service = createInjector(Service.class).getInstance(Service.class);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.fail();
+                fail("exception was swallowed");
+            }
+            catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(2, service.calls.get());
+    }
+
+    @Test
+    public void testFlushTask() throws Exception
+    {
+        final Service service = createInjector(Service.class).getInstance(Service.class);
+        service.lookup("a");
+
+        final Task task = Iterables.getOnlyElement(dropwizardGuiceModule.getTasks());
+        final StringWriter output = new StringWriter();
+        task.execute(ImmutableMultimap.of("name", "lookups", "action", "flush"), new PrintWriter(output));
+
+        assertTrue(output.toString(), output.toString().contains("flushed 1 entries"));
+        assertEquals("a-2", service.lookup("a"));
+    }
+
+    @Test
+    public void testChildInjectorUsesParentCaches() throws Exception
+    {
+        final Injector injector = createInjector(Service.class);
+        final Injector child = injector.createChildInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(ChildService.class);
+            }
+        });
+
+        final ChildService service = child.getInstance(ChildService.class);
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals(1, MethodCaches.find(child).getCache("lookups").size());
+        assertSame(MethodCaches.find(injector), MethodCaches.find(child));
+    }
+
+    @Test
+    public void testUnknownCache()
+    {
+        try {
+            createInjector(UnknownCacheService.class);
+            fail("unknown cache was accepted");
+        }
+        catch (CreationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("which is not configured"));
+        }
+    }
+
+    private Injector createInjector(final Class<?> type, final Module ... modules)
+    {
+        final CacheModule<Map<String, CacheConfiguration>> module = new CacheModule<>(new Function<Map<String, CacheConfiguration>, Map<String, CacheConfiguration>>() {
+            @Override
+            public Map<String, CacheConfiguration> apply(final Map<String, CacheConfiguration> configuration)
+            {
+                return configuration;
+            }
+        });
+        module.setDropwizardConfiguration(ImmutableMap.of("lookups", new CacheConfiguration().setMaximumSize(100)), environment);
+
+        final Injector injector = Guice.createInjector(ImmutableList.<Module>builder().add(dropwizardGuiceModule, module, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(type);
+            }
+        }).add(modules).build());
+        dropwizardGuiceModule.seal(injector);
+        return injector;
+    }
+
+    static class Service
+    {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Inject
+        Service()
+        {
+        }
+
+        @Cached("lookups")
+        String lookup(final String key)
+        {
+            return key + "-" + calls.incrementAndGet();
+        }
+
+        @Cached("lookups")
+        String missing(final String key)
+        {
+            calls.incrementAndGet();
+            return null;
+        }
+
+        @Cached("lookups")
+        String fail()
+        {
+            calls.incrementAndGet();
+            throw new IllegalStateException();
+        }
+    }
+
+    static class ChildService extends Service
+    {
+        @Inject
+        ChildService()
+        {
+        }
+    }
+
+    static class UnknownCacheService
+    {
+        @Inject
+        UnknownCacheService()
+        {
+        }
+
+        @Cached("unknown")
+        String lookup(final String key)
+        {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestCoalescingModule
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception
+    {
+        final Service service = createInjector(Service.class).getInstance(Service.class);
+
+        final List<Future<String>> results = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call()
+                {
+                    return service.slow("a");
+                }
+            }));
+        }
+        final String calls = name(Service.class, "slow", "coalesce", "calls");
+        for (int i = 0; i < 500 && metrics.meter(calls).getCount() < 3; i++) {
+            Thread.sleep(10);
+        }
+        service.release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("a-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, service.executions.get());
+        assertEquals(2.0 / 3, (Double) metrics.getGauges().get(name(Service.class, "slow", "coalesce", "ratio")).getValue(), 0.001);
+
+        // Calls that are not concurrent are not coalesced.
+        assertEquals("a-2", service.slow("a"));
+    }
+
+    @Test
+    public void testSharedException() throws Exception
+    {
+        final Service service = createInjector(Service.class).getInstance(Service.class);
+
+        final List<Future<String>> results = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call()
+                {
+                    return service.fail();
+                }
+            }));
+        }
+        final String calls = name(Service.class, "fail", "coalesce", "calls");
+        for (int i = 0; i < 500 && metrics.meter(calls).getCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+        service.release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("exception was swallowed");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(1, service.executions.get());
+    }
+
+    @Test
+    public void testBatching() throws Exception
+    {
+        final BatchService service = createInjector(BatchService.class).getInstance(BatchService.class);
+
+        final Map<String, Future<String>> results = Maps.newHashMap();
+        for (final String id : ImmutableList.of("a", "b", "a", "missing")) {
+            results.put(id, executor.submit(new Callable<String>() {
+                @Override
+                public String call()
+                {
+                    return service.get(id);
+                }
+            }));
+        }
+
+        assertEquals("A", results.get("a").get(5, TimeUnit.SECONDS));
+        assertEquals("B", results.get("b").get(5, TimeUnit.SECONDS));
+        assertNull(results.get("missing").get(5, TimeUnit.SECONDS));
+        assertEquals(ImmutableList.<Set<String>>of(ImmutableSet.of("a", "b", "missing")), service.batches);
+    }
+
+    @Test
+    public void testMissingBatchMethod()
+    {
+        try {
+            createInjector(BrokenService.class);
+            fail("missing batch method was accepted");
+        }
+        catch (CreationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("there is no load(Set) method"));
+        }
+    }
+
+    private Injector createInjector(final Class<?> type)
+    {
+        return Guice.createInjector(new CoalescingModule(metrics), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(type);
+            }
+        });
+    }
+
+    static class Service
+    {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger executions = new AtomicInteger();
+
+        @Inject
+        Service()
+        {
+        }
+
+        @Coalesce
+        String slow(final String key)
+        {
+            final int execution = executions.incrementAndGet();
+            Uninterruptibles.awaitUninterruptibly(release);
+            return key + "-" + execution;
+        }
+
+        @Coalesce
+        String fail()
+        {
+            executions.incrementAndGet();
+            Uninterruptibles.awaitUninterruptibly(release);
+            throw new IllegalStateException();
+        }
+    }
+
+    static class BatchService
+    {
+        private final List<Set<String>> batches = Lists.newCopyOnWriteArrayList();
+
+        @Inject
+        BatchService()
+        {
+        }
+
+        @Coalesce(batchMethod = "getAll", batchWindowMillis = 500)
+        String get(final String id)
+        {
+            throw new AssertionError("batched calls must not reach the method");
+        }
+
+        Map<String, String> getAll(final Set<String> ids)
+        {
+            batches.add(ImmutableSet.copyOf(ids));
+            final Map<String, String> result = Maps.newHashMap();
+            for (String id : ids) {
+                if (!id.equals("missing")) {
+                    result.put(id, id.toUpperCase());
+                }
+            }
+            return result;
+        }
+    }
+
+    static class BrokenService
+    {
+        @Inject
+        BrokenService()
+        {
+        }
+
+        @Coalesce(batchMethod = "load")
+        String get(final String id)
+        {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+import com.google.inject.Singleton;
+import com.google.inject.Stage;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.dropwizard.Configuration;
+
+public class TestConcurrentSingletonScope
+{
+    private static final AtomicInteger EAGER_CREATED = new AtomicInteger();
+    private static final CountDownLatch FIRST_STARTED = new CountDownLatch(1);
+    private static final CountDownLatch SECOND_STARTED = new CountDownLatch(1);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPerKeyLocking() throws Exception
+    {
+        // Each singleton waits until the other one is being created. With an injector wide lock, this never finishes.
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(First.class);
+                bind(Second.class);
+            }
+        });
+
+        final List<Future<Object>> futures = executor.invokeAll(ImmutableList.of(getInstance(injector, First.class), getInstance(injector, Second.class)), 10, TimeUnit.SECONDS);
+        final Object first = futures.get(0).get();
+        assertSame(first, injector.getInstance(First.class));
+        assertSame(futures.get(1).get(), injector.getInstance(Second.class));
+    }
+
+    @Test
+    public void testCircularDependency()
+    {
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Chicken.class);
+                bind(Egg.class);
+            }
+        });
+
+        try {
+            injector.getInstance(Chicken.class);
+            fail("circular dependency was not detected");
+        }
+        catch (ProvisionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Circular dependency"));
+        }
+    }
+
+    @Test
+    public void testGuiceSingletonDependency()
+    {
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Shared.class);
+                bind(Unscoped.class);
+                bind(Service.class);
+            }
+        });
+
+        try {
+            ConcurrentSingletonScope.checkDependencies(injector);
+            fail("dependency on a Guice singleton was not detected");
+        }
+        catch (ConfigurationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(Key.get(Service.class) + " -> " + Key.get(Unscoped.class) + " -> " + Key.get(Shared.class)));
+        }
+    }
+
+    @Test
+    public void testGuiceSingletonDependencyInProduction()
+    {
+        // Guice has created Shared before anything can create Service.
+        final Injector injector = createInjector(Stage.PRODUCTION, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Shared.class);
+                bind(Unscoped.class);
+                bind(Service.class);
+            }
+        });
+
+        ConcurrentSingletonScope.checkDependencies(injector);
+    }
+
+    @Test
+    public void testLazySingletonDependency()
+    {
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindScope(LazySingleton.class, new LazySingletonScope(new MetricRegistry()));
+                bind(Shared.class);
+                bind(LazyService.class);
+            }
+        });
+
+        ConcurrentSingletonScope.checkDependencies(injector);
+    }
+
+    @Test
+    public void testAllowedDependencies()
+    {
+        final Injector injector = createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindConstant().annotatedWith(Names.named("name")).to("name");
+                bind(Chicken.class);
+                bind(Egg.class);
+                bind(Configured.class);
+            }
+        });
+
+        ConcurrentSingletonScope.checkDependencies(injector);
+    }
+
+    @Test
+    public void testEagerInProduction() throws Exception
+    {
+        GuiceBundle.defaultBuilder(Configuration.class)
+            .modules(new AbstractModule() {
+                @Override
+                protected void configure()
+                {
+                    bind(Eager.class);
+                }
+            })
+            .build()
+            .run(new Configuration(), EnvironmentHelpers.newEnvironment());
+
+        assertEquals(1, EAGER_CREATED.get());
+    }
+
+    private static Injector createInjector(final AbstractModule module)
+    {
+        return createInjector(Stage.DEVELOPMENT, module);
+    }
+
+    private static Injector createInjector(final Stage stage, final AbstractModule module)
+    {
+        return Guice.createInjector(stage, new GuiceEnforcerModule(), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindScope(ConcurrentSingleton.class, new ConcurrentSingletonScope());
+                install(module);
+            }
+        });
+    }
+
+    private static Callable<Object> getInstance(final Injector injector, final Class<?> type)
+    {
+        return new Callable<Object>() {
+            @Override
+            public Object call()
+            {
+                return injector.getInstance(type);
+            }
+        };
+    }
+
+    @ConcurrentSingleton
+    static class First
+    {
+        @Inject
+        First() throws InterruptedException
+        {
+            FIRST_STARTED.countDown();
+            assertTrue(SECOND_STARTED.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @ConcurrentSingleton
+    static class Second
+    {
+        @Inject
+        Second() throws InterruptedException
+        {
+            SECOND_STARTED.countDown();
+            assertTrue(FIRST_STARTED.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @ConcurrentSingleton
+    static class Chicken
+    {
+        @Inject
+        Chicken(final Provider<Egg> egg)
+        {
+            egg.get();
+        }
+    }
+
+    @ConcurrentSingleton
+    static class Egg
+    {
+        @Inject
+        Egg(final Chicken chicken)
+        {
+        }
+    }
+
+    @Singleton
+    static class Shared
+    {
+        @Inject
+        Shared()
+        {
+        }
+    }
+
+    static class Unscoped
+    {
+        @Inject
+        Unscoped(final Shared shared)
+        {
+        }
+    }
+
+    @ConcurrentSingleton
+    static class Service
+    {
+        @Inject
+        Service(final Unscoped unscoped)
+        {
+        }
+    }
+
+    @LazySingleton
+    static class LazyService
+    {
+        @Inject
+        LazyService(final Shared shared)
+        {
+        }
+    }
+
+    @ConcurrentSingleton
+    static class Configured
+    {
+        @Inject
+        Configured(@Named("name") final String name, final Provider<Egg> egg)
+        {
+        }
+    }
+
+    @ConcurrentSingleton
+    static class Eager
+    {
+        @Inject
+        Eager()
+        {
+            EAGER_CREATED.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.collect.Iterables;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+
+import org.junit.Test;
+
+import io.dropwizard.lifecycle.Managed;
+
+public class TestDropwizardGuiceModule
+{
+    @Test
+    public void testCollectSingletons()
+    {
+        final DropwizardGuiceModule module = new DropwizardGuiceModule();
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, module, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(ManagedHealthCheck.class).in(Scopes.SINGLETON);
+                binder.bind(PerRequest.class);
+            }
+        });
+        module.seal(injector);
+
+        final ManagedHealthCheck singleton = injector.getInstance(ManagedHealthCheck.class);
+        assertSame(singleton, Iterables.getOnlyElement(module.getManaged()));
+        assertSame(singleton, Iterables.getOnlyElement(module.getHealthChecks()));
+        assertTrue(module.getTasks().isEmpty());
+        assertTrue(module.getServerLifecycleListeners().isEmpty());
+        assertTrue(module.getWarmupTasks().isEmpty());
+    }
+
+    @Test
+    public void testIgnoreAfterSeal()
+    {
+        final DropwizardGuiceModule module = new DropwizardGuiceModule();
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, module, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(PerRequest.class);
+            }
+        });
+        module.seal(injector);
+
+        for (int i = 0; i < 10; i++) {
+            injector.getInstance(PerRequest.class);
+        }
+
+        assertEquals(0, module.getManaged().size());
+    }
+
+    static class ManagedHealthCheck extends HealthCheck implements Managed
+    {
+        @Inject
+        ManagedHealthCheck()
+        {
+        }
+
+        @Override
+        protected Result check()
+        {
+            return Result.healthy();
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+    }
+
+    static class PerRequest implements Managed
+    {
+        @Inject
+        PerRequest()
+        {
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+    }
+}
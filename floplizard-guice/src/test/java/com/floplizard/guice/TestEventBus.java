@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+
+import org.junit.Test;
+
+import io.dropwizard.util.Duration;
+
+public class TestEventBus
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Test
+    public void testDiscovery()
+    {
+        final DropwizardGuiceModule module = new DropwizardGuiceModule();
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, module, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Listener.class).in(Scopes.SINGLETON);
+            }
+        });
+        module.seal(injector);
+
+        final Set<MethodCall> subscribers = module.getSubscribers();
+        assertEquals(2, subscribers.size());
+        for (MethodCall call : subscribers) {
+            assertSame(injector.getInstance(Listener.class), call.getTarget());
+        }
+    }
+
+    @Test(expected = CreationException.class)
+    public void testInvalidSubscriber()
+    {
+        Guice.createInjector(new DropwizardGuiceModule(), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(InvalidListener.class).in(Scopes.SINGLETON);
+            }
+        });
+    }
+
+    @Test
+    public void testGuavaSubscribersAreIgnored()
+    {
+        final DropwizardGuiceModule module = new DropwizardGuiceModule();
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, module, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(GuavaListener.class).in(Scopes.SINGLETON);
+            }
+        });
+        module.seal(injector);
+
+        assertTrue(module.getSubscribers().isEmpty());
+        assertFalse(DropwizardGuiceModule.isLifecycleType(GuavaListener.class));
+    }
+
+    @Test
+    public void testDeliveryInOrder() throws Exception
+    {
+        final Listener listener = new Listener();
+        final EventBus eventBus = newEventBus(1000, listener);
+
+        for (int i = 0; i < 500; i++) {
+            eventBus.post(i);
+        }
+        eventBus.post("hello");
+        eventBus.post(1.5d);
+        eventBus.post(new Object());
+        eventBus.stop(Duration.seconds(10));
+
+        assertEquals(500, listener.integers.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, listener.integers.get(i).intValue());
+        }
+        assertEquals(ImmutableList.of("hello"), listener.strings);
+        assertEquals(1, metrics.meter(name(EventBus.class, "unhandled")).getCount());
+        assertEquals(501, metrics.timer(name(Listener.class, "integer", "events", "latency")).getCount());
+    }
+
+    @Test
+    public void testHeldBackEvents() throws Exception
+    {
+        final Listener listener = new Listener();
+        final EventBus eventBus = new EventBus(executor, 2, metrics, Ticker.systemTicker());
+
+        eventBus.post("one");
+        eventBus.post("two");
+        eventBus.post("three");
+        eventBus.register(getSubscribers(listener));
+        eventBus.stop(Duration.seconds(10));
+
+        assertEquals(ImmutableList.of("one", "two"), listener.strings);
+    }
+
+    @Test
+    public void testRejectedAndDrained() throws Exception
+    {
+        final BlockingListener listener = new BlockingListener();
+        final EventBus eventBus = new EventBus(executor, 2, metrics, Ticker.systemTicker());
+        eventBus.register(ImmutableList.of(new MethodCall(listener, BlockingListener.class.getMethod("event", String.class), new Object[0])));
+
+        eventBus.post("first");
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+        eventBus.post("second");
+        eventBus.post("third");
+        eventBus.post("fourth");
+        assertEquals(1, metrics.meter(name(BlockingListener.class, "event", "events", "rejected")).getCount());
+        assertEquals(2, metrics.getGauges().get(name(BlockingListener.class, "event", "events", "queued")).getValue());
+
+        listener.release.countDown();
+        eventBus.stop(Duration.seconds(10));
+        assertEquals(ImmutableList.of("first", "second", "third"), listener.events);
+
+        eventBus.post("fifth");
+        assertEquals(2, metrics.meter(name(BlockingListener.class, "event", "events", "rejected")).getCount());
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    public void testSharedMetrics() throws Exception
+    {
+        final Listener first = new Listener();
+        final Listener second = new Listener();
+        final EventBus eventBus = new EventBus(executor, 10, metrics, Ticker.systemTicker());
+        eventBus.register(ImmutableList.<MethodCall>builder().addAll(getSubscribers(first)).addAll(getSubscribers(second)).build());
+        // A second event bus on the same registry does not take over the gauges.
+        newEventBus(10, new Listener());
+
+        eventBus.post("hello");
+        eventBus.stop(Duration.seconds(10));
+
+        assertEquals(ImmutableList.of("hello"), first.strings);
+        assertEquals(ImmutableList.of("hello"), second.strings);
+        assertEquals(2, metrics.timer(name(Listener.class, "string", "events", "latency")).getCount());
+        assertEquals(0, metrics.getGauges().get(name(Listener.class, "string", "events", "queued")).getValue());
+    }
+
+    @Test
+    public void testSubscriberError() throws Exception
+    {
+        assertNull(EventBus.getSubscriberError(Listener.class.getMethod("string", String.class)));
+        assertNotNull(EventBus.getSubscriberError(InvalidListener.class.getMethod("event", long.class)));
+    }
+
+    private EventBus newEventBus(final int queueSize, final Object listener)
+    {
+        final EventBus eventBus = new EventBus(executor, queueSize, metrics, Ticker.systemTicker());
+        eventBus.register(getSubscribers(listener));
+        return eventBus;
+    }
+
+    private static List<MethodCall> getSubscribers(final Object listener)
+    {
+        final ImmutableList.Builder<MethodCall> builder = ImmutableList.builder();
+        for (Method method : DropwizardGuiceModule.findAnnotatedMethods(listener.getClass(), EventSubscriber.class)) {
+            builder.add(new MethodCall(listener, method, new Object[0]));
+        }
+        return builder.build();
+    }
+
+    public static class Listener
+    {
+        private final List<Integer> integers = new CopyOnWriteArrayList<>();
+        private final List<String> strings = new CopyOnWriteArrayList<>();
+
+        @EventSubscriber
+        public void integer(final Number number)
+        {
+            if (number instanceof Integer) {
+                integers.add((Integer) number);
+            }
+        }
+
+        @EventSubscriber
+        public void string(final String string)
+        {
+            strings.add(string);
+        }
+    }
+
+    public static class BlockingListener
+    {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        public void event(final String event) throws InterruptedException
+        {
+            entered.countDown();
+            release.await();
+            events.add(event);
+        }
+    }
+
+    public static class GuavaListener
+    {
+        @Subscribe
+        public void event(final long value)
+        {
+        }
+    }
+
+    public static class InvalidListener
+    {
+        @EventSubscriber
+        public void event(final long value)
+        {
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import com.google.inject.util.Modules;
+
+import org.junit.Test;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+
+public class TestExecutorsModule
+{
+    private final Environment environment = EnvironmentHelpers.newEnvironment();
+    private final DropwizardGuiceModule dropwizardGuiceModule = new DropwizardGuiceModule();
+
+    @Test
+    public void testExecutor() throws Exception
+    {
+        final Injector injector = createInjector(ImmutableMap.of("worker", new ExecutorConfiguration().setMaxThreads(2).setQueueSize(10)));
+        final ExecutorService executor = injector.getInstance(Key.get(ExecutorService.class, Names.named("worker")));
+
+        final CountDownLatch latch = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        final MetricRegistry metrics = environment.metrics();
+        assertEquals(5, metrics.meter(MetricRegistry.name(ExecutorsModule.class, "worker", "submitted")).getCount());
+        assertFalse(metrics.getGauges().containsKey(MetricRegistry.name(ExecutorsModule.class, "worker", "queued")));
+
+        for (Managed managed : dropwizardGuiceModule.getManaged()) {
+            managed.start();
+        }
+        assertTrue(metrics.getGauges().containsKey(MetricRegistry.name(ExecutorsModule.class, "worker", "queued")));
+
+        for (Managed managed : dropwizardGuiceModule.getManaged()) {
+            managed.stop();
+        }
+        assertTrue(executor.isTerminated());
+        assertEquals(5, metrics.timer(MetricRegistry.name(ExecutorsModule.class, "worker", "duration")).getCount());
+        assertFalse(metrics.getGauges().containsKey(MetricRegistry.name(ExecutorsModule.class, "worker", "queued")));
+    }
+
+    @Test
+    public void testDuplicateName() throws Exception
+    {
+        createInjector(ImmutableMap.of("worker", new ExecutorConfiguration()));
+        final DropwizardGuiceModule otherGuiceModule = new DropwizardGuiceModule();
+        createInjector(otherGuiceModule, ImmutableMap.of("worker", new ExecutorConfiguration()));
+
+        Iterables.getOnlyElement(dropwizardGuiceModule.getManaged()).start();
+        try {
+            // e.g. two module groups with an executor of the same name
+            Iterables.getOnlyElement(otherGuiceModule.getManaged()).start();
+            fail("executor with a taken name was started");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("already exists"));
+        }
+    }
+
+    @Test
+    public void testRejection() throws Exception
+    {
+        final Injector injector = createInjector(ImmutableMap.of("bounded", new ExecutorConfiguration().setQueueSize(1)));
+        final ExecutorService executor = injector.getInstance(Key.get(ExecutorService.class, Names.named("bounded")));
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocker = new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        executor.execute(blocker);
+        executor.execute(blocker);
+        try {
+            executor.execute(blocker);
+            fail("third task was accepted");
+        }
+        catch (RejectedExecutionException expected) {
+            // one running, one queued
+        }
+        release.countDown();
+
+        assertEquals(1, environment.metrics().meter(MetricRegistry.name(ExecutorsModule.class, "bounded", "rejected")).getCount());
+    }
+
+    @Test
+    public void testScheduledExecutor() throws Exception
+    {
+        final Injector injector = createInjector(ImmutableMap.of("timer", new ExecutorConfiguration().setScheduled(true)));
+        final ScheduledExecutorService scheduled = injector.getInstance(Key.get(ScheduledExecutorService.class, Names.named("timer")));
+        assertSame(scheduled, injector.getInstance(Key.get(ExecutorService.class, Names.named("timer"))));
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduled.schedule(new Runnable() {
+            @Override
+            public void run()
+            {
+                latch.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStopOrder() throws Exception
+    {
+        final Injector injector = createInjector(ImmutableMap.of("worker", new ExecutorConfiguration()), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(ExecutorUser.class).in(Scopes.SINGLETON);
+            }
+        });
+
+        final List<List<Managed>> levels = ManagedDependencyGraph.getStartLevels(ImmutableList.of(injector), dropwizardGuiceModule.getManaged());
+        assertEquals(2, levels.size());
+        assertTrue(levels.get(0).get(0) instanceof ManagedExecutor<?>);
+        assertSame(injector.getInstance(ExecutorUser.class), levels.get(1).get(0));
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception
+    {
+        final Injector injector = createInjector(ImmutableMap.of("virtual", new ExecutorConfiguration().setVirtualThreads(true)));
+        final ExecutorService executor = injector.getInstance(Key.get(ExecutorService.class, Names.named("virtual")));
+
+        // Falls back to a thread pool on JVMs without virtual threads.
+        assertEquals("done", executor.submit(new Callable<String>() {
+            @Override
+            public String call()
+            {
+                return "done";
+            }
+        }).get(5, TimeUnit.SECONDS));
+    }
+
+    private Injector createInjector(final Map<String, ExecutorConfiguration> executors, final Module ... modules)
+    {
+        return createInjector(dropwizardGuiceModule, executors, modules);
+    }
+
+    private Injector createInjector(final DropwizardGuiceModule guiceModule, final Map<String, ExecutorConfiguration> executors, final Module ... modules)
+    {
+        final ExecutorsModule<Map<String, ExecutorConfiguration>> module = new ExecutorsModule<>(new Function<Map<String, ExecutorConfiguration>, Map<String, ExecutorConfiguration>>() {
+            @Override
+            public Map<String, ExecutorConfiguration> apply(final Map<String, ExecutorConfiguration> configuration)
+            {
+                return configuration;
+            }
+        });
+        module.setDropwizardConfiguration(executors, environment);
+
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, guiceModule, module, Modules.combine(modules));
+        guiceModule.seal(injector);
+        return injector;
+    }
+
+    static class ExecutorUser implements Managed
+    {
+        private final ExecutorService executor;
+
+        @Inject
+        ExecutorUser(@Named("worker") final ExecutorService executor)
+        {
+            this.executor = executor;
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+            // must run before the executor is shut down
+            executor.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                }
+            });
+        }
+    }
+}
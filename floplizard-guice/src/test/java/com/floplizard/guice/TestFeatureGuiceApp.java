@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import com.codahale.metrics.Timer;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import io.dropwizard.testing.junit.DropwizardAppRule;
+
+public class TestFeatureGuiceApp
+{
+    @ClassRule
+    public static final DropwizardAppRule<LittleGuiceAppConfiguration> RULE = new DropwizardAppRule<LittleGuiceAppConfiguration>(FeatureGuiceApp.class, ResourceHelpers.resourceFilePath("little-guice-app-config.yaml"));
+
+    @Test
+    public void testProvisionMetrics()
+    {
+        boolean found = false;
+        for (Map.Entry<String, Timer> entry : RULE.getEnvironment().metrics().getTimers().entrySet()) {
+            if (entry.getKey().startsWith(ProvisionMetricsModule.class.getName()) && entry.getKey().endsWith(DropwizardGuiceContainer.class.getName())) {
+                assertEquals(1, entry.getValue().getCount());
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testSmileProvider()
+    {
+        assertTrue(Iterables.any(RULE.getEnvironment().jersey().getResourceConfig().getSingletons(), Predicates.instanceOf(SmileMessageBodyProvider.class)));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.util.Modules;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModule;
+import com.sun.jersey.guice.JerseyServletModule;
+
+import org.junit.Test;
+
+public class TestGuiceFilterRouter
+{
+    @Test
+    public void testRoutePatterns()
+    {
+        final GuiceFilterRouter router = GuiceFilterRouter.forInjector(createInjector(new ServletModule() {
+            @Override
+            protected void configureServlets()
+            {
+                bind(NoopFilter.class).in(Scopes.SINGLETON);
+                bind(NoopServlet.class).in(Scopes.SINGLETON);
+                filter("/admin/*").through(NoopFilter.class);
+                serve("*.html").with(NoopServlet.class);
+            }
+        }), new MetricRegistry());
+
+        assertFalse(router.isRouteAll());
+        assertTrue(router.matches("/admin/users"));
+        assertTrue(router.matches("/index.html"));
+        assertFalse(router.matches("/api/users"));
+    }
+
+    @Test
+    public void testBypassWithoutServletBindings()
+    {
+        final GuiceFilterRouter router = GuiceFilterRouter.forInjector(createInjector(), new MetricRegistry());
+
+        assertFalse(router.isRouteAll());
+        assertFalse(router.matches("/"));
+    }
+
+    @Test
+    public void testRouteAllForRequestScopedBinding()
+    {
+        final GuiceFilterRouter router = GuiceFilterRouter.forInjector(createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(RequestState.class).in(RequestScoped.class);
+            }
+        }), new MetricRegistry());
+
+        assertTrue(router.isRouteAll());
+    }
+
+    @Test
+    public void testRouteAllForRequestProvider()
+    {
+        final GuiceFilterRouter router = GuiceFilterRouter.forInjector(createInjector(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(RequestAware.class).in(Scopes.SINGLETON);
+            }
+        }), new MetricRegistry());
+
+        assertTrue(router.isRouteAll());
+    }
+
+    private static Injector createInjector(final Module ... modules)
+    {
+        return Guice.createInjector(new JerseyServletModule(), Modules.combine(modules));
+    }
+
+    static class RequestState
+    {
+        @Inject
+        RequestState()
+        {
+        }
+    }
+
+    static class RequestAware
+    {
+        private final Provider<HttpServletRequest> requestProvider;
+
+        @Inject
+        RequestAware(final Provider<HttpServletRequest> requestProvider)
+        {
+            this.requestProvider = requestProvider;
+        }
+
+        String getPath()
+        {
+            return requestProvider.get().getRequestURI();
+        }
+    }
+
+    static class NoopFilter implements Filter
+    {
+        @Inject
+        NoopFilter()
+        {
+        }
+
+        @Override
+        public void init(final FilterConfig filterConfig)
+        {
+        }
+
+        @Override
+        public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) throws IOException, ServletException
+        {
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy()
+        {
+        }
+    }
+
+    static class NoopServlet extends HttpServlet
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        NoopServlet()
+        {
+        }
+    }
+}
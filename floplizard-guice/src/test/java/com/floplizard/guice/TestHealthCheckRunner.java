@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.dropwizard.util.Duration;
+
+public class TestHealthCheckRunner
+{
+    private final FakeTicker ticker = new FakeTicker();
+    private HealthCheckRunner runner = null;
+
+    @After
+    public void tearDown()
+    {
+        if (runner != null) {
+            runner.stop();
+        }
+    }
+
+    @Test
+    public void testNames()
+    {
+        final HealthCheck first = new CountingHealthCheck();
+        final HealthCheck second = new CountingHealthCheck();
+        final HealthCheck other = new OtherHealthCheck();
+
+        final Map<String, HealthCheck> names = HealthCheckRunner.getNames(ImmutableList.of(first, second, other), ImmutableSet.of("OtherHealthCheck"));
+
+        assertEquals(ImmutableSet.of(CountingHealthCheck.class.getName(), CountingHealthCheck.class.getName() + "-2", OtherHealthCheck.class.getName()), names.keySet());
+        assertEquals(first, names.get(CountingHealthCheck.class.getName()));
+        assertEquals(second, names.get(CountingHealthCheck.class.getName() + "-2"));
+        assertEquals(other, names.get(OtherHealthCheck.class.getName()));
+    }
+
+    @Test
+    public void testTimeToLive()
+    {
+        final CountingHealthCheck healthCheck = new CountingHealthCheck();
+        runner = new HealthCheckRunner(ImmutableMap.<String, HealthCheck>of("counting", healthCheck), TimeUnit.SECONDS.toNanos(10), null, Duration.seconds(5), new MetricRegistry(), ticker);
+        final HealthCheck check = runner.getHealthChecks().get("counting");
+
+        assertEquals("1", check.execute().getMessage());
+        ticker.advance(9, TimeUnit.SECONDS);
+        assertEquals("1", check.execute().getMessage());
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertEquals("2", check.execute().getMessage());
+        assertEquals(2, healthCheck.count.get());
+    }
+
+    @Test
+    public void testTimeout() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        final HealthCheck blocking = new HealthCheck() {
+            @Override
+            protected Result check() throws Exception
+            {
+                count.incrementAndGet();
+                release.await();
+                return Result.healthy();
+            }
+        };
+
+        final MetricRegistry metrics = new MetricRegistry();
+        runner = new HealthCheckRunner(ImmutableMap.of("blocking", blocking), 0, null, Duration.milliseconds(50), metrics, Ticker.systemTicker());
+        final HealthCheck check = runner.getHealthChecks().get("blocking");
+
+        assertFalse(check.execute().isHealthy());
+        assertFalse(check.execute().isHealthy());
+        // The second call must not start another run while the first one still hangs.
+        assertEquals(1, count.get());
+        assertEquals(2, metrics.meter(MetricRegistry.name(HealthCheckRunner.class, "blocking", "timeouts")).getCount());
+
+        release.countDown();
+        // The hanging run may still be finishing, in which case it is reported as timed out.
+        boolean healthy = false;
+        for (int i = 0; i < 100 && !healthy; i++) {
+            Thread.sleep(10);
+            healthy = check.execute().isHealthy();
+        }
+        assertTrue(healthy);
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception
+    {
+        final CountingHealthCheck healthCheck = new CountingHealthCheck();
+        runner = HealthCheckRunner.withRefreshInterval(ImmutableMap.<String, HealthCheck>of("counting", healthCheck), Duration.milliseconds(10), Duration.seconds(5), new MetricRegistry());
+        runner.start();
+
+        for (int i = 0; i < 500 && healthCheck.count.get() < 3; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(healthCheck.count.get() >= 3);
+
+        final int count = healthCheck.count.get();
+        assertTrue(runner.getHealthChecks().get("counting").execute().isHealthy());
+        assertTrue(healthCheck.count.get() <= count + 1);
+    }
+
+    private static class CountingHealthCheck extends HealthCheck
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        protected Result check()
+        {
+            return Result.healthy(String.valueOf(count.incrementAndGet()));
+        }
+    }
+
+    private static class OtherHealthCheck extends HealthCheck
+    {
+        @Override
+        protected Result check()
+        {
+            return Result.healthy();
+        }
+    }
+
+    private static class FakeTicker extends Ticker
+    {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+
+        void advance(final long time, final TimeUnit unit)
+        {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+}
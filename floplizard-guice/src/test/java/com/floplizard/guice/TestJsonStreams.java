@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+
+import org.junit.Test;
+
+public class TestJsonStreams
+{
+    private final ObjectMapper objectMapper = EnvironmentHelpers.newEnvironment().getObjectMapper();
+    private final JsonStreams jsonStreams = new JsonStreams(new ObjectMapperCache(objectMapper));
+
+    @Test
+    public void testArray() throws Exception
+    {
+        final List<Integer> values = ImmutableList.copyOf(ContiguousSet.create(Range.closedOpen(0, 20000), DiscreteDomain.integers()));
+
+        final ChunkRecordingOutputStream output = new ChunkRecordingOutputStream();
+        jsonStreams.array(Integer.class, values).write(output);
+
+        assertEquals(objectMapper.writeValueAsString(values), output.toString("UTF-8"));
+        assertTrue(output.chunks > 1);
+        assertEquals(output.chunks, output.flushes);
+    }
+
+    @Test
+    public void testEmptyArray() throws Exception
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        jsonStreams.array(String.class, ImmutableList.<String>of()).write(output);
+        assertEquals("[]", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testBuffersAreReused() throws Exception
+    {
+        final ChunkedOutputStream.BufferPool pool = new ChunkedOutputStream.BufferPool(16, 1);
+
+        final byte[] buffer = pool.acquire();
+        pool.release(buffer);
+        pool.release(new byte[16]);
+        assertEquals(1, pool.getPooledBuffers());
+        assertSame(buffer, pool.acquire());
+        assertEquals(0, pool.getPooledBuffers());
+        pool.release(buffer);
+
+        final ChunkRecordingOutputStream output = new ChunkRecordingOutputStream();
+        try (ChunkedOutputStream chunkedOutput = new ChunkedOutputStream(output, pool)) {
+            assertEquals(0, pool.getPooledBuffers());
+            chunkedOutput.write(new byte[40]);
+            chunkedOutput.flush();
+            assertEquals(2, output.chunks);
+        }
+        assertEquals(3, output.chunks);
+        assertEquals(40, output.size());
+        assertEquals(1, pool.getPooledBuffers());
+    }
+
+    private static class ChunkRecordingOutputStream extends ByteArrayOutputStream
+    {
+        private int chunks = 0;
+        private int flushes = 0;
+
+        @Override
+        public synchronized void write(final byte[] bytes, final int offset, final int length)
+        {
+            assertTrue(length <= JsonStreams.CHUNK_SIZE);
+            chunks++;
+            super.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.ProvisionException;
+import com.google.inject.Stage;
+
+import org.junit.Test;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+
+public class TestLazySingletonScope
+{
+    private static final AtomicInteger SLOW_CREATED = new AtomicInteger();
+    private static final AtomicInteger FAST_CREATED = new AtomicInteger();
+    private static final AtomicInteger MANAGED_CREATED = new AtomicInteger();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void testLazyAndWarmUp() throws Exception
+    {
+        final LazySingletonScope scope = new LazySingletonScope(metrics);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindScope(LazySingleton.class, scope);
+                requestInjection(scope);
+                bind(Slow.class);
+                bind(Fast.class);
+            }
+        });
+
+        assertEquals(0, SLOW_CREATED.get());
+        assertEquals(0, FAST_CREATED.get());
+        assertEquals(2, getPending());
+
+        scope.startServing();
+        final Fast fast = injector.getInstance(Fast.class);
+        scope.startWarmUp();
+
+        for (int i = 0; i < 500 && getPending() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, getPending());
+        assertEquals(1, SLOW_CREATED.get());
+        assertEquals(1, FAST_CREATED.get());
+        assertSame(fast, injector.getInstance(Fast.class));
+        assertEquals(1, metrics.meter(MetricRegistry.name(LazySingletonScope.class, "cold-hits")).getCount());
+        assertEquals(1, metrics.counter(MetricRegistry.name(LazySingletonScope.class, Fast.class.getName(), "cold-hits")).getCount());
+    }
+
+    @Test
+    public void testSealedScope()
+    {
+        final LazySingletonScope scope = new LazySingletonScope(metrics);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindScope(LazySingleton.class, scope);
+                requestInjection(scope);
+            }
+        });
+        scope.seal();
+
+        // Child injectors built after sealing, e.g. for tenants, are not tracked and can be dropped.
+        final AbstractModule childModule = new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Child.class);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            injector.createChildInjector(childModule);
+        }
+        assertEquals(0, getPending());
+
+        final Injector child = injector.createChildInjector(childModule);
+        assertSame(child.getInstance(Child.class), child.getInstance(Child.class));
+    }
+
+    @Test
+    public void testLifecycleObjectsAreCreated() throws Exception
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        GuiceBundle.defaultBuilder(Configuration.class)
+            .enableLazySingletons()
+            .modules(new AbstractModule() {
+                @Override
+                protected void configure()
+                {
+                    bind(LazyManaged.class);
+                }
+            })
+            .build()
+            .run(new Configuration(), environment);
+
+        assertEquals(1, MANAGED_CREATED.get());
+    }
+
+    @Test(expected = ProvisionException.class)
+    public void testFailingLifecycleObjectFailsStartup() throws Exception
+    {
+        GuiceBundle.defaultBuilder(Configuration.class)
+            .enableLazySingletons()
+            .modules(new AbstractModule() {
+                @Override
+                protected void configure()
+                {
+                    bind(FailingManaged.class);
+                }
+            })
+            .build()
+            .run(new Configuration(), EnvironmentHelpers.newEnvironment());
+    }
+
+    private int getPending()
+    {
+        final Gauge<?> gauge = metrics.getGauges().get(MetricRegistry.name(LazySingletonScope.class, "pending"));
+        return (Integer) gauge.getValue();
+    }
+
+    @LazySingleton
+    static class Slow
+    {
+        @Inject
+        Slow() throws InterruptedException
+        {
+            Thread.sleep(50);
+            SLOW_CREATED.incrementAndGet();
+        }
+    }
+
+    @LazySingleton
+    static class Fast
+    {
+        @Inject
+        Fast()
+        {
+            FAST_CREATED.incrementAndGet();
+        }
+    }
+
+    @LazySingleton
+    static class Child
+    {
+        @Inject
+        Child()
+        {
+        }
+    }
+
+    @LazySingleton
+    static class LazyManaged implements Managed
+    {
+        @Inject
+        LazyManaged()
+        {
+            MANAGED_CREATED.incrementAndGet();
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+    }
+
+    @LazySingleton
+    static class FailingManaged implements Managed
+    {
+        @Inject
+        FailingManaged()
+        {
+            throw new IllegalStateException("can not start");
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+import org.junit.Test;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+
+public class TestManagedDependencyGraph
+{
+    private static final List<String> EVENTS = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testLevels()
+    {
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(Database.class).in(Scopes.SINGLETON);
+                binder.bind(Managed.class).annotatedWith(Names.named("cache")).to(Cache.class).in(Scopes.SINGLETON);
+                binder.bind(Consumer.class).in(Scopes.SINGLETON);
+                binder.bind(Unrelated.class).in(Scopes.SINGLETON);
+            }
+        });
+
+        final Database database = injector.getInstance(Database.class);
+        final Cache cache = injector.getInstance(Cache.class);
+        final Consumer consumer = injector.getInstance(Consumer.class);
+        final Unrelated unrelated = injector.getInstance(Unrelated.class);
+
+        final List<List<Managed>> levels = ManagedDependencyGraph.getStartLevels(ImmutableList.of(injector), ImmutableList.<Managed>of(consumer, cache, unrelated, database));
+
+        assertEquals(3, levels.size());
+        assertEquals(ImmutableSet.of(unrelated, database), ImmutableSet.copyOf(levels.get(0)));
+        assertEquals(ImmutableList.of(cache), levels.get(1));
+        assertEquals(ImmutableList.of(consumer), levels.get(2));
+    }
+
+    @Test
+    public void testProviderBindingsAreNotCreated()
+    {
+        final Injector injector = Guice.createInjector(Stage.DEVELOPMENT, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(Database.class).in(Scopes.SINGLETON);
+                binder.bind(Managed.class).annotatedWith(Names.named("lazy")).toProvider(new Provider<Managed>() {
+                    @Override
+                    public Managed get()
+                    {
+                        EVENTS.add("provided");
+                        return new Unrelated();
+                    }
+                }).in(Scopes.SINGLETON);
+            }
+        });
+
+        EVENTS.clear();
+        final Database database = injector.getInstance(Database.class);
+        final List<List<Managed>> levels = ManagedDependencyGraph.getStartLevels(ImmutableList.of(injector), ImmutableList.<Managed>of(database));
+
+        assertEquals(ImmutableList.of(ImmutableList.of(database)), levels);
+        assertTrue(EVENTS.isEmpty());
+    }
+
+    @Test
+    public void testStartStopOrder() throws Exception
+    {
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(Database.class).in(Scopes.SINGLETON);
+                binder.bind(Cache.class).in(Scopes.SINGLETON);
+            }
+        });
+
+        final List<List<Managed>> levels = ManagedDependencyGraph.getStartLevels(ImmutableList.of(injector),
+            ImmutableList.<Managed>of(injector.getInstance(Cache.class), injector.getInstance(Database.class)));
+
+        final MetricRegistry metrics = new MetricRegistry();
+        final ParallelLifecycle lifecycle = new ParallelLifecycle(levels, 4, Duration.seconds(5), metrics);
+
+        EVENTS.clear();
+        lifecycle.start();
+        lifecycle.stop();
+
+        assertEquals(ImmutableList.of("start Database", "start Cache", "stop Cache", "stop Database"), EVENTS);
+        assertEquals(1, metrics.timer(MetricRegistry.name(ParallelLifecycle.class, "start")).getCount());
+        assertEquals(1, metrics.timer(MetricRegistry.name(ParallelLifecycle.class, "stop")).getCount());
+    }
+
+    @Test
+    public void testStopTimeout() throws Exception
+    {
+        final Managed stuck = new Managed() {
+            @Override
+            public void start()
+            {
+            }
+
+            @Override
+            public void stop() throws Exception
+            {
+                Thread.sleep(10_000L);
+            }
+        };
+
+        final ParallelLifecycle lifecycle = new ParallelLifecycle(ImmutableList.<List<Managed>>of(ImmutableList.of(stuck)), 1, Duration.milliseconds(50), new MetricRegistry());
+        lifecycle.start();
+
+        final long start = System.nanoTime();
+        lifecycle.stop();
+        assertTrue(System.nanoTime() - start < Duration.seconds(5).toNanoseconds());
+    }
+
+    abstract static class Recording implements Managed
+    {
+        @Override
+        public void start()
+        {
+            EVENTS.add("start " + getClass().getSimpleName());
+        }
+
+        @Override
+        public void stop()
+        {
+            EVENTS.add("stop " + getClass().getSimpleName());
+        }
+    }
+
+    static class Database extends Recording
+    {
+        @Inject
+        Database()
+        {
+        }
+    }
+
+    static class Cache extends Recording
+    {
+        @Inject
+        Cache(final Database database)
+        {
+        }
+    }
+
+    static class Consumer extends Recording
+    {
+        @Inject
+        Consumer(@Named("cache") final Managed cache)
+        {
+        }
+    }
+
+    static class Unrelated extends Recording
+    {
+        @Inject
+        Unrelated()
+        {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Metered;
+import com.codahale.metrics.annotation.Timed;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+
+import org.junit.Test;
+
+public class TestMethodMetricsModule
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Injector injector = Guice.createInjector(new GuiceEnforcerModule(), new MethodMetricsModule(metrics), new AbstractModule() {
+        @Override
+        protected void configure()
+        {
+            bind(Service.class);
+            bind(Resource.class);
+        }
+    });
+
+    @Test
+    public void testServiceMethods()
+    {
+        final Service service = injector.getInstance(Service.class);
+        service.timed();
+        service.timed();
+        service.metered();
+        service.counted();
+        try {
+            service.fail();
+            fail("exception was swallowed");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(2, metrics.timer(name(Service.class, "timed")).getCount());
+        assertEquals(1, metrics.meter("service-metered").getCount());
+        assertEquals(1, metrics.counter(name(Service.class, "counted")).getCount());
+        assertEquals(1, metrics.meter(name(Service.class, "fail", ExceptionMetered.DEFAULT_NAME_SUFFIX)).getCount());
+    }
+
+    @Test
+    public void testResourceMethodsAreSkipped()
+    {
+        injector.getInstance(Resource.class).get();
+
+        assertFalse(metrics.getTimers().containsKey(name(Resource.class, "get")));
+        assertEquals(1, metrics.timer(name(Resource.class, "helper")).getCount());
+    }
+
+    static class Service
+    {
+        @Inject
+        Service()
+        {
+        }
+
+        @Timed
+        void timed()
+        {
+        }
+
+        @Metered(name = "service-metered", absolute = true)
+        void metered()
+        {
+        }
+
+        @Counted(monotonic = true)
+        void counted()
+        {
+        }
+
+        @ExceptionMetered(cause = IllegalStateException.class)
+        void fail()
+        {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Path("/test")
+    public static class Resource
+    {
+        @Inject
+        Resource()
+        {
+        }
+
+        @GET
+        @Timed
+        public String get()
+        {
+            return helper();
+        }
+
+        @Timed
+        String helper()
+        {
+            return "hello";
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+
+import org.junit.Test;
+
+import io.dropwizard.util.Duration;
+
+public class TestMethodScheduler
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void testDiscovery()
+    {
+        final DropwizardGuiceModule module = new DropwizardGuiceModule();
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, module, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Jobs.class).in(Scopes.SINGLETON);
+            }
+        });
+        module.seal(injector);
+
+        final Set<MethodCall> scheduled = module.getScheduledMethods();
+        assertEquals(2, scheduled.size());
+        for (MethodCall call : scheduled) {
+            assertSame(injector.getInstance(Jobs.class), call.getTarget());
+        }
+    }
+
+    @Test(expected = CreationException.class)
+    public void testInvalidSchedule()
+    {
+        Guice.createInjector(new DropwizardGuiceModule(), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(InvalidJobs.class).in(Scopes.SINGLETON);
+            }
+        });
+    }
+
+    @Test
+    public void testFixedDelayAndFailures() throws Exception
+    {
+        final Jobs jobs = new Jobs();
+        final MethodScheduler scheduler = newScheduler(jobs, "failing");
+        scheduler.start();
+        try {
+            for (int i = 0; i < 500 && jobs.failing.get() < 3; i++) {
+                Thread.sleep(10);
+            }
+        }
+        finally {
+            scheduler.stop();
+        }
+
+        assertTrue(jobs.failing.get() >= 3);
+        assertTrue(metrics.counter(name(Jobs.class, "failing", "scheduled", "failures")).getCount() >= 3);
+        assertTrue(metrics.timer(name(Jobs.class, "failing", "scheduled", "duration")).getCount() >= 3);
+    }
+
+    @Test
+    public void testOverruns() throws Exception
+    {
+        final SlowJobs jobs = new SlowJobs(2);
+        final MethodScheduler scheduler = newScheduler(jobs, "skip", "coalesce");
+        scheduler.start();
+        try {
+            // Both methods block in their first run while they are due every 5ms.
+            assertTrue(jobs.started.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            jobs.release.countDown();
+            for (int i = 0; i < 500 && (jobs.skip.get() < 3 || jobs.coalesce.get() < 3); i++) {
+                Thread.sleep(10);
+            }
+        }
+        finally {
+            scheduler.stop();
+        }
+
+        assertTrue(jobs.skip.get() >= 3);
+        assertTrue(jobs.coalesce.get() >= 3);
+        assertEquals(1, jobs.maxConcurrent.get());
+        assertTrue(metrics.counter(name(SlowJobs.class, "skip", "scheduled", "overruns")).getCount() > 0);
+        assertTrue(metrics.counter(name(SlowJobs.class, "coalesce", "scheduled", "overruns")).getCount() > 0);
+    }
+
+    @Test
+    public void testRunState()
+    {
+        final MethodScheduler.RunState skip = new MethodScheduler.RunState(false);
+        assertTrue(skip.trigger());
+        assertFalse(skip.trigger());
+        assertFalse(skip.finish());
+        assertTrue(skip.trigger());
+
+        final MethodScheduler.RunState coalesce = new MethodScheduler.RunState(true);
+        assertTrue(coalesce.trigger());
+        assertFalse(coalesce.trigger());
+        assertFalse(coalesce.trigger());
+        // Both overruns are combined into one run.
+        assertTrue(coalesce.finish());
+        assertFalse(coalesce.finish());
+        // A trigger right after the end of a run starts the next run, nothing stays pending.
+        assertTrue(coalesce.trigger());
+        assertFalse(coalesce.finish());
+    }
+
+    @Test
+    public void testStopWaitsForRunningMethods() throws Exception
+    {
+        final SlowJobs jobs = new SlowJobs(1);
+        final MethodScheduler scheduler = newScheduler(jobs, "skip");
+        scheduler.start();
+        assertTrue(jobs.started.await(5, TimeUnit.SECONDS));
+
+        new Thread() {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                jobs.release.countDown();
+            }
+        }.start();
+
+        scheduler.stop();
+        assertEquals(1, jobs.skip.get());
+        assertEquals(1, jobs.finished.get());
+    }
+
+    private MethodScheduler newScheduler(final Object target, final String ... methods) throws Exception
+    {
+        final List<MethodCall> calls = Lists.newArrayList();
+        for (String method : methods) {
+            calls.add(new MethodCall(target, target.getClass().getDeclaredMethod(method), new Object[0]));
+        }
+        return new MethodScheduler(calls, Duration.seconds(5), metrics);
+    }
+
+    static class Jobs
+    {
+        private final AtomicInteger failing = new AtomicInteger();
+
+        @Inject
+        Jobs()
+        {
+        }
+
+        @Scheduled(fixedRate = 1, unit = TimeUnit.HOURS)
+        void hourly()
+        {
+        }
+
+        @Scheduled(fixedDelay = 5)
+        void failing()
+        {
+            failing.incrementAndGet();
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    static class InvalidJobs
+    {
+        @Inject
+        InvalidJobs()
+        {
+        }
+
+        @Scheduled(fixedRate = 10, fixedDelay = 10)
+        void both()
+        {
+        }
+    }
+
+    static class SlowJobs
+    {
+        private final CountDownLatch started;
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger skip = new AtomicInteger();
+        private final AtomicInteger coalesce = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        private final AtomicInteger skipRunning = new AtomicInteger();
+        private final AtomicInteger coalesceRunning = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        SlowJobs(final int methods)
+        {
+            this.started = new CountDownLatch(methods);
+        }
+
+        @Scheduled(fixedRate = 5)
+        void skip() throws InterruptedException
+        {
+            skip.incrementAndGet();
+            run(skipRunning);
+        }
+
+        @Scheduled(fixedRate = 5, overrun = Scheduled.Overrun.COALESCE)
+        void coalesce() throws InterruptedException
+        {
+            coalesce.incrementAndGet();
+            run(coalesceRunning);
+        }
+
+        private void run(final AtomicInteger running) throws InterruptedException
+        {
+            final int concurrent = running.incrementAndGet();
+            if (concurrent > maxConcurrent.get()) {
+                maxConcurrent.set(concurrent);
+            }
+            try {
+                started.countDown();
+                release.await();
+                finished.incrementAndGet();
+            }
+            finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
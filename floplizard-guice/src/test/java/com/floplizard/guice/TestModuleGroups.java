@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.collect.Sets;
+import com.google.inject.AbstractModule;
+import com.google.inject.CreationException;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+
+import org.junit.Test;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.setup.Environment;
+
+public class TestModuleGroups
+{
+    private final Environment environment = EnvironmentHelpers.newEnvironment();
+    private final Set<String> configureThreads = Sets.newConcurrentHashSet();
+
+    @Test
+    public void testExports() throws Exception
+    {
+        final Holder holder = new Holder();
+        GuiceBundle.defaultBuilder(Configuration.class)
+            .modules(new AbstractModule() {
+                @Override
+                protected void configure()
+                {
+                    requestInjection(holder);
+                }
+            })
+            .moduleGroups(
+                new ModuleGroup("storage").modules(storageModule()).exports(Storage.class),
+                new ModuleGroup("billing").modules(billingModule()))
+            .build()
+            .run(new Configuration(), environment);
+
+        assertNotNull(holder.storage);
+        assertSame(holder.storage, holder.injector.getInstance(Storage.class));
+        assertTrue(environment.healthChecks().getNames().contains(BillingHealthCheck.class.getSimpleName()));
+
+        for (String thread : configureThreads) {
+            assertTrue(thread, thread.startsWith("floplizard-module-group-"));
+        }
+        assertEquals(2, configureThreads.size());
+    }
+
+    @Test
+    public void testGroupsAreIsolated() throws Exception
+    {
+        try {
+            GuiceBundle.defaultBuilder(Configuration.class)
+                .moduleGroups(
+                    new ModuleGroup("storage").modules(storageModule()),
+                    new ModuleGroup("billing").modules(billingModule()))
+                .build()
+                .run(new Configuration(), environment);
+            fail();
+        }
+        catch (CreationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(Storage.class.getName()));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExportMustBeBound() throws Exception
+    {
+        GuiceBundle.defaultBuilder(Configuration.class)
+            .moduleGroups(new ModuleGroup("billing").modules(billingModule()).exports(Storage.class))
+            .build()
+            .run(new Configuration(), environment);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExportedTwice() throws Exception
+    {
+        GuiceBundle.defaultBuilder(Configuration.class)
+            .moduleGroups(
+                new ModuleGroup("storage").modules(storageModule()).exports(Storage.class),
+                new ModuleGroup("more-storage").modules(storageModule()).exports(Storage.class))
+            .build()
+            .run(new Configuration(), environment);
+    }
+
+    private Module storageModule()
+    {
+        return new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                configureThreads.add(Thread.currentThread().getName());
+                bind(Storage.class).in(Scopes.SINGLETON);
+            }
+        };
+    }
+
+    private Module billingModule()
+    {
+        return new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                configureThreads.add(Thread.currentThread().getName());
+                bind(BillingHealthCheck.class).in(Scopes.SINGLETON);
+            }
+        };
+    }
+
+    static class Holder
+    {
+        @Inject
+        Storage storage;
+
+        @Inject
+        Injector injector;
+    }
+
+    static class Storage
+    {
+        @Inject
+        Storage()
+        {
+        }
+    }
+
+    static class BillingHealthCheck extends HealthCheck
+    {
+        private final Storage storage;
+
+        @Inject
+        BillingHealthCheck(final Storage storage)
+        {
+            this.storage = storage;
+        }
+
+        @Override
+        protected Result check()
+        {
+            return storage != null ? Result.healthy() : Result.unhealthy("no storage");
+        }
+    }
+}
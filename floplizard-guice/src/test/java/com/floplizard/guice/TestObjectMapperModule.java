@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.inject.name.Names;
+
+import org.junit.Test;
+
+import io.dropwizard.setup.Environment;
+
+public class TestObjectMapperModule
+{
+    @Test
+    public void testSharedMapper() throws Exception
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final Injector injector = createInjector(environment, new ObjectMapperModule());
+
+        assertSame(environment.getObjectMapper(), injector.getInstance(ObjectMapper.class));
+
+        final ObjectMapperCache cache = injector.getInstance(ObjectMapperCache.class);
+        assertSame(cache, injector.getInstance(ObjectMapperCache.class));
+        assertSame(cache.getWriter(Item.class), cache.getWriter(Item.class));
+        assertSame(cache.getReader(Item.class), cache.getReader(Item.class));
+    }
+
+    @Test
+    public void testVariant() throws Exception
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final Injector injector = createInjector(environment, new ObjectMapperModule()
+            .variant(Names.named("pretty"), new ObjectMapperCustomizer() {
+                @Override
+                public void customize(final ObjectMapper objectMapper)
+                {
+                    objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+                }
+            }));
+
+        final Key<ObjectMapper> key = Key.get(ObjectMapper.class, Names.named("pretty"));
+        final ObjectMapper pretty = injector.getInstance(key);
+
+        assertSame(pretty, injector.getInstance(key));
+        assertNotSame(environment.getObjectMapper(), pretty);
+        assertTrue(pretty.isEnabled(SerializationFeature.INDENT_OUTPUT));
+        assertFalse(environment.getObjectMapper().isEnabled(SerializationFeature.INDENT_OUTPUT));
+    }
+
+    @Test
+    public void testWarmup() throws Exception
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final Injector injector = createInjector(environment, new ObjectMapperModule(), new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(ItemResource.class);
+            }
+        });
+
+        injector.getInstance(ObjectMapperWarmer.class).start();
+
+        final ObjectMapperCache cache = injector.getInstance(ObjectMapperCache.class);
+        final java.lang.reflect.Type listType = ItemResource.class.getMethod("getItems").getGenericReturnType();
+        assertSame(cache.getWriter(listType), cache.getWriter(listType));
+    }
+
+    private static Injector createInjector(final Environment environment, final Module ... modules)
+    {
+        return Guice.createInjector(Stage.PRODUCTION, new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(Environment.class).toInstance(environment);
+                for (Module module : modules) {
+                    binder.install(module);
+                }
+            }
+        });
+    }
+
+    public static class Item
+    {
+        public String name = "item";
+    }
+
+    @Path("/items")
+    public static class ItemResource
+    {
+        @Inject
+        public ItemResource()
+        {
+        }
+
+        @GET
+        public List<Item> getItems()
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.validation.Validation;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.Files;
+import com.google.inject.AbstractModule;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+import com.google.inject.util.Types;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.configuration.ConfigurationFactory;
+import io.dropwizard.configuration.FileConfigurationSourceProvider;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+
+public class TestReloadableInjector
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final DropwizardGuiceModule dropwizardGuiceModule = new DropwizardGuiceModule();
+    private final ConcurrentSingletonScope concurrentSingletonScope = new ConcurrentSingletonScope();
+    private final PoolModule poolModule = new PoolModule();
+
+    private ReloadableInjector<PoolConfiguration> reloadableInjector;
+    private Reloadable<Pool> pool;
+
+    @Before
+    public void setUp()
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final PoolConfiguration configuration = new PoolConfiguration(1);
+        poolModule.setDropwizardConfiguration(configuration, environment);
+
+        reloadableInjector = new ReloadableInjector<>(new ModuleGroup("pool").modules(poolModule).exports(Pool.class), configuration, dropwizardGuiceModule, concurrentSingletonScope, Duration.seconds(10), metrics);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, dropwizardGuiceModule, reloadableInjector.getModule());
+        dropwizardGuiceModule.seal(injector);
+        reloadableInjector.createInjector(injector);
+
+        @SuppressWarnings("unchecked")
+        final Key<Reloadable<Pool>> key = (Key<Reloadable<Pool>>) Key.get(Types.newParameterizedType(Reloadable.class, Pool.class));
+        pool = injector.getInstance(key);
+    }
+
+    @Test
+    public void testReload() throws Exception
+    {
+        final Pool first = pool.get();
+        assertEquals(1, first.size);
+        assertSame(first, pool.get());
+        assertTrue(dropwizardGuiceModule.getManaged().isEmpty());
+
+        reloadableInjector.start();
+        assertTrue(first.started);
+
+        assertEquals(2, reloadableInjector.reload(new PoolConfiguration(5)));
+        final Pool second = pool.get();
+        assertNotSame(first, second);
+        assertEquals(5, second.size);
+        assertTrue(second.started);
+        assertEquals(2L, metrics.getGauges().get(name(ReloadableInjector.class, "pool", "generation")).getValue());
+
+        reloadableInjector.stop();
+        assertTrue(first.stopped);
+        assertTrue(second.stopped);
+    }
+
+    @Test
+    public void testFailedReload() throws Exception
+    {
+        reloadableInjector.start();
+        final Pool first = pool.get();
+
+        try {
+            reloadableInjector.reload(new PoolConfiguration(-1));
+            fail("reload with an invalid pool size succeeded");
+        }
+        catch (RuntimeException expected) {
+            // expected
+        }
+
+        assertSame(first, pool.get());
+        assertFalse(first.stopped);
+        assertEquals(1, poolModule.getConfiguration().size);
+        assertEquals(1, metrics.meter(name(ReloadableInjector.class, "pool", "failures")).getCount());
+        assertEquals(1, metrics.timer(name(ReloadableInjector.class, "pool", "reloads")).getCount());
+    }
+
+    @Test
+    public void testReloadExecutors() throws Exception
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final ExecutorsModule<PoolConfiguration> executorsModule = newExecutorsModule(environment);
+        final Module probeModule = new Module() {
+            @Override
+            public void configure(final Binder binder)
+            {
+                binder.bind(MetricRegistry.class).toInstance(environment.metrics());
+                binder.bind(GaugeProbe.class).asEagerSingleton();
+            }
+        };
+
+        final DropwizardGuiceModule executorsGuiceModule = new DropwizardGuiceModule();
+        final Key<ExecutorService> key = Key.get(ExecutorService.class, Names.named("worker"));
+        final ReloadableInjector<PoolConfiguration> executors = new ReloadableInjector<>(new ModuleGroup("executors").modules(executorsModule, probeModule).exports(key, Key.get(GaugeProbe.class)),
+            new PoolConfiguration(1), executorsGuiceModule, concurrentSingletonScope, Duration.seconds(10), metrics);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, executorsGuiceModule, executors.getModule());
+        executorsGuiceModule.seal(injector);
+        executors.createInjector(injector);
+        executors.start();
+
+        @SuppressWarnings("unchecked")
+        final Reloadable<ExecutorService> executor = injector.getInstance((Key<Reloadable<ExecutorService>>) key.ofType(Types.newParameterizedType(Reloadable.class, ExecutorService.class)));
+        @SuppressWarnings("unchecked")
+        final Reloadable<GaugeProbe> probe = injector.getInstance((Key<Reloadable<GaugeProbe>>) Key.get(Types.newParameterizedType(Reloadable.class, GaugeProbe.class)));
+        final ExecutorService first = executor.get();
+
+        assertEquals(2, executors.reload(new PoolConfiguration(3)));
+        final ExecutorService second = executor.get();
+        assertNotSame(first, second);
+        assertEquals(3, ((ThreadPoolExecutor) second).getMaximumPoolSize());
+        assertTrue(environment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "worker", "active")));
+
+        // Draining the first generation must not remove the gauges of the second one.
+        executors.stop();
+        assertTrue(first.isShutdown());
+        assertTrue(second.isShutdown());
+        assertTrue(probe.get().gaugeOnStop);
+        assertFalse(environment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "worker", "active")));
+        assertFalse(environment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "worker", "queued")));
+    }
+
+    @Test
+    public void testFailedReloadKeepsGauges() throws Exception
+    {
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final PoolModule failingPoolModule = new PoolModule();
+        failingPoolModule.setDropwizardConfiguration(new PoolConfiguration(1), environment);
+
+        final DropwizardGuiceModule executorsGuiceModule = new DropwizardGuiceModule();
+        final Key<ExecutorService> key = Key.get(ExecutorService.class, Names.named("worker"));
+        final ReloadableInjector<PoolConfiguration> executors = new ReloadableInjector<>(new ModuleGroup("executors").modules(newExecutorsModule(environment), failingPoolModule).exports(key),
+            new PoolConfiguration(1), executorsGuiceModule, concurrentSingletonScope, Duration.seconds(10), metrics);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, executorsGuiceModule, executors.getModule());
+        executorsGuiceModule.seal(injector);
+        executors.createInjector(injector);
+        executors.start();
+
+        @SuppressWarnings("unchecked")
+        final Reloadable<ExecutorService> executor = injector.getInstance((Key<Reloadable<ExecutorService>>) key.ofType(Types.newParameterizedType(Reloadable.class, ExecutorService.class)));
+        final ExecutorService first = executor.get();
+        final CountDownLatch release = new CountDownLatch(1);
+        first.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final Gauge<?> active = environment.metrics().getGauges().get(name(ExecutorsModule.class, "worker", "active"));
+        for (int i = 0; i < 500 && !Integer.valueOf(1).equals(active.getValue()); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, active.getValue());
+
+        try {
+            // The executor of the new generation starts before the pool fails to start.
+            executors.reload(new PoolConfiguration(2).failStart());
+            fail("reload with a pool that does not start succeeded");
+        }
+        catch (IllegalStateException expected) {
+            // expected
+        }
+
+        assertSame(first, executor.get());
+        assertSame(active, environment.metrics().getGauges().get(name(ExecutorsModule.class, "worker", "active")));
+        assertEquals(1, active.getValue());
+
+        release.countDown();
+        executors.stop();
+        assertFalse(environment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "worker", "active")));
+    }
+
+    @Test
+    public void testReloadableCaches() throws Exception
+    {
+        final Function<PoolConfiguration, Map<String, CacheConfiguration>> lookups = new Function<PoolConfiguration, Map<String, CacheConfiguration>>() {
+            @Override
+            public Map<String, CacheConfiguration> apply(final PoolConfiguration configuration)
+            {
+                return ImmutableMap.of("lookups", new CacheConfiguration().setMaximumSize(100));
+            }
+        };
+        final Environment environment = EnvironmentHelpers.newEnvironment();
+        final CacheModule<PoolConfiguration> groupCacheModule = new CacheModule<>(lookups);
+        groupCacheModule.setDropwizardConfiguration(new PoolConfiguration(1), environment);
+        final DropwizardGuiceModule cachesGuiceModule = new DropwizardGuiceModule();
+        final ReloadableInjector<PoolConfiguration> caches = new ReloadableInjector<>(new ModuleGroup("caches").modules(groupCacheModule, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(TestCacheModule.Service.class);
+            }
+        }).exports(TestCacheModule.Service.class), new PoolConfiguration(1), cachesGuiceModule, concurrentSingletonScope, Duration.seconds(10), metrics);
+
+        final CacheModule<PoolConfiguration> cacheModule = new CacheModule<>(lookups);
+        cacheModule.setDropwizardConfiguration(new PoolConfiguration(1), environment);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, cachesGuiceModule, cacheModule, caches.getModule());
+        cachesGuiceModule.seal(injector);
+        caches.createInjector(injector);
+
+        // The module group caches its methods in its own caches and has no task of its own.
+        @SuppressWarnings("unchecked")
+        final Key<Reloadable<TestCacheModule.Service>> key = (Key<Reloadable<TestCacheModule.Service>>) Key.get(Types.newParameterizedType(Reloadable.class, TestCacheModule.Service.class));
+        final TestCacheModule.Service service = injector.getInstance(key).get();
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals(0, MethodCaches.find(injector).getCache("lookups").size());
+        assertEquals(1, cachesGuiceModule.getTasks().size());
+
+        caches.reload(new PoolConfiguration(2));
+        assertEquals("a-1", injector.getInstance(key).get().lookup("a"));
+    }
+
+    @Test
+    public void testConcurrentSingletonsAreManaged() throws Exception
+    {
+        final DropwizardGuiceModule concurrentGuiceModule = new DropwizardGuiceModule();
+        final ReloadableInjector<PoolConfiguration> concurrent = new ReloadableInjector<>(new ModuleGroup("concurrent").modules(new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(ConcurrentPool.class);
+            }
+        }).exports(ConcurrentPool.class), new PoolConfiguration(1), concurrentGuiceModule, concurrentSingletonScope, Duration.seconds(10), metrics);
+
+        // Also in development, where the application creates its concurrent singletons on first use.
+        final Injector injector = Guice.createInjector(Stage.DEVELOPMENT, concurrentGuiceModule, concurrent.getModule(), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindScope(ConcurrentSingleton.class, concurrentSingletonScope);
+            }
+        });
+        concurrentGuiceModule.seal(injector);
+        concurrent.createInjector(injector);
+        concurrent.start();
+
+        @SuppressWarnings("unchecked")
+        final Key<Reloadable<ConcurrentPool>> key = (Key<Reloadable<ConcurrentPool>>) Key.get(Types.newParameterizedType(Reloadable.class, ConcurrentPool.class));
+        final ConcurrentPool first = injector.getInstance(key).get();
+        assertTrue(first.started);
+
+        concurrent.reload(new PoolConfiguration(2));
+        final ConcurrentPool second = injector.getInstance(key).get();
+        assertNotSame(first, second);
+        assertTrue(second.started);
+
+        concurrent.stop();
+        assertTrue(first.stopped);
+        assertTrue(second.stopped);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnboundExport()
+    {
+        final ReloadableInjector<PoolConfiguration> unbound = new ReloadableInjector<>(new ModuleGroup("unbound").exports(Pool.class), new PoolConfiguration(1), dropwizardGuiceModule, concurrentSingletonScope, Duration.seconds(10), metrics);
+        unbound.createInjector(Guice.createInjector(Stage.PRODUCTION, unbound.getModule()));
+    }
+
+    @Test
+    public void testReloadTask() throws Exception
+    {
+        final File file = File.createTempFile("pool", ".yml");
+        file.deleteOnExit();
+        Files.write("size: 7\n", file, StandardCharsets.UTF_8);
+
+        final ConfigurationFactory<PoolConfiguration> configurationFactory = new ConfigurationFactory<>(PoolConfiguration.class,
+            Validation.buildDefaultValidatorFactory().getValidator(), Jackson.newObjectMapper(), "dw");
+        final ReloadTask<PoolConfiguration> task = new ReloadTask<>(reloadableInjector, configurationFactory, new FileConfigurationSourceProvider(), null);
+
+        final StringWriter output = new StringWriter();
+        task.execute(ImmutableMultimap.<String, String>of(), new PrintWriter(output, true));
+        assertTrue(output.toString().contains("'file' parameter"));
+        assertEquals(1, pool.get().size);
+
+        task.execute(ImmutableMultimap.of("file", file.getPath()), new PrintWriter(output, true));
+        assertEquals(7, pool.get().size);
+        assertTrue(output.toString().contains("generation 2"));
+    }
+
+    private static ExecutorsModule<PoolConfiguration> newExecutorsModule(final Environment environment)
+    {
+        final ExecutorsModule<PoolConfiguration> executorsModule = new ExecutorsModule<>(new Function<PoolConfiguration, Map<String, ExecutorConfiguration>>() {
+            @Override
+            public Map<String, ExecutorConfiguration> apply(final PoolConfiguration configuration)
+            {
+                return ImmutableMap.of("worker", new ExecutorConfiguration().setMaxThreads(configuration.size));
+            }
+        });
+        executorsModule.setDropwizardConfiguration(new PoolConfiguration(1), environment);
+        return executorsModule;
+    }
+
+    public static class PoolConfiguration extends Configuration
+    {
+        @JsonProperty
+        private int size;
+
+        @JsonProperty
+        private boolean failStart;
+
+        public PoolConfiguration()
+        {
+        }
+
+        PoolConfiguration(final int size)
+        {
+            this.size = size;
+        }
+
+        PoolConfiguration failStart()
+        {
+            this.failStart = true;
+            return this;
+        }
+    }
+
+    public static class PoolModule extends DropwizardAwareModule<PoolConfiguration>
+    {
+        @Override
+        protected void configure(final Binder binder, final PoolConfiguration configuration, final Environment environment)
+        {
+            binder.bind(PoolConfiguration.class).toInstance(configuration);
+            binder.bind(Pool.class).in(Scopes.SINGLETON);
+        }
+    }
+
+    public static class Pool implements Managed
+    {
+        private final int size;
+        private final boolean failStart;
+        private volatile boolean started = false;
+        private volatile boolean stopped = false;
+
+        @Inject
+        Pool(final PoolConfiguration configuration)
+        {
+            if (configuration.size < 0) {
+                throw new IllegalArgumentException("size must not be negative");
+            }
+            this.size = configuration.size;
+            this.failStart = configuration.failStart;
+        }
+
+        @Override
+        public void start()
+        {
+            if (failStart) {
+                throw new IllegalStateException("pool failed to start");
+            }
+            started = true;
+        }
+
+        @Override
+        public void stop()
+        {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Depends on the worker executor, so it is stopped before it. Records whether the gauges of the executor still exist at that time.
+     */
+    public static class GaugeProbe implements Managed
+    {
+        private final MetricRegistry metrics;
+        private volatile boolean gaugeOnStop = false;
+
+        @Inject
+        GaugeProbe(@Named("worker") final ExecutorService executor, final MetricRegistry metrics)
+        {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void start()
+        {
+        }
+
+        @Override
+        public void stop()
+        {
+            gaugeOnStop = metrics.getGauges().containsKey(name(ExecutorsModule.class, "worker", "active"));
+        }
+    }
+
+    @ConcurrentSingleton
+    public static class ConcurrentPool implements Managed
+    {
+        private volatile boolean started = false;
+        private volatile boolean stopped = false;
+
+        @Inject
+        ConcurrentPool()
+        {
+        }
+
+        @Override
+        public void start()
+        {
+            started = true;
+        }
+
+        @Override
+        public void stop()
+        {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.core.spi.component.ComponentScope;
+import com.sun.jersey.core.spi.component.ioc.IoCManagedComponentProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResourceComponentProviderFactory
+{
+    private Injector injector;
+    private ResourceComponentProviderFactory factory;
+
+    @Before
+    public void setUp()
+    {
+        injector = Guice.createInjector(Stage.PRODUCTION, new GuiceEnforcerModule(), new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(Greeter.class).in(Scopes.SINGLETON);
+                bind(Counter.class);
+                bind(StatelessResource.class);
+                bind(CountingResource.class);
+                bind(FieldInjectedResource.class);
+                bind(ScopedResource.class).in(Scopes.SINGLETON);
+            }
+        });
+        factory = new ResourceComponentProviderFactory(new DefaultResourceConfig(), injector);
+    }
+
+    @Test
+    public void testTreatments()
+    {
+        assertEquals(ResourceComponentProviderFactory.Treatment.SINGLETON, factory.getTreatment(injector.getBinding(StatelessResource.class)));
+        assertEquals(ResourceComponentProviderFactory.Treatment.FACTORY, factory.getTreatment(injector.getBinding(CountingResource.class)));
+        assertEquals(ResourceComponentProviderFactory.Treatment.GUICE, factory.getTreatment(injector.getBinding(FieldInjectedResource.class)));
+        assertEquals(ResourceComponentProviderFactory.Treatment.GUICE, factory.getTreatment(injector.getBinding(ScopedResource.class)));
+    }
+
+    @Test
+    public void testPromotedSingleton()
+    {
+        final IoCManagedComponentProvider provider = (IoCManagedComponentProvider) factory.getComponentProvider(StatelessResource.class);
+        assertEquals(ComponentScope.Singleton, provider.getScope());
+        assertEquals("hello, stateless", ((StatelessResource) provider.getInstance()).get());
+    }
+
+    @Test
+    public void testFactory()
+    {
+        final IoCManagedComponentProvider provider = (IoCManagedComponentProvider) factory.getComponentProvider(CountingResource.class);
+        assertEquals(ComponentScope.PerRequest, provider.getScope());
+
+        final CountingResource first = (CountingResource) provider.getInstance();
+        final CountingResource second = (CountingResource) provider.getInstance();
+        assertNotSame(first, second);
+        assertNotSame(first.counter, second.counter);
+        assertSame(first.greeter, second.greeter);
+        assertSame(injector.getInstance(Greeter.class), first.greeter);
+        assertEquals("hello, 1", first.get());
+    }
+
+    static class Greeter
+    {
+        @Inject
+        Greeter()
+        {
+        }
+
+        String greet(final String name)
+        {
+            return "hello, " + name;
+        }
+    }
+
+    static class Counter
+    {
+        private int count = 0;
+
+        @Inject
+        Counter()
+        {
+        }
+
+        int next()
+        {
+            return ++count;
+        }
+    }
+
+    @Path("/stateless")
+    public static class StatelessResource
+    {
+        private final Greeter greeter;
+
+        @Inject
+        StatelessResource(final Greeter greeter)
+        {
+            this.greeter = greeter;
+        }
+
+        @GET
+        public String get()
+        {
+            return greeter.greet("stateless");
+        }
+    }
+
+    @Path("/counting")
+    public static class CountingResource
+    {
+        private final Greeter greeter;
+        private final Counter counter;
+
+        @Inject
+        CountingResource(final Greeter greeter, final Counter counter)
+        {
+            this.greeter = greeter;
+            this.counter = counter;
+        }
+
+        @GET
+        public String get()
+        {
+            return greeter.greet(Integer.toString(counter.next()));
+        }
+    }
+
+    @Path("/field")
+    public static class FieldInjectedResource
+    {
+        @Inject
+        private Greeter greeter;
+
+        @Inject
+        FieldInjectedResource()
+        {
+        }
+
+        @GET
+        public String get()
+        {
+            return greeter.greet("field");
+        }
+    }
+
+    @Path("/scoped")
+    public static class ScopedResource
+    {
+        @Inject
+        ScopedResource()
+        {
+        }
+
+        @GET
+        public String get()
+        {
+            return "scoped";
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
+import com.sun.jersey.api.model.AbstractResource;
+import com.sun.jersey.api.model.AbstractSubResourceLocator;
+import com.sun.jersey.server.impl.modelapi.annotation.IntrospectionModeller;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ResourceFilter;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+public class TestResourceLatencyFilterFactory
+{
+    private final ResourceLatencyFilterFactory factory = new ResourceLatencyFilterFactory();
+    private final AbstractResource resource = IntrospectionModeller.createResource(Resource.class);
+
+    @Test
+    public void testRecordPerStatusClass()
+    {
+        final ResourceFilter filter = Iterables.getOnlyElement(factory.create(Iterables.getOnlyElement(resource.getResourceMethods())));
+
+        request(filter, 200);
+        request(filter, 204);
+        request(filter, 503);
+
+        final Map<String, Histogram> histograms = factory.getIntervalHistograms();
+        assertEquals(2, histograms.size());
+        assertEquals(2, histograms.get(name(Resource.class, "get", "2xx")).getTotalCount());
+        assertEquals(1, histograms.get(name(Resource.class, "get", "5xx")).getTotalCount());
+
+        // Reading the histograms starts a new interval.
+        assertTrue(factory.getIntervalHistograms().isEmpty());
+    }
+
+    @Test
+    public void testTask() throws Exception
+    {
+        request(Iterables.getOnlyElement(factory.create(Iterables.getOnlyElement(resource.getResourceMethods()))), 200);
+
+        final StringWriter output = new StringWriter();
+        new ResourceLatencyTask(factory).execute(ImmutableMultimap.<String, String>of(), new PrintWriter(output));
+        assertTrue(output.toString(), output.toString().startsWith(name(Resource.class, "get", "2xx") + ": count=1 p50="));
+
+        final StringWriter second = new StringWriter();
+        new ResourceLatencyTask(factory).execute(ImmutableMultimap.<String, String>of(), new PrintWriter(second));
+        assertTrue(second.toString(), second.toString().startsWith("No requests"));
+    }
+
+    @Test
+    public void testSubResourceLocatorsAreSkipped()
+    {
+        final List<AbstractSubResourceLocator> locators = resource.getSubResourceLocators();
+        assertNull(factory.create(Iterables.getOnlyElement(locators)));
+    }
+
+    private static void request(final ResourceFilter filter, final int status)
+    {
+        final ContainerResponse response = new ContainerResponse(null, null, null);
+        response.setStatus(status);
+        filter.getRequestFilter().filter(null);
+        filter.getResponseFilter().filter(null, response);
+    }
+
+    @Path("/latency")
+    public static class Resource
+    {
+        @GET
+        public String get()
+        {
+            return "hello";
+        }
+
+        @Path("/sub")
+        public Resource sub()
+        {
+            return this;
+        }
+    }
+}
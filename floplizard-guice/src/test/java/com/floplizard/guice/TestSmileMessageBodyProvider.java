@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+
+import org.junit.Test;
+
+import io.dropwizard.setup.Environment;
+
+public class TestSmileMessageBodyProvider
+{
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final Environment environment = EnvironmentHelpers.newEnvironment();
+    private final SmileMessageBodyProvider provider = new SmileMessageBodyProvider(environment.getObjectMapper(), environment.getValidator());
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final Payload payload = new Payload("smile", ImmutableList.of(1, 2, 3));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final MultivaluedMap<String, Object> headers = new OutBoundHeaders();
+        provider.writeTo(payload, Payload.class, Payload.class, NO_ANNOTATIONS, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE, headers, output);
+
+        final byte[] smile = output.toByteArray();
+        // Smile documents start with ":)\n".
+        assertEquals(':', smile[0]);
+        assertEquals(')', smile[1]);
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final Payload read = (Payload) provider.readFrom((Class) Payload.class, Payload.class, NO_ANNOTATIONS, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE, new MultivaluedMapImpl(), new ByteArrayInputStream(smile));
+        assertEquals(payload.name, read.name);
+        assertEquals(payload.values, read.values);
+
+        final ObjectMapper objectMapper = environment.getObjectMapper();
+        assertTrue(smile.length < objectMapper.writeValueAsBytes(payload).length);
+    }
+
+    @Test
+    public void testOnlySmileMatches()
+    {
+        assertTrue(provider.isWriteable(Payload.class, Payload.class, NO_ANNOTATIONS, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE));
+        assertTrue(provider.isReadable(Payload.class, Payload.class, NO_ANNOTATIONS, SmileMessageBodyProvider.APPLICATION_JACKSON_SMILE_TYPE));
+        assertFalse(provider.isWriteable(Payload.class, Payload.class, NO_ANNOTATIONS, MediaType.WILDCARD_TYPE));
+        assertFalse(provider.isWriteable(Payload.class, Payload.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(provider.isReadable(Payload.class, Payload.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    public static class Payload
+    {
+        @JsonProperty
+        private String name;
+
+        @JsonProperty
+        private List<Integer> values;
+
+        Payload()
+        {
+        }
+
+        Payload(final String name, final List<Integer> values)
+        {
+            this.name = name;
+            this.values = values;
+        }
+    }
+}
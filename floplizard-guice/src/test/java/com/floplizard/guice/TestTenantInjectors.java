@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+
+public class TestTenantInjectors
+{
+    private final Environment environment = EnvironmentHelpers.newEnvironment();
+    private final MetricRegistry metrics = environment.metrics();
+    private final DropwizardGuiceModule dropwizardGuiceModule = new DropwizardGuiceModule();
+    private final ConcurrentSingletonScope concurrentSingletonScope = new ConcurrentSingletonScope();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+    };
+
+    private static final Function<Configuration, Map<String, CacheConfiguration>> LOOKUPS = new Function<Configuration, Map<String, CacheConfiguration>>() {
+        @Override
+        public Map<String, CacheConfiguration> apply(final Configuration configuration)
+        {
+            return ImmutableMap.of("lookups", new CacheConfiguration().setMaximumSize(100));
+        }
+    };
+
+    private TenantInjectors tenantInjectors;
+
+    @Before
+    public void setUp()
+    {
+        tenantInjectors = new TenantInjectors(new TenantModuleFactory() {
+            @Override
+            public Module getModule(final String tenant)
+            {
+                return new AbstractModule() {
+                    @Override
+                    protected void configure()
+                    {
+                        bindConstant().annotatedWith(Names.named("tenant")).to(tenant);
+                        bind(TenantClient.class).in(Scopes.SINGLETON);
+                        bind(ConcurrentTenantClient.class);
+                    }
+                };
+            }
+        }, Stage.PRODUCTION, 2, Duration.minutes(10), new Configuration(), environment, dropwizardGuiceModule, concurrentSingletonScope, ticker);
+
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, dropwizardGuiceModule, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bindScope(ConcurrentSingleton.class, concurrentSingletonScope);
+                bind(SharedService.class).in(Scopes.SINGLETON);
+            }
+        });
+        dropwizardGuiceModule.seal(injector);
+        tenantInjectors.setParent(injector);
+    }
+
+    @Test
+    public void testTenantInjectors() throws Exception
+    {
+        final TenantClient acme = tenantInjectors.getInstance("acme", TenantClient.class);
+        final TenantClient initech = tenantInjectors.getInstance("initech", TenantClient.class);
+
+        assertEquals("acme", acme.tenant);
+        assertEquals("initech", initech.tenant);
+        assertSame(acme, tenantInjectors.getInstance("acme", TenantClient.class));
+        assertSame(acme.sharedService, initech.sharedService);
+        assertEquals(0, acme.started.getCount());
+        assertTrue(dropwizardGuiceModule.getManaged().isEmpty());
+
+        assertEquals(2L, metrics.getGauges().get(name(TenantInjectors.class, "tenants")).getValue());
+        assertEquals(1.0 / 3, (Double) metrics.getGauges().get(name(TenantInjectors.class, "hit-ratio")).getValue(), 0.001);
+        assertEquals(2, metrics.timer(name(TenantInjectors.class, "builds")).getCount());
+    }
+
+    @Test
+    public void testConcurrentSingletonsAreManaged() throws Exception
+    {
+        final TenantClient acme = tenantInjectors.getInstance("acme", ConcurrentTenantClient.class);
+        assertEquals(0, acme.started.getCount());
+
+        tenantInjectors.stop(Duration.seconds(10));
+        assertEquals(0, acme.stopped.getCount());
+    }
+
+    @Test
+    public void testSizeEviction() throws Exception
+    {
+        final TenantClient acme = tenantInjectors.getInstance("acme", TenantClient.class);
+        tenantInjectors.getInstance("initech", TenantClient.class);
+        tenantInjectors.getInstance("globex", TenantClient.class);
+
+        assertTrue(acme.stopped.await(10, TimeUnit.SECONDS));
+        assertEquals(2L, metrics.getGauges().get(name(TenantInjectors.class, "tenants")).getValue());
+        assertEquals(1L, metrics.getGauges().get(name(TenantInjectors.class, "evictions")).getValue());
+        assertNotSame(acme, tenantInjectors.getInstance("acme", TenantClient.class));
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception
+    {
+        final TenantClient acme = tenantInjectors.getInstance("acme", TenantClient.class);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        final TenantClient initech = tenantInjectors.getInstance("initech", TenantClient.class);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(6));
+
+        final TenantClient newAcme = tenantInjectors.getInstance("acme", TenantClient.class);
+        assertNotSame(acme, newAcme);
+        assertTrue(acme.stopped.await(10, TimeUnit.SECONDS));
+        assertSame(initech, tenantInjectors.getInstance("initech", TenantClient.class));
+        assertEquals(1, initech.stopped.getCount());
+    }
+
+    @Test
+    public void testStop() throws Exception
+    {
+        final TenantClient acme = tenantInjectors.getInstance("acme", TenantClient.class);
+        final TenantClient initech = tenantInjectors.getInstance("initech", TenantClient.class);
+
+        tenantInjectors.stop(Duration.seconds(10));
+        assertEquals(0, acme.stopped.getCount());
+        assertEquals(0, initech.stopped.getCount());
+    }
+
+    @Test
+    public void testTenantExecutors() throws Exception
+    {
+        final Environment executorsEnvironment = EnvironmentHelpers.newEnvironment();
+        final DropwizardGuiceModule executorsGuiceModule = new DropwizardGuiceModule();
+        final TenantInjectors executors = new TenantInjectors(new TenantModuleFactory() {
+            @Override
+            public Module getModule(final String tenant)
+            {
+                return new ExecutorsModule<>(new Function<Configuration, Map<String, ExecutorConfiguration>>() {
+                    @Override
+                    public Map<String, ExecutorConfiguration> apply(final Configuration configuration)
+                    {
+                        return ImmutableMap.of("worker", new ExecutorConfiguration());
+                    }
+                });
+            }
+        }, Stage.PRODUCTION, 2, Duration.minutes(10), new Configuration(), executorsEnvironment, executorsGuiceModule, concurrentSingletonScope, ticker);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, executorsGuiceModule);
+        executorsGuiceModule.seal(injector);
+        executors.setParent(injector);
+
+        final Key<ExecutorService> key = Key.get(ExecutorService.class, Names.named("worker"));
+        final ExecutorService acme = executors.getInstance("acme", key);
+        assertNotSame(acme, executors.getInstance("initech", key));
+        assertTrue(executorsEnvironment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "acme", "worker", "active")));
+        assertTrue(executorsEnvironment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "initech", "worker", "active")));
+
+        // A tenant that is built again takes over the gauges, even while the old executor still stops.
+        executors.evict("acme");
+        final ExecutorService newAcme = executors.getInstance("acme", key);
+        assertNotSame(acme, newAcme);
+        assertTrue(acme.awaitTermination(10, TimeUnit.SECONDS));
+
+        executors.stop(Duration.seconds(10));
+        assertTrue(newAcme.isShutdown());
+        assertFalse(executorsEnvironment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "acme", "worker", "active")));
+        assertFalse(executorsEnvironment.metrics().getGauges().containsKey(name(ExecutorsModule.class, "initech", "worker", "active")));
+    }
+
+    @Test
+    public void testTenantCaches() throws Exception
+    {
+        final Environment cachesEnvironment = EnvironmentHelpers.newEnvironment();
+        final DropwizardGuiceModule cachesGuiceModule = new DropwizardGuiceModule();
+        final TenantInjectors caches = new TenantInjectors(new TenantModuleFactory() {
+            @Override
+            public Module getModule(final String tenant)
+            {
+                return new CacheModule<Configuration>(LOOKUPS) {
+                    @Override
+                    protected void configure(final Binder binder, final Configuration configuration, final Environment environment)
+                    {
+                        super.configure(binder, configuration, environment);
+                        binder.bind(TestCacheModule.Service.class);
+                    }
+                };
+            }
+        }, Stage.PRODUCTION, 2, Duration.minutes(10), new Configuration(), cachesEnvironment, cachesGuiceModule, concurrentSingletonScope, ticker);
+
+        final CacheModule<Configuration> cacheModule = new CacheModule<>(LOOKUPS);
+        cacheModule.setDropwizardConfiguration(new Configuration(), cachesEnvironment);
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, cachesGuiceModule, cacheModule);
+        cachesGuiceModule.seal(injector);
+        caches.setParent(injector);
+
+        // The tenant caches its methods in its own caches, the application caches stay empty.
+        final TestCacheModule.Service service = caches.getInstance("acme", Key.get(TestCacheModule.Service.class));
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals("a-1", service.lookup("a"));
+        assertEquals(0, MethodCaches.find(injector).getCache("lookups").size());
+        assertEquals(1L, cachesEnvironment.metrics().getGauges().get(name(CacheModule.class, "acme", "lookups", "size")).getValue());
+        assertEquals(1, cachesGuiceModule.getTasks().size());
+
+        caches.stop(Duration.seconds(10));
+        assertFalse(cachesEnvironment.metrics().getGauges().containsKey(name(CacheModule.class, "acme", "lookups", "size")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetAfterStop() throws Exception
+    {
+        tenantInjectors.stop(Duration.seconds(10));
+        tenantInjectors.getInjector("acme");
+    }
+
+    public static class SharedService
+    {
+        @Inject
+        SharedService()
+        {
+        }
+    }
+
+    public static class TenantClient implements Managed
+    {
+        private final String tenant;
+        private final SharedService sharedService;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Inject
+        TenantClient(@Named("tenant") final String tenant, final SharedService sharedService)
+        {
+            this.tenant = tenant;
+            this.sharedService = sharedService;
+        }
+
+        @Override
+        public void start()
+        {
+            started.countDown();
+        }
+
+        @Override
+        public void stop()
+        {
+            stopped.countDown();
+        }
+    }
+
+    @ConcurrentSingleton
+    public static class ConcurrentTenantClient extends TenantClient
+    {
+        @Inject
+        ConcurrentTenantClient(@Named("tenant") final String tenant, final SharedService sharedService)
+        {
+            super(tenant, sharedService);
+        }
+    }
+}
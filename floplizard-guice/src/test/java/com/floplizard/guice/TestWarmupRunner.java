@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.floplizard.guice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+
+import org.junit.Test;
+
+import io.dropwizard.util.Duration;
+
+public class TestWarmupRunner
+{
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void testCollectWarmupTasks()
+    {
+        final DropwizardGuiceModule module = new DropwizardGuiceModule();
+        final Injector injector = Guice.createInjector(Stage.PRODUCTION, module, new AbstractModule() {
+            @Override
+            protected void configure()
+            {
+                bind(NoopTask.class).in(Scopes.SINGLETON);
+            }
+        });
+        module.seal(injector);
+
+        assertSame(injector.getInstance(NoopTask.class), Iterables.getOnlyElement(module.getWarmupTasks()));
+    }
+
+    @Test
+    public void testRun()
+    {
+        final CountingTask task = new CountingTask(ticker, 5, 0);
+        final WarmupRunner runner = new WarmupRunner(ImmutableList.<WarmupTask>of(task), Duration.minutes(1), metrics, ticker);
+        final HealthCheck healthCheck = runner.getHealthCheck();
+
+        assertFalse(healthCheck.execute().isHealthy());
+        runner.run();
+
+        assertEquals(5, task.count.get());
+        assertEquals(5, metrics.timer(name(WarmupRunner.class, CountingTask.class.getName())).getCount());
+        assertTrue(healthCheck.execute().isHealthy());
+    }
+
+    @Test
+    public void testBudget()
+    {
+        final CountingTask slow = new CountingTask(ticker, 10, 1);
+        final CountingTask other = new CountingTask(ticker, 10, 0);
+        final WarmupRunner runner = new WarmupRunner(ImmutableList.<WarmupTask>of(slow, other), Duration.seconds(3), metrics, ticker);
+
+        runner.run();
+
+        assertEquals(3, slow.count.get());
+        assertEquals(0, other.count.get());
+        assertEquals(3000L, metrics.getGauges().get(name(WarmupRunner.class, "duration")).getValue());
+        assertTrue(runner.getHealthCheck().execute().isHealthy());
+    }
+
+    @Test
+    public void testFailure()
+    {
+        final WarmupTask failing = new WarmupTask() {
+            @Override
+            public int getIterations()
+            {
+                return 10;
+            }
+
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException("cold");
+            }
+        };
+        final CountingTask other = new CountingTask(ticker, 2, 0);
+        final WarmupRunner runner = new WarmupRunner(ImmutableList.of(failing, other), Duration.minutes(1), metrics, ticker);
+
+        runner.run();
+
+        assertEquals(2, other.count.get());
+        assertTrue(runner.getHealthCheck().execute().isHealthy());
+    }
+
+    static class NoopTask implements WarmupTask
+    {
+        @Inject
+        NoopTask()
+        {
+        }
+
+        @Override
+        public int getIterations()
+        {
+            return 1;
+        }
+
+        @Override
+        public void run()
+        {
+        }
+    }
+
+    private static class CountingTask implements WarmupTask
+    {
+        private final AtomicInteger count = new AtomicInteger();
+        private final FakeTicker ticker;
+        private final int iterations;
+        private final long secondsPerIteration;
+
+        CountingTask(final FakeTicker ticker, final int iterations, final long secondsPerIteration)
+        {
+            this.ticker = ticker;
+            this.iterations = iterations;
+            this.secondsPerIteration = secondsPerIteration;
+        }
+
+        @Override
+        public int getIterations()
+        {
+            return iterations;
+        }
+
+        @Override
+        public void run()
+        {
+            count.incrementAndGet();
+            ticker.advance(secondsPerIteration, TimeUnit.SECONDS);
+        }
+    }
+
+    private static class FakeTicker extends Ticker
+    {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read()
+        {
+            return nanos.get();
+        }
+
+        void advance(final long time, final TimeUnit unit)
+        {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+}